@@ -83,7 +83,7 @@ public abstract class AbstractDirectory<T> implements Directory<T> {
         if (localRouters != null && localRouters.size() > 0) {
             for (Router router: localRouters){
                 try {
-                    if (router.getUrl() == null || router.getUrl().getParameter(Constants.RUNTIME_KEY, true)) {
+                    if (isRuntimeRouter(router)) {
                         //Router接口，实现类的rout的方法。路由获取服务提供者
                         invokers = router.route(invokers, getConsumerUrl(), invocation);
                     }
@@ -95,6 +95,13 @@ public abstract class AbstractDirectory<T> implements Directory<T> {
         return invokers;
     }
     
+    /**
+     * @return 是否在每次调用时执行该路由，返回 false 的路由由子类在列表变化时预先执行
+     */
+    protected boolean isRuntimeRouter(Router router) {
+        return router.getUrl() == null || router.getUrl().getParameter(Constants.RUNTIME_KEY, true);
+    }
+
     public URL getUrl() {
         return url;
     }
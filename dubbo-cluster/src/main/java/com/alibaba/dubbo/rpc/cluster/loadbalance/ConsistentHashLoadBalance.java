@@ -18,8 +18,11 @@ package com.alibaba.dubbo.rpc.cluster.loadbalance;
 import java.io.UnsupportedEncodingException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
-import java.util.SortedMap;
+import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -36,16 +39,18 @@ import com.alibaba.dubbo.rpc.Invoker;
  */
 public class ConsistentHashLoadBalance extends AbstractLoadBalance {
 
+    public static final String NAME = "consistenthash";
+
     private final ConcurrentMap<String, ConsistentHashSelector<?>> selectors = new ConcurrentHashMap<String, ConsistentHashSelector<?>>();
 
     @SuppressWarnings("unchecked")
     @Override
     protected <T> Invoker<T> doSelect(List<Invoker<T>> invokers, URL url, Invocation invocation) {
         String key = invokers.get(0).getUrl().getServiceKey() + "." + invocation.getMethodName();
-        int identityHashCode = System.identityHashCode(invokers);
         ConsistentHashSelector<T> selector = (ConsistentHashSelector<T>) selectors.get(key);
-        if (selector == null || selector.getIdentityHashCode() != identityHashCode) {
-            selectors.put(key, new ConsistentHashSelector<T>(invokers, invocation.getMethodName(), identityHashCode));
+        // 路由后每次都会得到新的列表对象，只有提供者集合真正变化时才重建哈希环
+        if (selector == null || ! selector.isSameInvokers(invokers)) {
+            selectors.put(key, new ConsistentHashSelector<T>(invokers, invocation.getMethodName()));
             selector = (ConsistentHashSelector<T>) selectors.get(key);
         }
         return selector.select(invocation);
@@ -53,17 +58,24 @@ public class ConsistentHashLoadBalance extends AbstractLoadBalance {
 
     private static final class ConsistentHashSelector<T> {
 
-        private final TreeMap<Long, Invoker<T>> virtualInvokers;
+        // 哈希环：按哈希值升序排列的虚拟节点及其对应的 Invoker，二分查找
+        private final long[]                    ring;
+
+        private final Invoker<T>[]              ringInvokers;
+
+        private final Set<Invoker<T>>           invokerSet;
+
+        private volatile List<Invoker<T>>       lastInvokers;
 
         private final int                       replicaNumber;
         
-        private final int                       identityHashCode;
-        
         private final int[]                     argumentIndex;
 
-        public ConsistentHashSelector(List<Invoker<T>> invokers, String methodName, int identityHashCode) {
-            this.virtualInvokers = new TreeMap<Long, Invoker<T>>();
-            this.identityHashCode = System.identityHashCode(invokers);
+        @SuppressWarnings("unchecked")
+        public ConsistentHashSelector(List<Invoker<T>> invokers, String methodName) {
+            TreeMap<Long, Invoker<T>> virtualInvokers = new TreeMap<Long, Invoker<T>>();
+            this.invokerSet = new HashSet<Invoker<T>>(invokers);
+            this.lastInvokers = invokers;
             URL url = invokers.get(0).getUrl();
             this.replicaNumber = url.getMethodParameter(methodName, "hash.nodes", 160);
             String[] index = Constants.COMMA_SPLIT_PATTERN.split(url.getMethodParameter(methodName, "hash.arguments", "0"));
@@ -71,6 +83,7 @@ public class ConsistentHashLoadBalance extends AbstractLoadBalance {
             for (int i = 0; i < index.length; i ++) {
                 argumentIndex[i] = Integer.parseInt(index[i]);
             }
+            // 虚拟节点的位置仍由 MD5 计算，只在重建时执行
             for (Invoker<T> invoker : invokers) {
                 for (int i = 0; i < replicaNumber / 4; i++) {
                     byte[] digest = md5(invoker.getUrl().toFullString() + i);
@@ -80,42 +93,91 @@ public class ConsistentHashLoadBalance extends AbstractLoadBalance {
                     }
                 }
             }
+            this.ring = new long[virtualInvokers.size()];
+            this.ringInvokers = new Invoker[virtualInvokers.size()];
+            int i = 0;
+            for (Map.Entry<Long, Invoker<T>> entry : virtualInvokers.entrySet()) {
+                ring[i] = entry.getKey();
+                ringInvokers[i] = entry.getValue();
+                i ++;
+            }
         }
 
-        public int getIdentityHashCode() {
-            return identityHashCode;
+        public boolean isSameInvokers(List<Invoker<T>> invokers) {
+            if (invokers.size() != invokerSet.size()) {
+                return false;
+            }
+            if (invokers == lastInvokers) {
+                return true;
+            }
+            if (! invokerSet.containsAll(invokers)) {
+                return false;
+            }
+            lastInvokers = invokers;
+            return true;
         }
 
         public Invoker<T> select(Invocation invocation) {
-            String key = toKey(invocation.getArguments());
-            byte[] digest = md5(key);
-            Invoker<T> invoker = sekectForKey(hash(digest, 0));
-            return invoker;
+            return selectForKey(hash(invocation.getArguments()));
         }
 
-        private String toKey(Object[] args) {
-            StringBuilder buf = new StringBuilder();
-            for (int i : argumentIndex) {
-                if (i >= 0 && i < args.length) {
-                    buf.append(args[i]);
+        private Invoker<T> selectForKey(long hash) {
+            int i = Arrays.binarySearch(ring, hash);
+            if (i < 0) {
+                i = - i - 1;
+                if (i >= ring.length) {
+                    i = 0;
                 }
             }
-            return buf.toString();
+            return ringInvokers[i];
         }
 
-        private Invoker<T> sekectForKey(long hash) {
-            Invoker<T> invoker;
-            Long key = hash;
-            if (!virtualInvokers.containsKey(key)) {
-                SortedMap<Long, Invoker<T>> tailMap = virtualInvokers.tailMap(key);
-                if (tailMap.isEmpty()) {
-                    key = virtualInvokers.firstKey();
-                } else {
-                    key = tailMap.firstKey();
+        /**
+         * 对选中参数的字符串形式按顺序拼接后计算 MurmurHash3 (x86, 32 位, UTF-16LE 编码, seed 0)，逐个字符流式计算，不拼接字符串。
+         */
+        private long hash(Object[] args) {
+            int h = 0, block = 0, length = 0;
+            boolean half = false;
+            for (int index : argumentIndex) {
+                if (index >= 0 && index < args.length) {
+                    String value = String.valueOf(args[index]);
+                    for (int i = 0; i < value.length(); i ++) {
+                        char c = value.charAt(i);
+                        if (half) {
+                            h = mixH1(h, mixK1(block | (c << 16)));
+                        } else {
+                            block = c;
+                        }
+                        half = ! half;
+                        length += 2;
+                    }
                 }
             }
-            invoker = virtualInvokers.get(key);
-            return invoker;
+            if (half) {
+                h ^= mixK1(block);
+            }
+            return fmix(h ^ length) & 0xFFFFFFFFL;
+        }
+
+        private static int mixK1(int k1) {
+            k1 *= 0xcc9e2d51;
+            k1 = Integer.rotateLeft(k1, 15);
+            return k1 * 0x1b873593;
+        }
+
+        private static int mixH1(int h1, int k1) {
+            h1 ^= k1;
+            h1 = Integer.rotateLeft(h1, 13);
+            return h1 * 5 + 0xe6546b64;
+        }
+
+        private static int fmix(int h) {
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            h ^= h >>> 13;
+            h *= 0xc2b2ae35;
+            h ^= h >>> 16;
+            return h;
         }
 
         private long hash(byte[] digest, int number) {
@@ -0,0 +1,69 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.cluster.loadbalance;
+
+import java.util.List;
+import java.util.Random;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.RpcStatus;
+
+/**
+ * Peak-EWMA load balance with power of two choices.
+ * <p>
+ * 随机挑选两个提供者，取负载代价较小的一个，代价 = (响应时间的 peak-EWMA + 1) * (活跃数 + 1) / 权重。
+ * 响应时间变长（如 GC 停顿）的提供者代价立即升高，不需要等到调用超时；选择只看两个提供者，与集群规模无关。
+ * <p>
+ * 与 leastactive 一样，响应时间和活跃数由 {@link com.alibaba.dubbo.rpc.filter.ActiveLimitFilter} 统计，需配置 actives 参数。
+ * 
+ * @see RpcStatus#getEwmaElapsed()
+ */
+public class PeakEwmaLoadBalance extends AbstractLoadBalance {
+
+    public static final String NAME = "peakewma";
+
+    private final Random random = new Random();
+
+    protected <T> Invoker<T> doSelect(List<Invoker<T>> invokers, URL url, Invocation invocation) {
+        int length = invokers.size();
+        int first = random.nextInt(length);
+        int second = random.nextInt(length - 1);
+        if (second >= first) {
+            second ++;
+        }
+        Invoker<T> a = invokers.get(first);
+        Invoker<T> b = invokers.get(second);
+        double costA = getCost(a, invocation);
+        double costB = getCost(b, invocation);
+        if (costA == costB) {
+            return random.nextBoolean() ? a : b;
+        }
+        return costA < costB ? a : b;
+    }
+
+    private double getCost(Invoker<?> invoker, Invocation invocation) {
+        int weight = getWeight(invoker, invocation);
+        if (weight <= 0) {
+            return Double.MAX_VALUE;
+        }
+        RpcStatus status = RpcStatus.getStatus(invoker.getUrl(), invocation.getMethodName());
+        // 加 1 保证没有响应时间数据（新提供者或毫秒以下的调用）时退化为按活跃数比较
+        return (status.getEwmaElapsed() + 1) * (status.getActive() + 1) / weight;
+    }
+
+}
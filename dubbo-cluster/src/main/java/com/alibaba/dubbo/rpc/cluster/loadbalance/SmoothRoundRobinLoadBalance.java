@@ -0,0 +1,141 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.cluster.loadbalance;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+
+/**
+ * Smooth weighted round robin load balance, the same as nginx upstream.
+ * <p>
+ * 每次选择时所有 Invoker 的当前权重加上各自的权重，选出当前权重最大的，再将其当前权重减去权重总和。
+ * 权重为 5,1,1 时选择序列为 a a b a c a a，不会连续打到高权重的提供者上。
+ */
+public class SmoothRoundRobinLoadBalance extends AbstractLoadBalance {
+
+    public static final String NAME = "smoothroundrobin";
+
+    // 服务 -> 方法 -> 轮询状态，两级查找避免每次调用拼接 key
+    private final ConcurrentMap<String, ConcurrentMap<String, WeightedRoundRobin>> states = new ConcurrentHashMap<String, ConcurrentMap<String, WeightedRoundRobin>>();
+
+    @SuppressWarnings("unchecked")
+    protected <T> Invoker<T> doSelect(List<Invoker<T>> invokers, URL url, Invocation invocation) {
+        String serviceKey = invokers.get(0).getUrl().getServiceKey();
+        ConcurrentMap<String, WeightedRoundRobin> methodStates = states.get(serviceKey);
+        if (methodStates == null) {
+            states.putIfAbsent(serviceKey, new ConcurrentHashMap<String, WeightedRoundRobin>());
+            methodStates = states.get(serviceKey);
+        }
+        String methodName = invocation.getMethodName();
+        WeightedRoundRobin state = methodStates.get(methodName);
+        // 路由后每次都会得到新的列表对象，只有提供者集合真正变化时才重置轮询状态
+        if (state == null || ! state.isSameInvokers(invokers)) {
+            methodStates.put(methodName, new WeightedRoundRobin(invokers, invocation));
+            state = methodStates.get(methodName);
+        }
+        return (Invoker<T>) state.select(invocation);
+    }
+
+    private final class WeightedRoundRobin {
+
+        private final Invoker<?>[]     invokers;
+
+        private final Set<Invoker<?>>  invokerSet;
+
+        private volatile List<?>       lastInvokers;
+
+        private final int[]            weights;
+
+        private final long[]           currentWeights;
+
+        // 还有提供者处于预热期时，每次选择前重新计算权重，全部预热完成后不再查询 URL 参数
+        private long                   warmupDeadline;
+
+        private int                    sequence;
+
+        WeightedRoundRobin(List<? extends Invoker<?>> list, Invocation invocation) {
+            this.invokers = list.toArray(new Invoker<?>[list.size()]);
+            this.invokerSet = new HashSet<Invoker<?>>(list);
+            this.lastInvokers = list;
+            this.weights = new int[invokers.length];
+            this.currentWeights = new long[invokers.length];
+            for (Invoker<?> invoker : invokers) {
+                long timestamp = invoker.getUrl().getParameter(Constants.TIMESTAMP_KEY, 0L);
+                if (timestamp > 0L) {
+                    int warmup = invoker.getUrl().getParameter(Constants.WARMUP_KEY, Constants.DEFAULT_WARMUP);
+                    warmupDeadline = Math.max(warmupDeadline, timestamp + warmup);
+                }
+            }
+            updateWeights(invocation);
+        }
+
+        boolean isSameInvokers(List<?> list) {
+            if (list.size() != invokerSet.size()) {
+                return false;
+            }
+            if (list == lastInvokers) {
+                return true;
+            }
+            if (! invokerSet.containsAll(list)) {
+                return false;
+            }
+            lastInvokers = list;
+            return true;
+        }
+
+        synchronized Invoker<?> select(Invocation invocation) {
+            if (warmupDeadline > 0L) {
+                updateWeights(invocation);
+            }
+            long totalWeight = 0;
+            int selected = -1;
+            for (int i = 0; i < invokers.length; i ++) {
+                currentWeights[i] += weights[i];
+                totalWeight += weights[i];
+                if (selected < 0 || currentWeights[i] > currentWeights[selected]) {
+                    selected = i;
+                }
+            }
+            if (totalWeight <= 0) {
+                // 权重全部为 0 时退化为普通轮询
+                sequence = (sequence + 1) % invokers.length;
+                return invokers[sequence];
+            }
+            currentWeights[selected] -= totalWeight;
+            return invokers[selected];
+        }
+
+        private void updateWeights(Invocation invocation) {
+            // 先判断是否过期再计算权重，保证最后一次计算时已经是完整权重
+            if (warmupDeadline > 0L && System.currentTimeMillis() >= warmupDeadline) {
+                warmupDeadline = 0L;
+            }
+            for (int i = 0; i < invokers.length; i ++) {
+                weights[i] = Math.max(getWeight(invokers[i], invocation), 0);
+            }
+        }
+
+    }
+
+}
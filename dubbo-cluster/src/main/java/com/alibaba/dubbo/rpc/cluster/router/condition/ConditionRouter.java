@@ -39,6 +39,10 @@ import com.alibaba.dubbo.rpc.cluster.Router;
 
 /**
  * ConditionRouter
+ * <p>
+ * 规则在构造时编译为匹配器：精确值、前缀/后缀通配、$参数引用，host 还支持 10.0.0.0/8 形式的网段。
+ * 路由结果只取决于消费者URL和提供者URL，未配置 runtime 的规则由 RegistryDirectory 在提供者或路由规则变化时
+ * 按方法预先计算，调用时不再执行路由；其它 Directory 仍按 runtime 的默认值在每次调用时执行。
  * 
  * @author william.liangf
  */
@@ -52,9 +56,9 @@ public class ConditionRouter implements Router, Comparable<Router> {
 
     private final boolean force;
 
-    private final Map<String, MatchPair> whenCondition;
+    private final Condition[] whenCondition;
     
-    private final Map<String, MatchPair> thenCondition;
+    private final Condition[] thenCondition;
 
     public ConditionRouter(URL url) {
         this.url = url;
@@ -72,8 +76,8 @@ public class ConditionRouter implements Router, Comparable<Router> {
             Map<String, MatchPair> when = StringUtils.isBlank(whenRule) || "true".equals(whenRule) ? new HashMap<String, MatchPair>() : parseRule(whenRule);
             Map<String, MatchPair> then = StringUtils.isBlank(thenRule) || "false".equals(thenRule) ? null : parseRule(thenRule);
             // NOTE: When条件是允许为空的，外部业务来保证类似的约束条件
-            this.whenCondition = when;
-            this.thenCondition = then;
+            this.whenCondition = compile(when);
+            this.thenCondition = then == null ? null : compile(then);
         } catch (ParseException e) {
             throw new IllegalStateException(e.getMessage(), e);
         }
@@ -130,17 +134,42 @@ public class ConditionRouter implements Router, Comparable<Router> {
         return thenCondition != null && matchCondition(thenCondition, url, param);
     }
     
-    private boolean matchCondition(Map<String, MatchPair> condition, URL url, URL param) {
-        Map<String, String> sample = url.toMap();
-        for (Map.Entry<String, String> entry : sample.entrySet()) {
-            String key = entry.getKey();
-            MatchPair pair = condition.get(key);
-            if (pair != null && ! pair.isMatch(entry.getValue(), param)) {
+    private boolean matchCondition(Condition[] condition, URL url, URL param) {
+        for (Condition c : condition) {
+            // URL中没有的key不参与匹配，与 URL.toMap() 的取值保持一致
+            String value = getValue(url, c.key);
+            if (value != null && ! c.isMatch(value, param)) {
                 return false;
             }
         }
         return true;
     }
+
+    private static String getValue(URL url, String key) {
+        String value = null;
+        if ("protocol".equals(key)) {
+            value = url.getProtocol();
+        } else if ("username".equals(key)) {
+            value = url.getUsername();
+        } else if ("password".equals(key)) {
+            value = url.getPassword();
+        } else if ("host".equals(key)) {
+            value = url.getHost();
+        } else if ("port".equals(key)) {
+            value = url.getPort() > 0 ? String.valueOf(url.getPort()) : null;
+        } else if ("path".equals(key)) {
+            value = url.getPath();
+        }
+        return value != null ? value : url.getParameters().get(key);
+    }
+
+    private static Condition[] compile(Map<String, MatchPair> condition) {
+        List<Condition> conditions = new ArrayList<Condition>(condition.size());
+        for (Map.Entry<String, MatchPair> entry : condition.entrySet()) {
+            conditions.add(new Condition(entry.getKey(), entry.getValue()));
+        }
+        return conditions.toArray(new Condition[conditions.size()]);
+    }
     
     private static Pattern ROUTE_PATTERN = Pattern.compile("([&!=,]*)\\s*([^&!=,\\s]+)");
     
@@ -214,18 +243,178 @@ public class ConditionRouter implements Router, Comparable<Router> {
     private static final class MatchPair {
         final Set<String> matches = new HashSet<String>();
         final Set<String> mismatches = new HashSet<String>();
-        public boolean isMatch(String value, URL param) {
-            for (String match : matches) {
-                if (! UrlUtils.isMatchGlobPattern(match, value, param)) {
+    }
+
+    /**
+     * 编译后的单个key的条件：所有 matches 都匹配，且没有 mismatches 匹配。
+     */
+    private static final class Condition {
+
+        final String key;
+
+        private final ValueMatcher[] matches;
+
+        // 精确值的 mismatches 直接查表
+        private final Set<String> exactMismatches = new HashSet<String>();
+
+        private final ValueMatcher[] mismatches;
+
+        Condition(String key, MatchPair pair) {
+            this.key = key;
+            List<ValueMatcher> matches = new ArrayList<ValueMatcher>();
+            for (String match : pair.matches) {
+                matches.add(ValueMatcher.compile(key, match));
+            }
+            List<ValueMatcher> mismatches = new ArrayList<ValueMatcher>();
+            for (String mismatch : pair.mismatches) {
+                ValueMatcher matcher = ValueMatcher.compile(key, mismatch);
+                if (matcher instanceof ExactMatcher) {
+                    exactMismatches.add(mismatch);
+                } else {
+                    mismatches.add(matcher);
+                }
+            }
+            this.matches = matches.toArray(new ValueMatcher[matches.size()]);
+            this.mismatches = mismatches.toArray(new ValueMatcher[mismatches.size()]);
+        }
+
+        boolean isMatch(String value, URL param) {
+            for (ValueMatcher match : matches) {
+                if (! match.isMatch(value, param)) {
                     return false;
                 }
             }
-            for (String mismatch : mismatches) {
-                if (UrlUtils.isMatchGlobPattern(mismatch, value, param)) {
+            if (exactMismatches.contains(value)) {
+                return false;
+            }
+            for (ValueMatcher mismatch : mismatches) {
+                if (mismatch.isMatch(value, param)) {
                     return false;
                 }
             }
             return true;
         }
     }
+
+    /**
+     * 与 {@link UrlUtils#isMatchGlobPattern(String, String, URL)} 语义相同，只在最后一个星号处拆分。
+     */
+    private static abstract class ValueMatcher {
+
+        private static final Pattern IP_RANGE_PATTERN = Pattern.compile("(\\d{1,3}(\\.\\d{1,3}){3})/(\\d{1,2})");
+
+        abstract boolean isMatch(String value, URL param);
+
+        static ValueMatcher compile(String key, String pattern) {
+            if (pattern.startsWith("$")) {
+                return new ParamMatcher(pattern.substring(1));
+            }
+            if ("*".equals(pattern)) {
+                return new AnyMatcher();
+            }
+            if ("host".equals(key)) {
+                Matcher m = IP_RANGE_PATTERN.matcher(pattern);
+                if (m.matches()) {
+                    int bits = Integer.parseInt(m.group(3));
+                    long address = IpRangeMatcher.toLong(m.group(1));
+                    if (bits <= 32 && address >= 0) {
+                        return new IpRangeMatcher(address, bits);
+                    }
+                }
+            }
+            int i = pattern.lastIndexOf('*');
+            if (i == -1) {
+                return new ExactMatcher(pattern);
+            }
+            return new GlobMatcher(pattern.substring(0, i), pattern.substring(i + 1));
+        }
+    }
+
+    private static final class AnyMatcher extends ValueMatcher {
+        boolean isMatch(String value, URL param) {
+            return true;
+        }
+    }
+
+    private static final class ExactMatcher extends ValueMatcher {
+        private final String pattern;
+        ExactMatcher(String pattern) {
+            this.pattern = pattern;
+        }
+        boolean isMatch(String value, URL param) {
+            return pattern.equals(value);
+        }
+    }
+
+    private static final class GlobMatcher extends ValueMatcher {
+        private final String prefix;
+        private final String suffix;
+        GlobMatcher(String prefix, String suffix) {
+            this.prefix = prefix;
+            this.suffix = suffix;
+        }
+        boolean isMatch(String value, URL param) {
+            return value != null && value.length() > 0 && value.startsWith(prefix) && value.endsWith(suffix);
+        }
+    }
+
+    private static final class ParamMatcher extends ValueMatcher {
+        private final String key;
+        ParamMatcher(String key) {
+            this.key = key;
+        }
+        boolean isMatch(String value, URL param) {
+            // 没有参数时按字面值匹配
+            return param == null ? UrlUtils.isMatchGlobPattern("$" + key, value)
+                    : UrlUtils.isMatchGlobPattern(param.getRawParameter(key), value);
+        }
+    }
+
+    private static final class IpRangeMatcher extends ValueMatcher {
+        private final long network;
+        private final long mask;
+        IpRangeMatcher(long address, int bits) {
+            this.mask = (0xFFFFFFFFL << (32 - bits)) & 0xFFFFFFFFL;
+            this.network = address & mask;
+        }
+        boolean isMatch(String value, URL param) {
+            long address = toLong(value);
+            return address >= 0 && (address & mask) == network;
+        }
+        /**
+         * @return IPv4地址对应的无符号整数，不是IPv4地址时返回-1
+         */
+        static long toLong(String ip) {
+            if (ip == null) {
+                return -1;
+            }
+            long result = 0;
+            int part = 0;
+            int dots = 0;
+            int digits = 0;
+            for (int i = 0; i < ip.length(); i ++) {
+                char c = ip.charAt(i);
+                if (c == '.') {
+                    if (digits == 0 || ++ dots > 3) {
+                        return -1;
+                    }
+                    result = (result << 8) | part;
+                    part = 0;
+                    digits = 0;
+                } else if (c >= '0' && c <= '9' && digits < 3) {
+                    part = part * 10 + (c - '0');
+                    digits ++;
+                    if (part > 255) {
+                        return -1;
+                    }
+                } else {
+                    return -1;
+                }
+            }
+            if (dots != 3 || digits == 0) {
+                return -1;
+            }
+            return (result << 8) | part;
+        }
+    }
 }
\ No newline at end of file
@@ -17,9 +17,11 @@ package com.alibaba.dubbo.rpc.cluster.router.script;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.script.Bindings;
 import javax.script.Compilable;
@@ -40,6 +42,11 @@ import com.alibaba.dubbo.rpc.cluster.Router;
 
 /**
  * ScriptRouter
+ * <p>
+ * 规则在构造时编译一次，每个线程复用自己的 Bindings。
+ * 配置 route.cache=true 时，按方法名缓存路由结果，并记录计算时传入的 invokers 列表实例，
+ * 该方法的提供者列表变化时重新计算（规则变化会创建新的 ScriptRouter）。
+ * 注册中心按方法给出不同的列表实例，因此各方法的缓存互不覆盖。只适用于不依赖参数、隐式参数等调用上下文的规则。
  * 
  * @author william.liangf
  */
@@ -57,6 +64,14 @@ public class ScriptRouter implements Router {
 
     private final URL url;
 
+    private final CompiledScript function;
+
+    private final ThreadLocal<Bindings> bindings = new ThreadLocal<Bindings>();
+
+    private final boolean cached;
+
+    private final ConcurrentMap<String, RouteCache<?>> routeCaches = new ConcurrentHashMap<String, RouteCache<?>>();
+
     public URL getUrl() {
         return url;
     }
@@ -65,6 +80,7 @@ public class ScriptRouter implements Router {
         this.url = url;
         String type = url.getParameter(Constants.TYPE_KEY);
         this.priority = url.getParameter(Constants.PRIORITY_KEY, 0);
+        this.cached = url.getParameter(Constants.ROUTE_CACHE_KEY, false);
         String rule = url.getParameterAndDecoded(Constants.RULE_KEY);
         if (type == null || type.length() == 0){
             type = Constants.DEFAULT_SCRIPT_TYPE_KEY;
@@ -82,19 +98,59 @@ public class ScriptRouter implements Router {
         }
         this.engine = engine;
         this.rule = rule;
+        CompiledScript function = null;
+        if (engine instanceof Compilable) {
+            try {
+                function = ((Compilable) engine).compile(rule);
+            } catch (ScriptException e) {
+                //编译失败时，在每次路由时按原方式执行并记录错误
+                logger.error("compile route rule error, rule: " + rule + ", url: " + url, e);
+            }
+        }
+        this.function = function;
     }
 
     @SuppressWarnings("unchecked")
     public <T> List<Invoker<T>> route(List<Invoker<T>> invokers, URL url, Invocation invocation) throws RpcException {
+        if (! cached) {
+            return doRoute(invokers, invocation);
+        }
+        String method = invocation.getMethodName() == null ? "" : invocation.getMethodName();
+        RouteCache<T> cache = (RouteCache<T>) routeCaches.get(method);
+        if (cache != null && cache.invokers == invokers) {
+            return cache.result;
+        }
+        List<Invoker<T>> result = doRoute(invokers, invocation);
+        if (result == invokers) {
+            // 规则执行出错，不缓存
+            return result;
+        }
+        result = Collections.unmodifiableList(result);
+        routeCaches.put(method, new RouteCache<T>(invokers, result));
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> List<Invoker<T>> doRoute(List<Invoker<T>> invokers, Invocation invocation) throws RpcException {
         try {
             List<Invoker<T>> invokersCopy = new ArrayList<Invoker<T>>(invokers);
-            Compilable compilable = (Compilable) engine;
-            Bindings bindings = engine.createBindings();
+            Bindings bindings = this.bindings.get();
+            if (bindings == null) {
+                bindings = engine.createBindings();
+                this.bindings.set(bindings);
+            }
             bindings.put("invokers", invokersCopy);
             bindings.put("invocation", invocation);
             bindings.put("context", RpcContext.getContext());
-            CompiledScript function = compilable.compile(rule);
-            Object obj = function.eval(bindings);
+            Object obj;
+            try {
+                obj = function != null ? function.eval(bindings) : engine.eval(rule, bindings);
+            } finally {
+                // 不持有调用结束后的对象
+                bindings.remove("invokers");
+                bindings.remove("invocation");
+                bindings.remove("context");
+            }
             if (obj instanceof Invoker[]) {
                 invokersCopy = Arrays.asList((Invoker<T>[]) obj);
             } else if (obj instanceof Object[]) {
@@ -121,4 +177,17 @@ public class ScriptRouter implements Router {
         return this.priority == c.priority ? rule.compareTo(c.rule) : (this.priority > c.priority ? 1 : -1);
     }
 
-}
\ No newline at end of file
+    private static class RouteCache<T> {
+
+        final List<Invoker<T>> invokers;
+
+        final List<Invoker<T>> result;
+
+        RouteCache(List<Invoker<T>> invokers, List<Invoker<T>> result) {
+            this.invokers = invokers;
+            this.result = result;
+        }
+
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.cluster.support;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.ResultCallback;
+import com.alibaba.dubbo.rpc.ResultFuture;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+
+/**
+ * 以异步方式发出的一次子调用，结果通过 {@link ResultFuture} 回调返回，不占用线程等待。
+ * 不支持异步的协议（如 injvm）同步返回结果，此时调用直接完成。
+ */
+class AsyncCall implements Future<Result>, ResultCallback {
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+
+    private final AtomicBoolean completed = new AtomicBoolean();
+
+    private final ResultCallback listener;
+
+    private volatile Future<?> remote;
+
+    private volatile Result result;
+
+    private volatile Throwable exception;
+
+    private AsyncCall(ResultCallback listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 在当前线程依次向所有 invoker 发出异步调用。
+     * 
+     * @param listener 每个子调用完成时回调，可以为 null
+     * @return 与 invokers 顺序一致的子调用
+     */
+    static <T> List<AsyncCall> invokeAll(List<Invoker<T>> invokers, Invocation invocation, ResultCallback listener) {
+        // ConsumerContextFilter 会在每次调用后清空上下文中的隐式参数，先复制一份
+        Map<String, String> attachments = new HashMap<String, String>(RpcContext.getContext().getAttachments());
+        List<AsyncCall> calls = new ArrayList<AsyncCall>(invokers.size());
+        for (Invoker<T> invoker : invokers) {
+            RpcInvocation inv = new RpcInvocation(invocation, invoker);
+            inv.addAttachmentsIfAbsent(attachments);
+            inv.setAttachment(Constants.ASYNC_KEY, Boolean.TRUE.toString());
+            calls.add(invoke(invoker, inv, listener));
+        }
+        return calls;
+    }
+
+    private static AsyncCall invoke(Invoker<?> invoker, Invocation invocation, ResultCallback listener) {
+        AsyncCall call = new AsyncCall(listener);
+        RpcContext context = RpcContext.getContext();
+        context.setFuture(null);
+        try {
+            Result result = invoker.invoke(invocation);
+            Future<?> future = context.getFuture();
+            if (future instanceof ResultFuture) {
+                call.remote = future;
+                ((ResultFuture<?>) future).setCallback(call);
+            } else {
+                call.done(result);
+            }
+        } catch (Throwable t) {
+            call.caught(t);
+        } finally {
+            context.setFuture(null);
+        }
+        return call;
+    }
+
+    public void done(Result result) {
+        if (completed.compareAndSet(false, true)) {
+            this.result = result;
+            latch.countDown();
+            if (listener != null) {
+                listener.done(result);
+            }
+        }
+    }
+
+    public void caught(Throwable exception) {
+        if (completed.compareAndSet(false, true)) {
+            this.exception = exception;
+            latch.countDown();
+            if (listener != null) {
+                listener.caught(exception);
+            }
+        }
+    }
+
+    /**
+     * 取消仍在途的请求，服务端已经收到的请求仍会执行。
+     */
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        Future<?> future = remote;
+        return future != null && ! isDone() && future.cancel(mayInterruptIfRunning);
+    }
+
+    public boolean isCancelled() {
+        Future<?> future = remote;
+        return future != null && future.isCancelled();
+    }
+
+    public boolean isDone() {
+        return completed.get();
+    }
+
+    public Result get() throws InterruptedException, ExecutionException {
+        latch.await();
+        return getResult();
+    }
+
+    public Result get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (! latch.await(timeout, unit)) {
+            throw new TimeoutException("Waiting async invocation result timeout. timeout: " + unit.toMillis(timeout) + "ms");
+        }
+        return getResult();
+    }
+
+    private Result getResult() throws ExecutionException {
+        if (exception != null) {
+            throw new ExecutionException(exception.getMessage(), exception);
+        }
+        return result;
+    }
+
+}
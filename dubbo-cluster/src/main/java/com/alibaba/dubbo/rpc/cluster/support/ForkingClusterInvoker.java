@@ -29,6 +29,7 @@ import com.alibaba.dubbo.common.utils.NamedThreadFactory;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.ResultCallback;
 import com.alibaba.dubbo.rpc.RpcContext;
 import com.alibaba.dubbo.rpc.RpcException;
 import com.alibaba.dubbo.rpc.cluster.Directory;
@@ -36,6 +37,8 @@ import com.alibaba.dubbo.rpc.cluster.LoadBalance;
 
 /**
  * 并行调用，只要一个成功即返回，通常用于实时性要求较高的操作，但需要浪费更多服务资源。
+ * 配置 async.fanout=true 时，在调用线程上以异步方式发出所有请求，通过回调取第一个成功的结果，
+ * 不再为每个分支占用一个线程，返回后取消其余在途的请求。
  * 
  * <a href="http://en.wikipedia.org/wiki/Fork_(topology)">Fork</a>
  * 
@@ -70,6 +73,26 @@ public class ForkingClusterInvoker<T> extends AbstractClusterInvoker<T>{
         RpcContext.getContext().setInvokers((List)selected);
         final AtomicInteger count = new AtomicInteger();
         final BlockingQueue<Object> ref = new LinkedBlockingQueue<Object>();
+        if (getUrl().getMethodParameter(invocation.getMethodName(), Constants.ASYNC_FANOUT_KEY, false)) {
+            List<AsyncCall> calls = AsyncCall.invokeAll(selected, invocation, new ResultCallback() {
+                public void done(Result result) {
+                    ref.offer(result);
+                }
+                public void caught(Throwable e) {
+                    int value = count.incrementAndGet();
+                    if (value >= selected.size()) {
+                        ref.offer(e);
+                    }
+                }
+            });
+            try {
+                return getResult(ref, selected, timeout);
+            } finally {
+                for (AsyncCall call : calls) {
+                    call.cancel(true);
+                }
+            }
+        }
         for (final Invoker<T> invoker : selected) {
             executor.execute(new Runnable() {
                 public void run() {
@@ -85,8 +108,15 @@ public class ForkingClusterInvoker<T> extends AbstractClusterInvoker<T>{
                 }
             });
         }
+        return getResult(ref, selected, timeout);
+    }
+
+    private Result getResult(BlockingQueue<Object> ref, List<Invoker<T>> selected, int timeout) throws RpcException {
         try {
             Object ret = ref.poll(timeout, TimeUnit.MILLISECONDS);
+            if (ret == null) {
+                throw new RpcException(RpcException.TIMEOUT_EXCEPTION, "Failed to forking invoke provider " + selected + ", waiting for the result timeout. timeout: " + timeout + "ms");
+            }
             if (ret instanceof Throwable) {
                 Throwable e = (Throwable) ret;
                 throw new RpcException(e instanceof RpcException ? ((RpcException)e).getCode() : 0, "Failed to forking invoke provider " + selected + ", but no luck to perform the invocation. Last error is: " + e.getMessage(), e.getCause() != null ? e.getCause() : e);
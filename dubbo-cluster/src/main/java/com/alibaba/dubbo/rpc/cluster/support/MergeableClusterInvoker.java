@@ -84,13 +84,22 @@ public class MergeableClusterInvoker<T> implements Invoker<T> {
         }
         
         Map<String, Future<Result>> results = new HashMap<String, Future<Result>>();
-        for( final Invoker<T> invoker : invokers ) {
-            Future<Result> future = executor.submit( new Callable<Result>() {
-                public Result call() throws Exception {
-                    return invoker.invoke(new RpcInvocation(invocation, invoker));
-                }
-            } );
-            results.put( invoker.getUrl().getServiceKey(), future );
+        // async.fanout=true 时在当前线程异步发出所有分组的请求，结果通过回调返回，不占用线程池
+        boolean async = getUrl().getMethodParameter( invocation.getMethodName(), Constants.ASYNC_FANOUT_KEY, false );
+        if ( async ) {
+            List<AsyncCall> calls = AsyncCall.invokeAll( invokers, invocation, null );
+            for ( int i = 0; i < invokers.size(); i ++ ) {
+                results.put( invokers.get( i ).getUrl().getServiceKey(), calls.get( i ) );
+            }
+        } else {
+            for( final Invoker<T> invoker : invokers ) {
+                Future<Result> future = executor.submit( new Callable<Result>() {
+                    public Result call() throws Exception {
+                        return invoker.invoke(new RpcInvocation(invocation, invoker));
+                    }
+                } );
+                results.put( invoker.getUrl().getServiceKey(), future );
+            }
         }
 
         Object result = null;
@@ -98,26 +107,35 @@ public class MergeableClusterInvoker<T> implements Invoker<T> {
         List<Result> resultList = new ArrayList<Result>( results.size() );
         
         int timeout = getUrl().getMethodParameter( invocation.getMethodName(), Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT );
-        for ( Map.Entry<String, Future<Result>> entry : results.entrySet() ) {
-            Future<Result> future = entry.getValue();
-            try {
-                Result r = future.get(timeout, TimeUnit.MILLISECONDS);
-                if (r.hasException()) {
-                    log.error(new StringBuilder(32).append("Invoke ")
-                                  .append(getGroupDescFromServiceKey(entry.getKey()))
-                                  .append(" failed: ")
-                                  .append(r.getException().getMessage()).toString(),
-                              r.getException());
-                } else {
-                    resultList.add(r);
+        try {
+            for ( Map.Entry<String, Future<Result>> entry : results.entrySet() ) {
+                Future<Result> future = entry.getValue();
+                try {
+                    Result r = future.get(timeout, TimeUnit.MILLISECONDS);
+                    if (r.hasException()) {
+                        log.error(new StringBuilder(32).append("Invoke ")
+                                      .append(getGroupDescFromServiceKey(entry.getKey()))
+                                      .append(" failed: ")
+                                      .append(r.getException().getMessage()).toString(),
+                                  r.getException());
+                    } else {
+                        resultList.add(r);
+                    }
+                } catch ( Exception e ) {
+                    throw new RpcException( new StringBuilder( 32 )
+                                                    .append( "Failed to invoke service " )
+                                                    .append( entry.getKey() )
+                                                    .append( ": " )
+                                                    .append( e.getMessage() ).toString(),
+                                            e );
+                }
+            }
+        } finally {
+            if ( async ) {
+                // 出错时取消其余在途的请求
+                for ( Future<Result> future : results.values() ) {
+                    future.cancel( true );
                 }
-            } catch ( Exception e ) {
-                throw new RpcException( new StringBuilder( 32 )
-                                                .append( "Failed to invoke service " )
-                                                .append( entry.getKey() )
-                                                .append( ": " )
-                                                .append( e.getMessage() ).toString(),
-                                        e );
             }
         }
         
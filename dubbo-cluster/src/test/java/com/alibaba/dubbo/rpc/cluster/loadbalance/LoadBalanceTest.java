@@ -16,6 +16,8 @@
 package com.alibaba.dubbo.rpc.cluster.loadbalance;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -33,6 +35,7 @@ import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.extension.ExtensionLoader;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.RpcStatus;
 import com.alibaba.dubbo.rpc.cluster.LoadBalance;
 
 /**
@@ -134,6 +137,151 @@ public class LoadBalanceTest {
     }
     
     
+    @Test
+    public void testSmoothRoundRobinLoadBalance_select() {
+        int runs = 10000;
+        Map<Invoker,AtomicLong> counter = getInvokeCounter(runs,SmoothRoundRobinLoadBalance.NAME);
+        for (Invoker minvoker :counter.keySet() ){
+            Long count = counter.get(minvoker).get();
+            Assert.assertTrue("abs diff shoud < 1", Math.abs(count-runs/(0f+invokers.size())) <1f);
+        }
+    }
+
+    @Test
+    public void testSmoothRoundRobinLoadBalance_weight() {
+        Invoker<LoadBalanceTest> a = weightInvoker("test://127.0.0.1:20880/DemoService?weight=5");
+        Invoker<LoadBalanceTest> b = weightInvoker("test://127.0.0.1:20881/DemoService?weight=1");
+        Invoker<LoadBalanceTest> c = weightInvoker("test://127.0.0.1:20882/DemoService?weight=1");
+        List<Invoker<LoadBalanceTest>> weightInvokers = new ArrayList<Invoker<LoadBalanceTest>>();
+        weightInvokers.add(a);
+        weightInvokers.add(b);
+        weightInvokers.add(c);
+        LoadBalance lb = ExtensionLoader.getExtensionLoader(LoadBalance.class).getExtension(SmoothRoundRobinLoadBalance.NAME);
+        Invoker[] expected = new Invoker[] {a, a, b, a, c, a, a};
+        for (int round = 0; round < 3; round ++) {
+            for (Invoker invoker : expected) {
+                // 每次传入新的列表对象，模拟路由后的结果，提供者不变时轮询状态不会重置
+                Assert.assertSame(invoker, lb.select(new ArrayList<Invoker<LoadBalanceTest>>(weightInvokers), a.getUrl(), invocation));
+            }
+        }
+    }
+
+    @Test
+    public void testSmoothRoundRobinLoadBalance_warmup() {
+        long timestamp = System.currentTimeMillis() - Constants.DEFAULT_WARMUP / 2;
+        Invoker<LoadBalanceTest> a = weightInvoker("test://127.0.0.1:20880/DemoService?weight=100");
+        Invoker<LoadBalanceTest> b = weightInvoker("test://127.0.0.1:20881/DemoService?weight=100&timestamp=" + timestamp);
+        List<Invoker<LoadBalanceTest>> weightInvokers = new ArrayList<Invoker<LoadBalanceTest>>();
+        weightInvokers.add(a);
+        weightInvokers.add(b);
+        LoadBalance lb = ExtensionLoader.getExtensionLoader(LoadBalance.class).getExtension(SmoothRoundRobinLoadBalance.NAME);
+        int countB = 0;
+        for (int i = 0; i < 1500; i ++) {
+            if (lb.select(weightInvokers, a.getUrl(), invocation) == b) {
+                countB ++;
+            }
+        }
+        // 预热到一半，权重约为 50，选中比例约 1/3
+        Assert.assertTrue("countB " + countB, countB > 400 && countB < 600);
+    }
+
+    @Test
+    public void testPeakEwmaLoadBalance_select() {
+        List<Invoker<LoadBalanceTest>> ewmaInvokers = new ArrayList<Invoker<LoadBalanceTest>>();
+        for (int i = 0; i < 4; i ++) {
+            ewmaInvokers.add(weightInvoker("test://127.0.0.1:" + (20990 + i) + "/DemoService"));
+        }
+        // 第一个提供者响应慢，其它提供者响应快
+        for (int i = 0; i < ewmaInvokers.size(); i ++) {
+            URL url = ewmaInvokers.get(i).getUrl();
+            RpcStatus.beginCount(url, "method1");
+            RpcStatus.endCount(url, "method1", i == 0 ? 500 : 5, true);
+        }
+        LoadBalance lb = ExtensionLoader.getExtensionLoader(LoadBalance.class).getExtension(PeakEwmaLoadBalance.NAME);
+        Map<Invoker, AtomicLong> counter = new HashMap<Invoker, AtomicLong>();
+        for (Invoker invoker : ewmaInvokers) {
+            counter.put(invoker, new AtomicLong());
+        }
+        for (int i = 0; i < 1000; i ++) {
+            counter.get(lb.select(ewmaInvokers, ewmaInvokers.get(0).getUrl(), invocation)).incrementAndGet();
+        }
+        Assert.assertEquals(0, counter.get(ewmaInvokers.get(0)).get());
+        for (int i = 1; i < ewmaInvokers.size(); i ++) {
+            Assert.assertTrue(counter.get(ewmaInvokers.get(i)).get() > 200);
+        }
+        // 快的提供者上积压了大量请求后，慢的提供者也会被选中
+        for (int i = 1; i < ewmaInvokers.size(); i ++) {
+            for (int j = 0; j < 200; j ++) {
+                RpcStatus.beginCount(ewmaInvokers.get(i).getUrl(), "method1");
+            }
+        }
+        Invoker selected = null;
+        for (int i = 0; i < 100 && selected != ewmaInvokers.get(0); i ++) {
+            selected = lb.select(ewmaInvokers, ewmaInvokers.get(0).getUrl(), invocation);
+        }
+        Assert.assertSame(ewmaInvokers.get(0), selected);
+    }
+
+    private Invoker<LoadBalanceTest> weightInvoker(String url) {
+        Invoker<LoadBalanceTest> invoker = EasyMock.createMock(Invoker.class);
+        EasyMock.expect(invoker.isAvailable()).andReturn(true).anyTimes();
+        EasyMock.expect(invoker.getInterface()).andReturn(LoadBalanceTest.class).anyTimes();
+        EasyMock.expect(invoker.getUrl()).andReturn(URL.valueOf(url)).anyTimes();
+        EasyMock.replay(invoker);
+        return invoker;
+    }
+
+    @Test
+    public void testConsistentHashLoadBalance_select() {
+        List<Invoker<LoadBalanceTest>> hashInvokers = new ArrayList<Invoker<LoadBalanceTest>>();
+        for (int i = 0; i < 5; i ++) {
+            Invoker<LoadBalanceTest> invoker = EasyMock.createMock(Invoker.class);
+            EasyMock.expect(invoker.isAvailable()).andReturn(true).anyTimes();
+            EasyMock.expect(invoker.getInterface()).andReturn(LoadBalanceTest.class).anyTimes();
+            EasyMock.expect(invoker.getUrl()).andReturn(URL.valueOf("test://127.0.0.1:" + (20880 + i) + "/DemoService")).anyTimes();
+            EasyMock.replay(invoker);
+            hashInvokers.add(invoker);
+        }
+        LoadBalance lb = ExtensionLoader.getExtensionLoader(LoadBalance.class).getExtension(ConsistentHashLoadBalance.NAME);
+        Map<Object, Invoker> selected = new HashMap<Object, Invoker>();
+        Map<Invoker, AtomicLong> counter = new HashMap<Invoker, AtomicLong>();
+        for (int i = 0; i < 1000; i ++) {
+            Invoker sinvoker = lb.select(hashInvokers, hashInvokers.get(0).getUrl(), hashInvocation("key" + i));
+            selected.put("key" + i, sinvoker);
+            if (! counter.containsKey(sinvoker)) {
+                counter.put(sinvoker, new AtomicLong());
+            }
+            counter.get(sinvoker).incrementAndGet();
+        }
+        Assert.assertEquals(5, counter.size());
+        for (AtomicLong count : counter.values()) {
+            Assert.assertTrue("count " + count + " too far from avg", count.get() > 100 && count.get() < 300);
+        }
+        // 路由后得到的是新列表对象，提供者不变时选择结果不变
+        List<Invoker<LoadBalanceTest>> routed = new ArrayList<Invoker<LoadBalanceTest>>(hashInvokers);
+        Collections.reverse(routed);
+        for (int i = 0; i < 1000; i ++) {
+            Assert.assertSame(selected.get("key" + i), lb.select(routed, routed.get(0).getUrl(), hashInvocation("key" + i)));
+        }
+        // 下线一个提供者，只有原来落在它上面的 key 会迁移
+        Invoker removed = routed.remove(0);
+        for (int i = 0; i < 1000; i ++) {
+            Invoker sinvoker = lb.select(routed, routed.get(0).getUrl(), hashInvocation("key" + i));
+            Assert.assertNotSame(removed, sinvoker);
+            if (selected.get("key" + i) != removed) {
+                Assert.assertSame(selected.get("key" + i), sinvoker);
+            }
+        }
+    }
+
+    private Invocation hashInvocation(Object argument) {
+        Invocation hashInvocation = EasyMock.createMock(Invocation.class);
+        EasyMock.expect(hashInvocation.getMethodName()).andReturn("method1").anyTimes();
+        EasyMock.expect(hashInvocation.getArguments()).andReturn(new Object[] {argument}).anyTimes();
+        EasyMock.replay(hashInvocation);
+        return hashInvocation;
+    }
+    
     public Map<Invoker,AtomicLong> getInvokeCounter(int runs,String loadbalanceName) {
         Map<Invoker,AtomicLong> counter = new ConcurrentHashMap<Invoker,AtomicLong>();
         LoadBalance lb = ExtensionLoader.getExtensionLoader(LoadBalance.class).getExtension(loadbalanceName);
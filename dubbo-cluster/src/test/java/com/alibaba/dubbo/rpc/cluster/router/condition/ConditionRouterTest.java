@@ -31,6 +31,7 @@ import com.alibaba.dubbo.common.utils.NetUtils;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.RpcInvocation;
 import com.alibaba.dubbo.rpc.cluster.Router;
+import com.alibaba.dubbo.rpc.cluster.directory.StaticDirectory;
 import com.alibaba.dubbo.rpc.cluster.router.MockInvoker;
 
 public class ConditionRouterTest {
@@ -174,4 +175,65 @@ public class ConditionRouterTest {
         Assert.assertEquals(0, fileredInvokers.size());
     }
 
+    @Test
+    public void testRoute_IpRange(){
+        Router router = new ConditionRouterFactory().getRouter(getRouteUrl("host = 10.20.0.0/16 => host = 10.20.3.0/24 & host != 10.20.3.4"));
+        List<Invoker<String>> invokers = new ArrayList<Invoker<String>>();
+        Invoker<String> invoker1 = new MockInvoker<String>(URL.valueOf("dubbo://10.20.3.3:20880/com.foo.BarService")) ;
+        Invoker<String> invoker2 = new MockInvoker<String>(URL.valueOf("dubbo://10.20.3.4:20880/com.foo.BarService")) ;
+        Invoker<String> invoker3 = new MockInvoker<String>(URL.valueOf("dubbo://10.20.4.3:20880/com.foo.BarService")) ;
+        Invoker<String> invoker4 = new MockInvoker<String>(URL.valueOf("dubbo://localhost:20880/com.foo.BarService")) ;
+        invokers.add(invoker1);
+        invokers.add(invoker2);
+        invokers.add(invoker3);
+        invokers.add(invoker4);
+        List<Invoker<String>> fileredInvokers = router.route(invokers, URL.valueOf("consumer://10.20.1.1/com.foo.BarService"), new RpcInvocation());
+        Assert.assertEquals(1, fileredInvokers.size());
+        Assert.assertEquals(invoker1, fileredInvokers.get(0));
+        // when 条件不匹配，不过滤
+        fileredInvokers = router.route(invokers, URL.valueOf("consumer://10.21.1.1/com.foo.BarService"), new RpcInvocation());
+        Assert.assertEquals(invokers, fileredInvokers);
+    }
+
+    @Test
+    public void testRoute_Glob(){
+        Router router = new ConditionRouterFactory().getRouter(getRouteUrl("application = app* => host = 10.20.*.3 & path != *Service"));
+        List<Invoker<String>> invokers = new ArrayList<Invoker<String>>();
+        Invoker<String> invoker1 = new MockInvoker<String>(URL.valueOf("dubbo://10.20.3.3:20880/com.foo.BarService")) ;
+        Invoker<String> invoker2 = new MockInvoker<String>(URL.valueOf("dubbo://10.20.3.3:20880/com.foo.BarProvider")) ;
+        Invoker<String> invoker3 = new MockInvoker<String>(URL.valueOf("dubbo://10.20.3.4:20880/com.foo.BarProvider")) ;
+        invokers.add(invoker1);
+        invokers.add(invoker2);
+        invokers.add(invoker3);
+        List<Invoker<String>> fileredInvokers = router.route(invokers, URL.valueOf("consumer://10.20.1.1/com.foo.BarService?application=app1"), new RpcInvocation());
+        Assert.assertEquals(1, fileredInvokers.size());
+        Assert.assertEquals(invoker2, fileredInvokers.get(0));
+    }
+
+    @Test
+    public void testRuntimeDefault(){
+        // 不改写 runtime，由各 Directory 自行决定是否预先计算
+        Router router = new ConditionRouterFactory().getRouter(getRouteUrl("=> host = 1.2.3.4"));
+        Assert.assertNull(router.getUrl().getParameter(Constants.RUNTIME_KEY));
+        router = new ConditionRouterFactory().getRouter(getRouteUrl("=> host = 1.2.3.4").addParameter(Constants.RUNTIME_KEY, false));
+        Assert.assertFalse(router.getUrl().getParameter(Constants.RUNTIME_KEY, true));
+    }
+
+    @Test
+    public void testRoute_StaticDirectoryAtRuntime(){
+        Router router = new ConditionRouterFactory().getRouter(getRouteUrl("=> host = 10.20.3.3"));
+        List<Invoker<String>> invokers = new ArrayList<Invoker<String>>();
+        Invoker<String> invoker1 = new MockInvoker<String>(URL.valueOf("dubbo://10.20.3.3:20880/com.foo.BarService")) ;
+        Invoker<String> invoker2 = new MockInvoker<String>(URL.valueOf("dubbo://10.20.3.4:20880/com.foo.BarService")) ;
+        invokers.add(invoker1);
+        invokers.add(invoker2);
+        List<Router> routers = new ArrayList<Router>();
+        routers.add(router);
+        // 不会预先计算路由的 Directory 在调用时执行未配置 runtime 的条件路由
+        StaticDirectory<String> directory = new StaticDirectory<String>(invokers, routers);
+        List<Invoker<String>> fileredInvokers = directory.list(new RpcInvocation());
+        Assert.assertEquals(1, fileredInvokers.size());
+        Assert.assertEquals(invoker1, fileredInvokers.get(0));
+    }
+
 }
\ No newline at end of file
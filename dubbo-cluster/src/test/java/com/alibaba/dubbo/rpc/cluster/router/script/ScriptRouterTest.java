@@ -18,6 +18,7 @@ package com.alibaba.dubbo.rpc.cluster.router.script;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import junit.framework.Assert;
 
@@ -28,6 +29,7 @@ import org.junit.Test;
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.RpcContext;
 import com.alibaba.dubbo.rpc.RpcInvocation;
 import com.alibaba.dubbo.rpc.cluster.Router;
 import com.alibaba.dubbo.rpc.cluster.router.MockInvoker;
@@ -84,5 +86,79 @@ public class ScriptRouterTest {
         Assert.assertEquals(invoker2, fileredInvokers.get(0));
         Assert.assertEquals(invoker3, fileredInvokers.get(1));
     }
+
+    @Test
+    public void testRoute_Cached(){
+        String script = "function route(invokers,invocation){" +
+                        "var result = new java.util.ArrayList(invokers.size());" +
+                        "for (i=0;i<invokers.size(); i++){ " +
+                            "if (invocation.getMethodName() == 'all' || invokers.get(i).isAvailable()) {" +
+                                "result.add(invokers.get(i)) ;" +
+                            "}" +
+                        "} ; " +
+                        "return result;" +
+                        "} route(invokers,invocation)";
+        Router router = new ScriptRouterFactory().getRouter(getRouteUrl(script).addParameter(Constants.ROUTE_CACHE_KEY, true));
+
+        List<Invoker<String>> invokers = new ArrayList<Invoker<String>>();
+        invokers.add(new MockInvoker<String>(false));
+        invokers.add(new MockInvoker<String>(true));
+        List<Invoker<String>> available = router.route(invokers, invokers.get(0).getUrl(), new RpcInvocation("echo", new Class<?>[0], new Object[0]));
+        Assert.assertEquals(1, available.size());
+        Assert.assertSame(available, router.route(invokers, invokers.get(0).getUrl(), new RpcInvocation("echo", new Class<?>[0], new Object[0])));
+        List<Invoker<String>> all = router.route(invokers, invokers.get(0).getUrl(), new RpcInvocation("all", new Class<?>[0], new Object[0]));
+        Assert.assertEquals(2, all.size());
+
+        // 提供者列表变化后重新计算
+        List<Invoker<String>> changed = new ArrayList<Invoker<String>>(invokers);
+        changed.add(new MockInvoker<String>(true));
+        List<Invoker<String>> result = router.route(changed, invokers.get(0).getUrl(), new RpcInvocation("echo", new Class<?>[0], new Object[0]));
+        Assert.assertEquals(2, result.size());
+        Assert.assertNotSame(available, result);
+    }
+
+    @Test
+    public void testRoute_CachedPerMethod(){
+        String script = "function route(invokers,invocation,context){" +
+                        "context.get('counter').incrementAndGet();" +
+                        "return invokers;" +
+                        "} route(invokers,invocation,context)";
+        Router router = new ScriptRouterFactory().getRouter(getRouteUrl(script).addParameter(Constants.ROUTE_CACHE_KEY, true));
+        AtomicInteger counter = new AtomicInteger();
+        RpcContext.getContext().set("counter", counter);
+        try {
+            // 注册中心为每个方法给出不同的列表实例
+            List<Invoker<String>> fooInvokers = new ArrayList<Invoker<String>>();
+            fooInvokers.add(new MockInvoker<String>());
+            List<Invoker<String>> barInvokers = new ArrayList<Invoker<String>>(fooInvokers);
+            for (int i = 0; i < 10; i ++) {
+                router.route(fooInvokers, fooInvokers.get(0).getUrl(), new RpcInvocation("foo", new Class<?>[0], new Object[0]));
+                router.route(barInvokers, barInvokers.get(0).getUrl(), new RpcInvocation("bar", new Class<?>[0], new Object[0]));
+            }
+            Assert.assertEquals(2, counter.get());
+        } finally {
+            RpcContext.getContext().remove("counter");
+        }
+    }
+
+    @Test
+    public void testRoute_NotCachedByDefault(){
+        Router router = new ScriptRouterFactory().getRouter(getRouteUrl("function route(op1,op2){return op1} route(invokers)"));
+        List<Invoker<String>> invokers = new ArrayList<Invoker<String>>();
+        invokers.add(new MockInvoker<String>());
+        List<Invoker<String>> first = router.route(invokers, invokers.get(0).getUrl(), new RpcInvocation());
+        List<Invoker<String>> second = router.route(invokers, invokers.get(0).getUrl(), new RpcInvocation());
+        Assert.assertEquals(first, second);
+        Assert.assertNotSame(first, second);
+    }
+
+    @Test
+    public void testRoute_ErrorReturnAll(){
+        Router router = new ScriptRouterFactory().getRouter(getRouteUrl("route(invokers)").addParameter(Constants.ROUTE_CACHE_KEY, true));
+        List<Invoker<String>> invokers = new ArrayList<Invoker<String>>();
+        invokers.add(new MockInvoker<String>());
+        Assert.assertSame(invokers, router.route(invokers, invokers.get(0).getUrl(), new RpcInvocation()));
+        Assert.assertSame(invokers, router.route(invokers, invokers.get(0).getUrl(), new RpcInvocation()));
+    }
     //TODO 异常场景测试。
 }
\ No newline at end of file
@@ -31,10 +31,12 @@ import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcContext;
 import com.alibaba.dubbo.rpc.RpcException;
 import com.alibaba.dubbo.rpc.RpcInvocation;
 import com.alibaba.dubbo.rpc.RpcResult;
 import com.alibaba.dubbo.rpc.cluster.Directory;
+import com.alibaba.dubbo.rpc.cluster.directory.StaticDirectory;
 
 /**
  * ForkingClusterInvokerTest
@@ -149,4 +151,79 @@ public class ForkingClusterInvokerTest {
         Assert.assertSame(result, ret);
     }
     
+
+    @Test
+    public void testInvokeAsyncFanout() throws Exception {
+        resetInvokerToNoException();
+        RpcInvocation asyncInvocation = new RpcInvocation("method1", new Class<?>[0], new Object[0]);
+        URL asyncUrl = URL.valueOf("test://test:11/test?forks=3&async.fanout=true");
+        final MockAsyncInvoker<ForkingClusterInvokerTest> async1 = new MockAsyncInvoker<ForkingClusterInvokerTest>(ForkingClusterInvokerTest.class, asyncUrl);
+        final MockAsyncInvoker<ForkingClusterInvokerTest> async2 = new MockAsyncInvoker<ForkingClusterInvokerTest>(ForkingClusterInvokerTest.class, asyncUrl);
+        final MockAsyncInvoker<ForkingClusterInvokerTest> async3 = new MockAsyncInvoker<ForkingClusterInvokerTest>(ForkingClusterInvokerTest.class, asyncUrl);
+        List<Invoker<ForkingClusterInvokerTest>> asyncInvokers = new ArrayList<Invoker<ForkingClusterInvokerTest>>();
+        asyncInvokers.add(async1);
+        asyncInvokers.add(async2);
+        asyncInvokers.add(async3);
+        Directory<ForkingClusterInvokerTest> asyncDic = new StaticDirectory<ForkingClusterInvokerTest>(asyncUrl, asyncInvokers);
+        final Result expected = new RpcResult("ok");
+        new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                }
+                async1.future.fail(new RuntimeException("fail"));
+                async2.future.complete(expected);
+            }
+        }).start();
+
+        RpcContext.getContext().setAttachment("key", "value");
+        Result ret = new ForkingClusterInvoker<ForkingClusterInvokerTest>(asyncDic).invoke(asyncInvocation);
+        Assert.assertSame(expected, ret);
+        // 所有请求都在调用线程上发出，未完成的请求被取消
+        Assert.assertSame(Thread.currentThread(), async3.invokeThread);
+        Assert.assertTrue(async3.future.isCancelled());
+        Assert.assertFalse(async2.future.isCancelled());
+        Assert.assertEquals("value", async3.invocation.getAttachment("key"));
+        Assert.assertNull(RpcContext.getContext().getFuture());
+    }
+
+    @Test
+    public void testInvokeAsyncFanoutException() {
+        resetInvokerToNoException();
+        RpcInvocation asyncInvocation = new RpcInvocation("method1", new Class<?>[0], new Object[0]);
+        URL asyncUrl = URL.valueOf("test://test:11/test?forks=2&async.fanout=true");
+        MockAsyncInvoker<ForkingClusterInvokerTest> async1 = new MockAsyncInvoker<ForkingClusterInvokerTest>(ForkingClusterInvokerTest.class, asyncUrl);
+        MockAsyncInvoker<ForkingClusterInvokerTest> async2 = new MockAsyncInvoker<ForkingClusterInvokerTest>(ForkingClusterInvokerTest.class, asyncUrl);
+        async1.future.fail(new RuntimeException("fail1"));
+        async2.future.fail(new RuntimeException("fail2"));
+        List<Invoker<ForkingClusterInvokerTest>> asyncInvokers = new ArrayList<Invoker<ForkingClusterInvokerTest>>();
+        asyncInvokers.add(async1);
+        asyncInvokers.add(async2);
+        Directory<ForkingClusterInvokerTest> asyncDic = new StaticDirectory<ForkingClusterInvokerTest>(asyncUrl, asyncInvokers);
+        try {
+            new ForkingClusterInvoker<ForkingClusterInvokerTest>(asyncDic).invoke(asyncInvocation);
+            Assert.fail();
+        } catch (RpcException expected) {
+            Assert.assertTrue(expected.getMessage().contains("Failed to forking invoke provider"));
+        }
+    }
+
+    @Test
+    public void testInvokeAsyncFanoutTimeout() {
+        resetInvokerToNoException();
+        RpcInvocation asyncInvocation = new RpcInvocation("method1", new Class<?>[0], new Object[0]);
+        URL asyncUrl = URL.valueOf("test://test:11/test?forks=2&async.fanout=true&timeout=50");
+        MockAsyncInvoker<ForkingClusterInvokerTest> async1 = new MockAsyncInvoker<ForkingClusterInvokerTest>(ForkingClusterInvokerTest.class, asyncUrl);
+        List<Invoker<ForkingClusterInvokerTest>> asyncInvokers = new ArrayList<Invoker<ForkingClusterInvokerTest>>();
+        asyncInvokers.add(async1);
+        Directory<ForkingClusterInvokerTest> asyncDic = new StaticDirectory<ForkingClusterInvokerTest>(asyncUrl, asyncInvokers);
+        try {
+            new ForkingClusterInvoker<ForkingClusterInvokerTest>(asyncDic).invoke(asyncInvocation);
+            Assert.fail();
+        } catch (RpcException expected) {
+            Assert.assertTrue(expected.isTimeout());
+        }
+        Assert.assertTrue(async1.future.isCancelled());
+    }
 }
\ No newline at end of file
@@ -31,6 +31,7 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -229,6 +230,62 @@ public class MergeableClusterInvokerTest {
 
     }
 
+    @Test
+    public void testGetMenuAsyncFanout() throws Exception {
+
+        url = url.addParameter( Constants.MERGER_KEY, ".merge" )
+                .addParameter( Constants.ASYNC_FANOUT_KEY, true );
+
+        EasyMock.expect( invocation.getMethodName() ).andReturn( "getMenu" ).anyTimes();
+        EasyMock.expect( invocation.getParameterTypes() ).andReturn( new Class<?>[]{ } ).anyTimes();
+        EasyMock.expect( invocation.getArguments() ).andReturn( new Object[]{ } ).anyTimes();
+        EasyMock.expect( invocation.getAttachments() ).andReturn( new HashMap<String, String>() )
+                .anyTimes();
+        EasyMock.expect( invocation.getInvoker() ).andReturn( firstInvoker ).anyTimes();
+        EasyMock.replay( invocation );
+
+        final MockAsyncInvoker<MenuService> first = new MockAsyncInvoker<MenuService>(
+                MenuService.class, url.addParameter( Constants.GROUP_KEY, "first" ) );
+        final MockAsyncInvoker<MenuService> second = new MockAsyncInvoker<MenuService>(
+                MenuService.class, url.addParameter( Constants.GROUP_KEY, "second" ) );
+
+        EasyMock.expect( directory.list( invocation ) ).andReturn( new ArrayList() {
+
+            {
+                add( first );
+                add( second );
+            }
+        } ).anyTimes();
+        EasyMock.expect( directory.getUrl() ).andReturn( url ).anyTimes();
+        EasyMock.expect( directory.getInterface() ).andReturn( MenuService.class ).anyTimes();
+        EasyMock.replay( directory );
+
+        // 两个分组的结果在调用线程之外完成
+        new Thread( new Runnable() {
+            public void run() {
+                try {
+                    Thread.sleep( 50 );
+                } catch ( InterruptedException e ) {
+                }
+                second.future.complete( new RpcResult( secondMenu ) );
+                first.future.complete( new RpcResult( firstMenu ) );
+            }
+        } ).start();
+
+        mergeableClusterInvoker = new MergeableClusterInvoker<MenuService>( directory );
+
+        Result result = mergeableClusterInvoker.invoke( invocation );
+        Assert.assertSame( Thread.currentThread(), first.invokeThread );
+        Assert.assertSame( Thread.currentThread(), second.invokeThread );
+        Assert.assertTrue( result.getValue() instanceof Menu );
+        Map<String, List<String>> menus = ( ( Menu ) result.getValue() ).getMenus();
+        Assert.assertEquals( 3, menus.size() );
+        Assert.assertTrue( menus.get( "2" ).contains( "20" ) );
+        Assert.assertTrue( menus.get( "2" ).contains( "23" ) );
+        Assert.assertEquals( Arrays.asList( "30", "31", "32" ), menus.get( "3" ) );
+
+    }
+
     static void merge( Map<String, List<String>> first, Map<String, List<String>> second ) {
         for( Map.Entry<String, List<String>> entry : second.entrySet() ) {
             List<String> value = first.get( entry.getKey() );
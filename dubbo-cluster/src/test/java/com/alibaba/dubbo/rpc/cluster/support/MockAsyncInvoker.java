@@ -0,0 +1,137 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.cluster.support;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.ResultCallback;
+import com.alibaba.dubbo.rpc.ResultFuture;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcResult;
+
+/**
+ * 模拟异步调用的 Invoker，由测试决定何时返回结果。
+ */
+class MockAsyncInvoker<T> implements Invoker<T> {
+
+    private final Class<T> type;
+
+    private final URL url;
+
+    volatile Invocation invocation;
+
+    volatile Thread invokeThread;
+
+    final MockResultFuture future = new MockResultFuture();
+
+    MockAsyncInvoker(Class<T> type, URL url) {
+        this.type = type;
+        this.url = url;
+    }
+
+    public Class<T> getInterface() {
+        return type;
+    }
+
+    public URL getUrl() {
+        return url;
+    }
+
+    public boolean isAvailable() {
+        return true;
+    }
+
+    public void destroy() {
+    }
+
+    public Result invoke(Invocation invocation) throws RpcException {
+        this.invocation = invocation;
+        this.invokeThread = Thread.currentThread();
+        if (! Boolean.TRUE.toString().equals(invocation.getAttachment(Constants.ASYNC_KEY))) {
+            throw new IllegalStateException("not async");
+        }
+        RpcContext.getContext().setFuture(future);
+        return new RpcResult();
+    }
+
+    static class MockResultFuture implements ResultFuture<Object> {
+
+        private ResultCallback callback;
+
+        private Result result;
+
+        private Throwable exception;
+
+        volatile boolean cancelled;
+
+        public synchronized void setCallback(ResultCallback callback) {
+            this.callback = callback;
+            if (result != null) {
+                callback.done(result);
+            } else if (exception != null) {
+                callback.caught(exception);
+            }
+        }
+
+        synchronized void complete(Result result) {
+            this.result = result;
+            if (callback != null) {
+                callback.done(result);
+            }
+        }
+
+        synchronized void fail(Throwable exception) {
+            this.exception = exception;
+            if (callback != null) {
+                callback.caught(exception);
+            }
+        }
+
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (isDone()) {
+                return false;
+            }
+            cancelled = true;
+            fail(new RuntimeException("canceled"));
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public synchronized boolean isDone() {
+            return result != null || exception != null;
+        }
+
+        public Object get() throws InterruptedException, ExecutionException {
+            throw new UnsupportedOperationException();
+        }
+
+        public Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
@@ -57,6 +57,10 @@ public class Constants {
 
     public static final String  CACHE_KEY                          = "cache";
 
+    public static final String  CACHE_COALESCE_KEY                 = "cache.coalesce";
+
+    public static final String  CACHE_REFRESH_KEY                  = "cache.refresh";
+
     public static final String  DYNAMIC_KEY                        = "dynamic";
 
     public static final String  DUBBO_PROPERTIES_KEY               = "dubbo.properties.file";
@@ -80,6 +84,8 @@ public class Constants {
 
     public static final int     DEFAULT_PAYLOAD                    = 8 * 1024 * 1024;                      // 8M
 
+    public static final int     DEFAULT_COMPRESSION_THRESHOLD      = 64 * 1024;                            // 64K
+
     public static final String  DEFAULT_CLUSTER                    = "failover";
 
     public static final String  DEFAULT_DIRECTORY                  = "dubbo";
@@ -120,8 +126,14 @@ public class Constants {
 
     public static final int     DEFAULT_QUEUES                     = 0;
 
+    public static final int     DEFAULT_ISOLATION_THREADS          = 20;
+
+    public static final int     DEFAULT_VIRTUAL_THREADS            = 10000;
+
     public static final int     DEFAULT_ALIVE                      = 60 * 1000;
 
+    public static final int     DEFAULT_QUEUE_DELAY                = 100;
+
     public static final int     DEFAULT_CONNECTIONS                = 0;
 
     public static final int     DEFAULT_ACCEPTS                    = 0;
@@ -139,6 +151,8 @@ public class Constants {
     // default buffer size is 8k.
     public static final int     DEFAULT_BUFFER_SIZE                = 8 * 1024;
 
+    public static final int     DEFAULT_WRITE_BATCH_SIZE           = 64 * 1024;
+
     public static final int     MAX_BUFFER_SIZE                    = 16 * 1024;
 
     public static final int     MIN_BUFFER_SIZE                    = 1 * 1024;
@@ -210,20 +224,51 @@ public class Constants {
 
     public static final String  IO_THREADS_KEY                     = "iothreads";
 
+    // key for sharing the process-wide io threads, a server with iothreads configured keeps its own io threads
+    public static final String  IO_SHARED_KEY                      = "io.shared";
+
+    // number of acceptors bound to one port with SO_REUSEPORT, netty4 transporter on native epoll only
+    public static final String  ACCEPTORS_KEY                      = "acceptors";
+
     public static final String  CORE_THREADS_KEY                   = "corethreads";
 
     public static final String  THREADS_KEY                        = "threads";
 
     public static final String  QUEUES_KEY                         = "queues";
 
+    public static final String  ISOLATION_KEY                      = "isolation";
+
+    public static final String  ISOLATION_THREADS_KEY              = "isolation.threads";
+
+    public static final String  ISOLATION_QUEUES_KEY               = "isolation.queues";
+
     public static final String  ALIVE_KEY                          = "alive";
 
+    public static final String  QUEUE_DELAY_KEY                    = "queue.delay";
+
     public static final String  EXECUTES_KEY                       = "executes";
 
     public static final String  BUFFER_KEY                         = "buffer";
 
     public static final String  PAYLOAD_KEY                        = "payload";
 
+    public static final String  WRITE_BATCH_KEY                    = "write.batch";
+
+    public static final String  WRITE_BATCH_SIZE_KEY               = "write.batch.size";
+
+    // compressor used for message bodies above the compression threshold, e.g. "lz4" or "deflate", may be set per method
+    public static final String  COMPRESSION_KEY                    = "compression";
+
+    public static final String  COMPRESSION_THRESHOLD_KEY          = "compression.threshold";
+
+    // compressors the peer is able to decode, advertised in provider url and request attachment
+    public static final String  ACCEPT_COMPRESSION_KEY             = "accept.compression";
+
+    // compressor and threshold of one request, resolved from the invoker url and kept in attachments that are never serialized
+    public static final String  REQUEST_COMPRESSION_KEY            = ".compression";
+
+    public static final String  REQUEST_COMPRESSION_THRESHOLD_KEY  = ".compression.threshold";
+
     public static final String  REFERENCE_FILTER_KEY               = "reference.filter";
 
     public static final String  INVOKER_LISTENER_KEY               = "invoker.listener";
@@ -236,6 +281,8 @@ public class Constants {
 
     public static final String  ACTIVES_KEY                        = "actives";
 
+    public static final String  ACTIVES_FAIL_FAST_KEY              = "actives.failfast";
+
     public static final String  CONNECTIONS_KEY                    = "connections";
 
     public static final String  ACCEPTS_KEY                        = "accepts";
@@ -252,6 +299,30 @@ public class Constants {
 
     public static final String  RETRIES_KEY                        = "retries";
 
+    // key for response timeout checker, "scan" for the legacy scan thread, "wheel" for the hashed wheel timer
+    public static final String  TIMEOUT_CHECKER_KEY                = "timeout.checker";
+
+    public static final String  DEFAULT_TIMEOUT_CHECKER            = "scan";
+
+    public static final String  WHEEL_TIMEOUT_CHECKER              = "wheel";
+
+    // key for per-connection backpressure policy: "none", "wait", "failfast" or "spillover"
+    public static final String  BACKPRESSURE_KEY                   = "backpressure";
+
+    public static final String  DEFAULT_BACKPRESSURE               = "none";
+
+    public static final String  WAIT_BACKPRESSURE                  = "wait";
+
+    public static final String  FAILFAST_BACKPRESSURE              = "failfast";
+
+    public static final String  SPILLOVER_BACKPRESSURE             = "spillover";
+
+    // max in-flight requests per connection, 0 for unlimited
+    public static final String  INFLIGHT_KEY                       = "inflight";
+
+    // max bytes pending in the write queue per connection before it turns unwritable, 0 for the transport default
+    public static final String  PENDING_BYTES_KEY                  = "pending.bytes";
+
     public static final String  PROMPT_KEY                         = "prompt";
 
     public static final String  DEFAULT_PROMPT                     = "dubbo>";
@@ -365,6 +436,8 @@ public class Constants {
 
     public static final String  CHANNEL_SEND_READONLYEVENT_KEY     = "channel.readonly.send";
 
+    public static final String  CHANNEL_ATTRIBUTE_UNWRITABLE_KEY   = "channel.unwritable";
+
     public static final String  COUNT_PROTOCOL                     = "count";
 
     public static final String  TRACE_PROTOCOL                     = "trace";
@@ -397,6 +470,8 @@ public class Constants {
 
     public static final String  MERGER_KEY                         = "merger";
 
+    public static final String  ASYNC_FANOUT_KEY                   = "async.fanout";
+
     /**
      * 集群时是否排除非available的invoker
      */
@@ -496,6 +571,12 @@ public class Constants {
 
     public static final String  SHUTDOWN_WAIT_KEY                  = "dubbo.service.shutdown.wait";
 
+    // size of the process-wide io threads shared by servers and clients, defaults to the number of cores
+    public static final String  SHARED_IO_THREADS_KEY              = "dubbo.io.threads";
+
+    // use native epoll for the netty4 transporter when available, defaults to true
+    public static final String  NATIVE_EPOLL_KEY                   = "dubbo.io.epoll";
+
     public static final String  IS_SERVER_KEY                      = "isserver";
 
     /**
@@ -529,6 +610,8 @@ public class Constants {
 
     public static final String  RUNTIME_KEY                        = "runtime";
 
+    public static final String  ROUTE_CACHE_KEY                    = "route.cache";
+
     // when ROUTER_KEY's value is set to ROUTER_TYPE_CLEAR, RegistryDirectory will clean all current routers
     public static final String  ROUTER_TYPE_CLEAR                  = "clean";
 
@@ -563,9 +646,19 @@ public class Constants {
 
     public static final long DEFAULT_TPS_LIMIT_INTERVAL            = 60 * 1000;
 
+    public static final String TPS_LIMIT_KEYS_KEY                  = "tps.keys";
+
+    public static final String TPS_LIMIT_KEY_METHOD                = "method";
+
+    public static final String TPS_LIMIT_KEY_APPLICATION           = "application";
+
     public static final String DECODE_IN_IO_THREAD_KEY             = "decode.in.io";
 
     public static final boolean DEFAULT_DECODE_IN_IO_THREAD        = true;
+
+    public static final String RESPONSE_IN_IO_THREAD_KEY           = "response.in.io";
+
+    public static final boolean DEFAULT_RESPONSE_IN_IO_THREAD      = true;
     
     public static final String INPUT_KEY                           = "input";
     
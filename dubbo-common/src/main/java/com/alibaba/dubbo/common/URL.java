@@ -102,6 +102,8 @@ public final class URL implements Serializable {
     private volatile transient String parameter;
 
     private volatile transient String string;
+
+    private volatile transient String serviceKey;
     
     protected URL() {
         this.protocol = null;
@@ -1183,6 +1185,9 @@ public final class URL implements Serializable {
     }
 
     public String getServiceKey() {
+        if (serviceKey != null) {
+            return serviceKey;
+        }
         String inf = getServiceInterface();
         if (inf == null) return null;
         StringBuilder buf = new StringBuilder();
@@ -1195,7 +1200,8 @@ public final class URL implements Serializable {
         if (version != null && version.length() > 0) {
             buf.append(":").append(version);
         }
-        return buf.toString();
+        serviceKey = buf.toString();
+        return serviceKey;
     }
 
     public String toServiceString() {
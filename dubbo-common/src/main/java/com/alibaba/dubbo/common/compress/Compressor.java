@@ -0,0 +1,57 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.compress;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.alibaba.dubbo.common.extension.SPI;
+
+/**
+ * Compressor. (SPI, Singleton, ThreadSafe)
+ * <p>
+ * 对消息体做流式压缩，压缩后的消息体以压缩器编号开头，接收方按编号选择解压器。
+ */
+@SPI("lz4")
+public interface Compressor {
+
+    /**
+     * get content type id, unique among compressors
+     * 
+     * @return content type id
+     */
+    byte getContentTypeId();
+
+    /**
+     * create compressing stream, closing it finishes the compressed data and closes the output
+     * 
+     * @param output
+     * @return compressing stream
+     * @throws IOException
+     */
+    OutputStream compress(OutputStream output) throws IOException;
+
+    /**
+     * create decompressing stream
+     * 
+     * @param input
+     * @return decompressing stream
+     * @throws IOException
+     */
+    InputStream decompress(InputStream input) throws IOException;
+
+}
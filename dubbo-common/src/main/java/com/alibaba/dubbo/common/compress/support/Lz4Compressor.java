@@ -0,0 +1,49 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.compress.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+import net.jpountz.lz4.LZ4Factory;
+
+import com.alibaba.dubbo.common.compress.Compressor;
+
+/**
+ * 基于 lz4-java 的块压缩，压缩和解压速度远高于 deflate，适合大消息体的快速路径。需要 classpath 中有 lz4-java。
+ */
+public class Lz4Compressor implements Compressor {
+
+    private static final int        BLOCK_SIZE = 64 * 1024;
+
+    private static final LZ4Factory FACTORY    = LZ4Factory.fastestInstance();
+
+    public byte getContentTypeId() {
+        return 2;
+    }
+
+    public OutputStream compress(OutputStream output) throws IOException {
+        return new LZ4BlockOutputStream(output, BLOCK_SIZE, FACTORY.fastCompressor());
+    }
+
+    public InputStream decompress(InputStream input) throws IOException {
+        return new LZ4BlockInputStream(input, FACTORY.fastDecompressor());
+    }
+
+}
@@ -17,6 +17,7 @@ package com.alibaba.dubbo.common.threadpool.support;
 
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.logger.Logger;
@@ -35,14 +36,21 @@ public class AbortPolicyWithReport extends ThreadPoolExecutor.AbortPolicy {
     private final String threadName;
     
     private final URL url;
+
+    private final AtomicLong rejectedCount = new AtomicLong();
     
     public AbortPolicyWithReport(String threadName, URL url) {
         this.threadName = threadName;
         this.url = url;
     }
     
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+    
     @Override
     public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
+        rejectedCount.incrementAndGet();
         String msg = String.format("Thread pool is EXHAUSTED!" +
                 " Thread Name: %s, Pool Size: %d (active: %d, core: %d, max: %d, largest: %d), Task: %d (completed: %d)," +
                 " Executor status:(isShutdown:%s, isTerminated:%s, isTerminating:%s), in %s://%s:%d!" ,
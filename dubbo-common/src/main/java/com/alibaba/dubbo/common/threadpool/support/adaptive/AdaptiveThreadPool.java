@@ -0,0 +1,57 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.threadpool.support.adaptive;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.threadpool.ThreadPool;
+import com.alibaba.dubbo.common.threadpool.support.AbortPolicyWithReport;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+
+/**
+ * 此线程池根据排队时延和执行时间，在 corethreads 和 threads 之间自动伸缩，corethreads 未配置时缺省为 CPU 核数，
+ * 队首任务排队超过 queue.delay 毫秒时提前拒绝新任务。
+ * queues 为 0 时不限制队列长度，队列由排队时延约束。
+ * 
+ * @see AdaptiveThreadPoolExecutor
+ */
+public class AdaptiveThreadPool implements ThreadPool {
+
+    public Executor getExecutor(URL url) {
+        String name = url.getParameter(Constants.THREAD_NAME_KEY, Constants.DEFAULT_THREAD_NAME);
+        int threads = Math.max(1, url.getParameter(Constants.THREADS_KEY, Constants.DEFAULT_THREADS));
+        int cores = url.getParameter(Constants.CORE_THREADS_KEY, Constants.DEFAULT_CORE_THREADS);
+        if (cores <= 0) {
+            // 从 1 个线程开始扩容太慢，突发流量下大部分请求会被拒绝
+            cores = Math.min(Runtime.getRuntime().availableProcessors(), threads);
+        }
+        threads = Math.max(cores, threads);
+        int queues = url.getParameter(Constants.QUEUES_KEY, Constants.DEFAULT_QUEUES);
+        int alive = url.getParameter(Constants.ALIVE_KEY, Constants.DEFAULT_ALIVE);
+        int delay = url.getParameter(Constants.QUEUE_DELAY_KEY, Constants.DEFAULT_QUEUE_DELAY);
+        BlockingQueue<Runnable> queue = queues <= 0 ? new LinkedBlockingQueue<Runnable>()
+                : new LinkedBlockingQueue<Runnable>(queues);
+        return new AdaptiveThreadPoolExecutor(cores, threads, alive, queue, delay,
+                AdaptiveThreadPoolExecutor.DEFAULT_INTERVAL, TimeUnit.MILLISECONDS,
+                new NamedThreadFactory(name, true), new AbortPolicyWithReport(name, url));
+    }
+
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.threadpool.support.adaptive;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 自适应线程池。
+ * <p>
+ * 统计每个任务的排队时延和执行时间，每个调整周期按 Little 定律（并发 = 到达速率 × 执行时间）
+ * 估算需要的线程数，并结合平均排队时延调整 corePoolSize。到达速率包含被拒绝的任务：
+ * 线程不足时完成速率受限于当前线程数，按完成速率估算永远不会超过当前线程数。
+ * <ul>
+ * <li>估算值超过当前线程数或平均排队时延超过目标的一半时，扩容到估算值，且至少增加 1/4；</li>
+ * <li>平均排队时延低于目标的 1/10 且估算值小于当前线程数时，逐步缩容（每次至多 1/8）；</li>
+ * </ul>
+ * 线程数始终在 [minThreads, maxThreads] 之间，超出 corePoolSize 的空闲线程在 keepAlive 后回收。
+ * 提交任务时先按周期尝试调整，再检查队首任务：排队时间已超过目标时延时直接交给 RejectedExecutionHandler 拒绝，
+ * 避免请求在队列中等到超时后才被处理，同时线程全部阻塞时仍能由提交驱动扩容。
+ */
+public class AdaptiveThreadPoolExecutor extends ThreadPoolExecutor {
+
+    public static final long DEFAULT_INTERVAL = 1000;
+
+    private final int minThreads;
+
+    private final int maxThreads;
+
+    private final long delayTarget;
+
+    private final long interval;
+
+    private final AtomicLong arrived = new AtomicLong();
+
+    private final AtomicLong completed = new AtomicLong();
+
+    private final AtomicLong executeNanos = new AtomicLong();
+
+    private final AtomicLong delayNanos = new AtomicLong();
+
+    private final AtomicBoolean resizing = new AtomicBoolean();
+
+    private volatile long lastResize = System.nanoTime();
+
+    // 最近一个有任务完成的周期的平均执行时间，周期内没有任务完成时用于估算
+    private volatile double lastExecuteNanos;
+
+    private volatile double throughput;
+
+    private volatile double executeMillis;
+
+    private volatile double delayMillis;
+
+    /**
+     * @param minThreads 最小线程数
+     * @param maxThreads 最大线程数
+     * @param keepAlive 空闲线程回收时间，单位毫秒
+     * @param queue 任务队列
+     * @param delayTarget 目标排队时延，同时也是提前拒绝的阈值
+     * @param interval 调整周期
+     * @param unit delayTarget 和 interval 的单位
+     */
+    public AdaptiveThreadPoolExecutor(int minThreads, int maxThreads, long keepAlive, BlockingQueue<Runnable> queue,
+                                      long delayTarget, long interval, TimeUnit unit,
+                                      ThreadFactory threadFactory, RejectedExecutionHandler handler) {
+        super(minThreads, maxThreads, keepAlive, TimeUnit.MILLISECONDS, queue, threadFactory, handler);
+        if (minThreads <= 0 || maxThreads < minThreads) {
+            throw new IllegalArgumentException("Illegal thread bounds, min: " + minThreads + ", max: " + maxThreads);
+        }
+        this.minThreads = minThreads;
+        this.maxThreads = maxThreads;
+        this.delayTarget = unit.toNanos(delayTarget);
+        this.interval = unit.toNanos(interval);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        long now = System.nanoTime();
+        arrived.incrementAndGet();
+        // 先调整线程数再判断是否拒绝：所有线程都被阻塞时没有任务完成，只能靠提交驱动扩容
+        tryResize(now);
+        Runnable head = getQueue().peek();
+        if (head instanceof TimedTask && now - ((TimedTask) head).enqueueTime > delayTarget) {
+            getRejectedExecutionHandler().rejectedExecution(command, this);
+            return;
+        }
+        super.execute(new TimedTask(command, now));
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        if (r instanceof TimedTask) {
+            TimedTask task = (TimedTask) r;
+            task.startTime = System.nanoTime();
+            delayNanos.addAndGet(task.startTime - task.enqueueTime);
+        }
+        super.beforeExecute(t, r);
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        super.afterExecute(r, t);
+        if (r instanceof TimedTask) {
+            long now = System.nanoTime();
+            executeNanos.addAndGet(now - ((TimedTask) r).startTime);
+            completed.incrementAndGet();
+            tryResize(now);
+        }
+    }
+
+    private void tryResize(long now) {
+        if (now - lastResize >= interval && ! isShutdown() && resizing.compareAndSet(false, true)) {
+            try {
+                resize(now);
+            } finally {
+                resizing.set(false);
+            }
+        }
+    }
+
+    /**
+     * 根据上一个周期的统计调整线程数，返回调整后的 corePoolSize。
+     */
+    int resize(long now) {
+        long elapsed = Math.max(1, now - lastResize);
+        lastResize = now;
+        long arrivals = arrived.getAndSet(0);
+        long count = completed.getAndSet(0);
+        long execute = executeNanos.getAndSet(0);
+        long delay = delayNanos.getAndSet(0);
+
+        double tps = count * 1e9d / elapsed;
+        double arrivalRate = arrivals * 1e9d / elapsed;
+        double executeAvg = count == 0 ? 0 : (double) execute / count;
+        double delayAvg = count == 0 ? 0 : (double) delay / count;
+        if (count > 0) {
+            lastExecuteNanos = executeAvg;
+        }
+        int required = (int) Math.ceil(arrivalRate * lastExecuteNanos / 1e9d);
+
+        int current = getCorePoolSize();
+        int next = current;
+        if (required > current || delayAvg > delayTarget / 2 || (count == 0 && ! getQueue().isEmpty())) {
+            // 到达速率超过处理能力，任务在排队，或者一个周期内没有任务完成但队列非空，扩容
+            next = Math.max(required, current + Math.max(1, current / 4));
+        } else if (delayAvg < delayTarget / 10 && required < current) {
+            next = Math.max(required + 1, current - Math.max(1, current / 8));
+        }
+        next = Math.max(minThreads, Math.min(maxThreads, next));
+        if (next != current) {
+            setCorePoolSize(next);
+        }
+
+        throughput = tps;
+        executeMillis = executeAvg / 1e6d;
+        delayMillis = delayAvg / 1e6d;
+        return next;
+    }
+
+    public int getMinThreads() {
+        return minThreads;
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    /**
+     * @return 目标排队时延，单位毫秒
+     */
+    public long getDelayTarget() {
+        return TimeUnit.NANOSECONDS.toMillis(delayTarget);
+    }
+
+    /**
+     * @return 上一个周期每秒完成的任务数
+     */
+    public double getThroughput() {
+        return throughput;
+    }
+
+    /**
+     * @return 上一个周期任务平均执行时间，单位毫秒
+     */
+    public double getExecuteMillis() {
+        return executeMillis;
+    }
+
+    /**
+     * @return 上一个周期任务平均排队时延，单位毫秒
+     */
+    public double getDelayMillis() {
+        return delayMillis;
+    }
+
+    static final class TimedTask implements Runnable {
+
+        private final Runnable task;
+
+        final long enqueueTime;
+
+        volatile long startTime;
+
+        TimedTask(Runnable task, long enqueueTime) {
+            this.task = task;
+            this.enqueueTime = enqueueTime;
+        }
+
+        public void run() {
+            task.run();
+        }
+
+    }
+
+}
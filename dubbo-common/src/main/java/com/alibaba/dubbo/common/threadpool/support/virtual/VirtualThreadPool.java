@@ -0,0 +1,69 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.threadpool.support.virtual;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.threadpool.ThreadPool;
+import com.alibaba.dubbo.common.threadpool.support.AbortPolicyWithReport;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+
+/**
+ * 此线程池使用虚拟线程执行任务，并发数不超过 threads（默认 10000），超出后进入队列或拒绝。
+ * 线程数未达到上限时提交任务会新建虚拟线程；任务结束后该线程仍会继续从队列取任务，空闲 1 毫秒后才退出，
+ * 因此繁忙时虚拟线程会被复用。
+ * JVM 不支持虚拟线程时退化为平台线程，threads 默认 200，空闲 alive 毫秒后回收。
+ */
+public class VirtualThreadPool implements ThreadPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadPool.class);
+
+    public Executor getExecutor(URL url) {
+        String name = url.getParameter(Constants.THREAD_NAME_KEY, Constants.DEFAULT_THREAD_NAME);
+        int queues = url.getParameter(Constants.QUEUES_KEY, Constants.DEFAULT_QUEUES);
+        ThreadFactory threadFactory = VirtualThreads.newThreadFactory(name);
+        int threads;
+        long alive;
+        if (threadFactory != null) {
+            threads = url.getParameter(Constants.THREADS_KEY, Constants.DEFAULT_VIRTUAL_THREADS);
+            alive = 1;
+        } else {
+            logger.warn("Virtual threads are not supported by java " + System.getProperty("java.version")
+                    + ", use platform threads instead, url: " + url);
+            threadFactory = new NamedThreadFactory(name, true);
+            threads = url.getParameter(Constants.THREADS_KEY, Constants.DEFAULT_THREADS);
+            alive = url.getParameter(Constants.ALIVE_KEY, Constants.DEFAULT_ALIVE);
+        }
+        // corePoolSize 与 maximumPoolSize 相同，未达到上限时每个任务都新建线程，而不是先进入队列
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, alive, TimeUnit.MILLISECONDS,
+                queues == 0 ? new SynchronousQueue<Runnable>() :
+                    (queues < 0 ? new LinkedBlockingQueue<Runnable>()
+                            : new LinkedBlockingQueue<Runnable>(queues)),
+                threadFactory, new AbortPolicyWithReport(name, url));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+}
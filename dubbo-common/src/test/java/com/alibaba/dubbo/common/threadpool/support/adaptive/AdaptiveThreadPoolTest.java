@@ -0,0 +1,216 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.threadpool.support.adaptive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.common.threadpool.ThreadPool;
+import com.alibaba.dubbo.common.threadpool.support.AbortPolicyWithReport;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+
+public class AdaptiveThreadPoolTest {
+
+    private static final URL url = URL.valueOf("dubbo://127.0.0.1:20880/test");
+
+    private AdaptiveThreadPoolExecutor newExecutor(int min, int max, long delay) {
+        // 调整周期设得很长，由测试主动调用 resize
+        return new AdaptiveThreadPoolExecutor(min, max, 60000, new LinkedBlockingQueue<Runnable>(), delay,
+                3600 * 1000, TimeUnit.MILLISECONDS,
+                new NamedThreadFactory("AdaptiveTest", true), new AbortPolicyWithReport("AdaptiveTest", url));
+    }
+
+    @Test
+    public void testExtension() {
+        Executor executor = ExtensionLoader.getExtensionLoader(ThreadPool.class).getExtension("adaptive")
+                .getExecutor(url.addParameter("corethreads", 2).addParameter("threads", 10).addParameter("queue.delay", 50));
+        AdaptiveThreadPoolExecutor tp = (AdaptiveThreadPoolExecutor) executor;
+        try {
+            assertEquals(2, tp.getCorePoolSize());
+            assertEquals(10, tp.getMaximumPoolSize());
+            assertEquals(50, tp.getDelayTarget());
+        } finally {
+            tp.shutdown();
+        }
+    }
+
+    @Test
+    public void testGrowWhenQueueing() throws Exception {
+        AdaptiveThreadPoolExecutor tp = newExecutor(1, 8, 20);
+        try {
+            final CountDownLatch done = new CountDownLatch(10);
+            for (int i = 0; i < 10; i ++) {
+                tp.execute(new Runnable() {
+                    public void run() {
+                        sleep(15);
+                        done.countDown();
+                    }
+                });
+            }
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            int size = tp.resize(System.nanoTime());
+            assertTrue("size: " + size, size > 1);
+            assertTrue(tp.getDelayMillis() > 10);
+            assertTrue(tp.getExecuteMillis() >= 10);
+            assertTrue(tp.getThroughput() > 0);
+        } finally {
+            tp.shutdown();
+        }
+    }
+
+    @Test
+    public void testShrinkWhenIdle() throws Exception {
+        AdaptiveThreadPoolExecutor tp = newExecutor(2, 8, 20);
+        try {
+            tp.setCorePoolSize(8);
+            int size = 8;
+            for (int i = 0; i < 20; i ++) {
+                size = tp.resize(System.nanoTime());
+            }
+            assertEquals(2, size);
+            assertEquals(2, tp.getCorePoolSize());
+        } finally {
+            tp.shutdown();
+        }
+    }
+
+    @Test
+    public void testShedWhenHeadDelayed() throws Exception {
+        AdaptiveThreadPoolExecutor tp = newExecutor(1, 1, 20);
+        final CountDownLatch block = new CountDownLatch(1);
+        try {
+            tp.execute(new Runnable() {
+                public void run() {
+                    try {
+                        block.await();
+                    } catch (InterruptedException e) {
+                    }
+                }
+            });
+            tp.execute(new Runnable() {
+                public void run() {
+                }
+            });
+            // 队首任务未超过目标时延，可以继续排队
+            tp.execute(new Runnable() {
+                public void run() {
+                }
+            });
+            sleep(40);
+            try {
+                tp.execute(new Runnable() {
+                    public void run() {
+                    }
+                });
+                fail();
+            } catch (RejectedExecutionException expected) {
+            }
+            assertEquals(1, ((AbortPolicyWithReport) tp.getRejectedExecutionHandler()).getRejectedCount());
+            assertEquals(2, tp.getQueue().size());
+        } finally {
+            block.countDown();
+            tp.shutdown();
+        }
+    }
+
+    @Test
+    public void testGrowWhenWorkersBlocked() throws Exception {
+        AdaptiveThreadPoolExecutor tp = new AdaptiveThreadPoolExecutor(1, 4, 60000, new LinkedBlockingQueue<Runnable>(), 10,
+                20, TimeUnit.MILLISECONDS,
+                new NamedThreadFactory("AdaptiveTest", true), new AbortPolicyWithReport("AdaptiveTest", url));
+        final CountDownLatch block = new CountDownLatch(1);
+        final CountDownLatch queued = new CountDownLatch(1);
+        try {
+            tp.execute(new Runnable() {
+                public void run() {
+                    try {
+                        block.await();
+                    } catch (InterruptedException e) {
+                    }
+                }
+            });
+            tp.execute(new Runnable() {
+                public void run() {
+                    queued.countDown();
+                }
+            });
+            sleep(40);
+            // 唯一的线程被阻塞、队首已超时，这次提交会被拒绝，但必须先触发扩容
+            try {
+                tp.execute(new Runnable() {
+                    public void run() {
+                    }
+                });
+            } catch (RejectedExecutionException expected) {
+            }
+            assertTrue(tp.getCorePoolSize() > 1);
+            assertTrue(queued.await(1, TimeUnit.SECONDS));
+        } finally {
+            block.countDown();
+            tp.shutdown();
+        }
+    }
+
+    @Test
+    public void testBurstOnColdPool() throws Exception {
+        AdaptiveThreadPoolExecutor tp = new AdaptiveThreadPoolExecutor(1, 64, 60000, new LinkedBlockingQueue<Runnable>(), 20,
+                50, TimeUnit.MILLISECONDS,
+                new NamedThreadFactory("AdaptiveTest", true), new AbortPolicyWithReport("AdaptiveTest", url));
+        try {
+            // 每毫秒到达一个执行 20 毫秒的任务，需要约 20 个线程
+            long start = System.nanoTime();
+            int submitted = 0;
+            long elapsed;
+            while ((elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)) < 150) {
+                for (; submitted < elapsed; submitted ++) {
+                    try {
+                        tp.execute(new Runnable() {
+                            public void run() {
+                                sleep(20);
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                    }
+                }
+                sleep(1);
+            }
+            // 按完成速率估算时每个周期只能增加 1 个线程，三个周期后不超过 4 个
+            assertTrue("size: " + tp.getCorePoolSize(), tp.getCorePoolSize() >= 10);
+        } finally {
+            tp.shutdown();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
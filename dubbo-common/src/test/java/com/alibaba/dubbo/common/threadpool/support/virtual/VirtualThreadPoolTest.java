@@ -0,0 +1,96 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.threadpool.support.virtual;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.common.threadpool.ThreadPool;
+
+public class VirtualThreadPoolTest {
+
+    private static final URL url = URL.valueOf("dubbo://127.0.0.1:20880/test?threadname=VirtualTest");
+
+    private ThreadPoolExecutor getExecutor(URL url) {
+        return (ThreadPoolExecutor) ExtensionLoader.getExtensionLoader(ThreadPool.class).getExtension("virtual").getExecutor(url);
+    }
+
+    @Test
+    public void testExecute() throws Exception {
+        ThreadPoolExecutor executor = getExecutor(url);
+        try {
+            final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+            final CountDownLatch done = new CountDownLatch(1);
+            executor.execute(new Runnable() {
+                public void run() {
+                    thread.set(Thread.currentThread());
+                    done.countDown();
+                }
+            });
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(VirtualThreads.isSupported(), VirtualThreads.isVirtual(thread.get()));
+            assertTrue(thread.get().getName(), thread.get().getName().startsWith("VirtualTest-"));
+            assertTrue(thread.get().isDaemon());
+            assertEquals(VirtualThreads.isSupported() ? 10000 : 200, executor.getMaximumPoolSize());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrencyLimit() throws Exception {
+        ThreadPoolExecutor executor = getExecutor(url.addParameter("threads", 2));
+        final CountDownLatch started = new CountDownLatch(2);
+        final CountDownLatch block = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < 2; i ++) {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        started.countDown();
+                        try {
+                            block.await();
+                        } catch (InterruptedException e) {
+                        }
+                    }
+                });
+            }
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            try {
+                executor.execute(new Runnable() {
+                    public void run() {
+                    }
+                });
+                fail();
+            } catch (RejectedExecutionException expected) {
+            }
+        } finally {
+            block.countDown();
+            executor.shutdown();
+        }
+    }
+
+}
@@ -131,6 +131,8 @@ public class ConfigUtilsTest {
         expected.put("fixed", "com.alibaba.dubbo.common.threadpool.support.fixed.FixedThreadPool");
         expected.put("cached", "com.alibaba.dubbo.common.threadpool.support.cached.CachedThreadPool");
         expected.put("limited", "com.alibaba.dubbo.common.threadpool.support.limited.LimitedThreadPool");
+        expected.put("adaptive", "com.alibaba.dubbo.common.threadpool.support.adaptive.AdaptiveThreadPool");
+        expected.put("virtual", "com.alibaba.dubbo.common.threadpool.support.virtual.VirtualThreadPool");
 
         Assert.assertEquals(expected, p);
     }
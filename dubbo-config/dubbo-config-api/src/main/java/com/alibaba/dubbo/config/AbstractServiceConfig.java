@@ -65,6 +65,15 @@ public abstract class AbstractServiceConfig extends AbstractInterfaceConfig {
     // 允许执行请求数
     private Integer                executes;
 
+    // 是否使用独立的线程池
+    private Boolean                isolation;
+
+    // 独立线程池的线程数
+    private Integer                isolationThreads;
+
+    // 独立线程池的队列长度
+    private Integer                isolationQueues;
+
     protected List<ProtocolConfig> protocols;
 
     // 是否注册
@@ -195,6 +204,30 @@ public abstract class AbstractServiceConfig extends AbstractInterfaceConfig {
         this.executes = executes;
     }
 
+    public Boolean getIsolation() {
+        return isolation;
+    }
+
+    public void setIsolation(Boolean isolation) {
+        this.isolation = isolation;
+    }
+
+    public Integer getIsolationThreads() {
+        return isolationThreads;
+    }
+
+    public void setIsolationThreads(Integer isolationThreads) {
+        this.isolationThreads = isolationThreads;
+    }
+
+    public Integer getIsolationQueues() {
+        return isolationQueues;
+    }
+
+    public void setIsolationQueues(Integer isolationQueues) {
+        this.isolationQueues = isolationQueues;
+    }
+
     @Parameter(key = Constants.SERVICE_FILTER_KEY, append = true)
     public String getFilter() {
         return super.getFilter();
@@ -44,6 +44,15 @@ public class MethodConfig extends AbstractMethodConfig {
 
     // 方法使用线程数限制
     private Integer           executes;
+
+    // 是否使用独立的线程池
+    private Boolean           isolation;
+
+    // 独立线程池的线程数
+    private Integer           isolationThreads;
+
+    // 独立线程池的队列长度
+    private Integer           isolationQueues;
     
     // 是否过时
     private Boolean           deprecated;
@@ -124,6 +133,30 @@ public class MethodConfig extends AbstractMethodConfig {
         this.executes = executes;
     }
 
+    public Boolean getIsolation() {
+        return isolation;
+    }
+
+    public void setIsolation(Boolean isolation) {
+        this.isolation = isolation;
+    }
+
+    public Integer getIsolationThreads() {
+        return isolationThreads;
+    }
+
+    public void setIsolationThreads(Integer isolationThreads) {
+        this.isolationThreads = isolationThreads;
+    }
+
+    public Integer getIsolationQueues() {
+        return isolationQueues;
+    }
+
+    public void setIsolationQueues(Integer isolationQueues) {
+        this.isolationQueues = isolationQueues;
+    }
+
     public Boolean getDeprecated() {
         return deprecated;
     }
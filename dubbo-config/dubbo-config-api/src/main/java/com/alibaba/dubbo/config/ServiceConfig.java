@@ -27,12 +27,14 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.Version;
 import com.alibaba.dubbo.common.bytecode.Wrapper;
+import com.alibaba.dubbo.common.compress.Compressor;
 import com.alibaba.dubbo.common.extension.ExtensionLoader;
 import com.alibaba.dubbo.common.utils.ClassHelper;
 import com.alibaba.dubbo.common.utils.ConfigUtils;
@@ -421,6 +423,13 @@ public class ServiceConfig<T> extends AbstractServiceConfig {
         if (ConfigUtils.getPid() > 0) {
             map.put(Constants.PID_KEY, String.valueOf(ConfigUtils.getPid()));
         }
+        if (Constants.DEFAULT_PROTOCOL.equals(name)) {
+            // 声明本端可解压的压缩器，消费者据此决定是否压缩请求
+            Set<String> compressors = ExtensionLoader.getExtensionLoader(Compressor.class).getSupportedExtensions();
+            if (compressors.size() > 0) {
+                map.put(Constants.ACCEPT_COMPRESSION_KEY, StringUtils.join(compressors, ","));
+            }
+        }
         appendParameters(map, application);
         appendParameters(map, module);
         appendParameters(map, provider, Constants.DEFAULT_KEY);
@@ -0,0 +1,44 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.cache.filter;
+
+import java.io.Serializable;
+
+/**
+ * 开启 cache.refresh 时缓存中保存的值，记录写入时间用于判断是否需要后台刷新。
+ */
+final class CacheEntry implements Serializable {
+
+    private static final long serialVersionUID = -2466387446385573816L;
+
+    private final Object      value;
+
+    private final long        writeTime;
+
+    CacheEntry(Object value, long writeTime) {
+        this.value = value;
+        this.writeTime = writeTime;
+    }
+
+    Object getValue() {
+        return value;
+    }
+
+    long getWriteTime() {
+        return writeTime;
+    }
+
+}
@@ -15,27 +15,59 @@
  */
 package com.alibaba.dubbo.cache.filter;
 
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 import com.alibaba.dubbo.cache.Cache;
 import com.alibaba.dubbo.cache.CacheFactory;
 import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
 import com.alibaba.dubbo.common.utils.ConfigUtils;
-import com.alibaba.dubbo.common.utils.StringUtils;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
 import com.alibaba.dubbo.rpc.Filter;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.Result;
 import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcInvocation;
 import com.alibaba.dubbo.rpc.RpcResult;
 
 /**
  * CacheFilter
+ * <p>
+ * 可按方法配置：
+ * <ul>
+ * <li>cache.coalesce=true: 同一个 key 并发未命中时只发起一次调用，其它调用等待并共享结果，最多等待调用超时时间</li>
+ * <li>cache.refresh=毫秒: 缓存值写入超过该时间后，命中时仍返回旧值，同时在后台发起一次调用刷新缓存；
+ * 应小于缓存本身的过期时间(如 tinylfu 的 cache.expire)</li>
+ * </ul>
  * 
  * @author william.liangf
  */
 @Activate(group = {Constants.CONSUMER, Constants.PROVIDER}, value = Constants.CACHE_KEY)
 public class CacheFilter implements Filter {
 
+    private static final Logger logger = LoggerFactory.getLogger(CacheFilter.class);
+
+    private static final MethodCache NO_CACHE = new MethodCache(null, null, null);
+
+    // 后台刷新线程池满时放弃本次刷新，下次命中时再触发
+    private static final ExecutorService refreshExecutor = new ThreadPoolExecutor(0, 16, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<Runnable>(), new NamedThreadFactory("DubboCacheRefresh", true));
+
+    // invoker -> 方法名 -> 缓存，每个方法只解析一次，避免每次调用复制 URL
+    private final ConcurrentMap<Invoker<?>, ConcurrentMap<String, MethodCache>> invokerCaches = new ConcurrentHashMap<Invoker<?>, ConcurrentMap<String, MethodCache>>();
+
     private CacheFactory cacheFactory;
 
     public void setCacheFactory(CacheFactory cacheFactory) {
@@ -43,24 +75,179 @@ public class CacheFilter implements Filter {
     }
 
     public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
-        if (cacheFactory != null && ConfigUtils.isNotEmpty(invoker.getUrl().getMethodParameter(invocation.getMethodName(), Constants.CACHE_KEY))) {
-            Cache cache = cacheFactory.getCache(invoker.getUrl().addParameter(Constants.METHOD_KEY, invocation.getMethodName()));
-            if (cache != null) {
-                String key = StringUtils.toArgumentString(invocation.getArguments());
-                if (cache != null && key != null) {
-                    Object value = cache.get(key);
-                    if (value != null) {
-                        return new RpcResult(value);
-                    }
-                    Result result = invoker.invoke(invocation);
-                    if (! result.hasException()) {
-                        cache.put(key, result.getValue());
-                    }
+        if (cacheFactory != null) {
+            MethodCache methodCache = getMethodCache(invoker, invocation.getMethodName());
+            if (methodCache != NO_CACHE) {
+                return methodCache.invoke(invoker, invocation);
+            }
+        }
+        return invoker.invoke(invocation);
+    }
+
+    private MethodCache getMethodCache(Invoker<?> invoker, String methodName) {
+        ConcurrentMap<String, MethodCache> methodCaches = invokerCaches.get(invoker);
+        if (methodCaches == null) {
+            removeDestroyedInvokers();
+            invokerCaches.putIfAbsent(invoker, new ConcurrentHashMap<String, MethodCache>());
+            methodCaches = invokerCaches.get(invoker);
+        }
+        MethodCache methodCache = methodCaches.get(methodName);
+        if (methodCache == null) {
+            URL url = invoker.getUrl();
+            Cache cache = null;
+            if (ConfigUtils.isNotEmpty(url.getMethodParameter(methodName, Constants.CACHE_KEY))) {
+                cache = cacheFactory.getCache(url.addParameter(Constants.METHOD_KEY, methodName));
+            }
+            methodCaches.putIfAbsent(methodName, cache == null ? NO_CACHE : new MethodCache(cache, url, methodName));
+            methodCache = methodCaches.get(methodName);
+        }
+        return methodCache;
+    }
+
+    // 新 invoker 加入时顺便清理已销毁的 invoker，避免注册中心推送变更后持有旧的 invoker
+    private void removeDestroyedInvokers() {
+        for (Iterator<Invoker<?>> i = invokerCaches.keySet().iterator(); i.hasNext(); ) {
+            if (! i.next().isAvailable()) {
+                i.remove();
+            }
+        }
+    }
+
+    private static final class MethodCache {
+
+        private final Cache                         cache;
+
+        private final boolean                       coalesce;
+
+        private final long                          refresh;
+
+        private final int                           timeout;
+
+        // 正在进行的调用，包括未命中的加载和后台刷新
+        private final ConcurrentMap<Object, Call>   calls = new ConcurrentHashMap<Object, Call>();
+
+        MethodCache(Cache cache, URL url, String methodName) {
+            this.cache = cache;
+            this.coalesce = url != null && url.getMethodParameter(methodName, Constants.CACHE_COALESCE_KEY, false);
+            this.refresh = url == null ? 0 : url.getMethodParameter(methodName, Constants.CACHE_REFRESH_KEY, 0L);
+            this.timeout = url == null ? 0 : url.getMethodParameter(methodName, Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT);
+        }
+
+        Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
+            Object[] args = invocation.getArguments();
+            Object key = CacheKey.lookupKey(args);
+            Object value;
+            try {
+                value = cache.get(key);
+            } finally {
+                CacheKey.release(key);
+            }
+            if (value instanceof CacheEntry) {
+                CacheEntry entry = (CacheEntry) value;
+                if (refresh > 0 && System.currentTimeMillis() - entry.getWriteTime() >= refresh) {
+                    refresh(invoker, invocation, CacheKey.storeKey(key, args));
+                }
+                value = entry.getValue();
+            }
+            if (value != null) {
+                return new RpcResult(value);
+            }
+            Object storeKey = CacheKey.storeKey(key, args);
+            if (! coalesce) {
+                return load(invoker, invocation, storeKey);
+            }
+            Call call = new Call();
+            Call existing = calls.putIfAbsent(storeKey, call);
+            if (existing != null) {
+                Result result = existing.get(timeout);
+                if (result != null) {
                     return result;
                 }
+                // 等待超时或共享的调用被放弃，自己发起调用
+                return load(invoker, invocation, storeKey);
+            }
+            try {
+                Result result = load(invoker, invocation, storeKey);
+                call.complete(result, null);
+                return result;
+            } catch (RuntimeException e) {
+                call.complete(null, e);
+                throw e;
+            } finally {
+                calls.remove(storeKey, call);
             }
         }
-        return invoker.invoke(invocation);
+
+        private void refresh(final Invoker<?> invoker, Invocation invocation, final Object storeKey) {
+            final Call call = new Call();
+            if (calls.putIfAbsent(storeKey, call) != null) {
+                return;
+            }
+            final Invocation copy = new RpcInvocation(invocation, null);
+            try {
+                refreshExecutor.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            call.complete(load(invoker, copy, storeKey), null);
+                        } catch (Throwable t) {
+                            logger.warn("Failed to refresh cache of " + invoker.getInterface().getName() + "."
+                                    + copy.getMethodName() + ", cause: " + t.getMessage(), t);
+                            call.complete(null, null);
+                        } finally {
+                            calls.remove(storeKey, call);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                calls.remove(storeKey, call);
+                call.complete(null, null);
+            }
+        }
+
+        private Result load(Invoker<?> invoker, Invocation invocation, Object storeKey) {
+            Result result = invoker.invoke(invocation);
+            if (! result.hasException()) {
+                Object value = result.getValue();
+                cache.put(storeKey, refresh > 0 && value != null ? new CacheEntry(value, System.currentTimeMillis()) : value);
+            }
+            return result;
+        }
+    }
+
+    private static final class Call {
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        private volatile Result           result;
+
+        private volatile RuntimeException exception;
+
+        void complete(Result result, RuntimeException exception) {
+            this.result = result;
+            this.exception = exception;
+            latch.countDown();
+        }
+
+        /**
+         * @return 共享的调用结果，超时或调用被放弃时返回 null
+         */
+        Result get(int timeout) {
+            try {
+                if (! latch.await(timeout, TimeUnit.MILLISECONDS)) {
+                    return null;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RpcException(e.getMessage(), e);
+            }
+            if (exception != null) {
+                throw exception;
+            }
+            if (result == null) {
+                return null;
+            }
+            return result.hasException() ? new RpcResult(result.getException()) : new RpcResult(result.getValue());
+        }
     }
 
 }
@@ -0,0 +1,241 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.cache.filter;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.alibaba.dubbo.common.utils.StringUtils;
+
+/**
+ * 按参数值比较的缓存键，hashCode 在创建时计算一次。
+ * <p>
+ * 只有所有参数都是值类型(基本类型、字符串、枚举、覆写了 equals 和 hashCode 的类，以及由它们组成的数组、List、Set 和 Map)时才使用，
+ * 否则退回到 {@link StringUtils#toArgumentString(Object[])} 序列化的字符串键。
+ * 参数中的数组、List、Set 和 Map 在写入缓存时会被复制成快照，调用方之后修改它们不会影响已存入的键；其它参数对象在调用后不应再被修改。
+ * <p>
+ * 查询时使用线程内复用的键，缓存命中时不创建对象。
+ */
+final class CacheKey implements Serializable {
+
+    private static final long serialVersionUID = 4172736522735164583L;
+
+    private static final Object[] EMPTY_ARGS = new Object[0];
+
+    private static final ConcurrentMap<Class<?>, Boolean> VALUE_TYPES = new ConcurrentHashMap<Class<?>, Boolean>();
+
+    private static final ThreadLocal<CacheKey> LOOKUP_KEY = new ThreadLocal<CacheKey>() {
+        @Override
+        protected CacheKey initialValue() {
+            return new CacheKey();
+        }
+    };
+
+    private Object[] args;
+
+    private transient int hash;
+
+    private CacheKey() {
+    }
+
+    private CacheKey(Object[] args) {
+        this.args = args;
+        this.hash = Arrays.deepHashCode(args);
+    }
+
+    /**
+     * 查询用的键，只能在当前线程内用于一次 get，不能存入缓存。
+     */
+    static Object lookupKey(Object[] args) {
+        if (args == null) {
+            args = EMPTY_ARGS;
+        }
+        if (! isValues(args)) {
+            return StringUtils.toArgumentString(args);
+        }
+        CacheKey key = LOOKUP_KEY.get();
+        key.args = args;
+        key.hash = Arrays.deepHashCode(args);
+        return key;
+    }
+
+    /**
+     * 与查询键相等、可以存入缓存的键。
+     */
+    static Object storeKey(Object lookupKey, Object[] args) {
+        if (! (lookupKey instanceof CacheKey)) {
+            return lookupKey;
+        }
+        return new CacheKey(args == null ? EMPTY_ARGS : (Object[]) snapshot(args));
+    }
+
+    /**
+     * 查询完成后释放线程内复用的键对参数的引用。
+     */
+    static void release(Object lookupKey) {
+        if (lookupKey instanceof CacheKey) {
+            ((CacheKey) lookupKey).args = null;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (! (obj instanceof CacheKey)) {
+            return false;
+        }
+        CacheKey other = (CacheKey) obj;
+        return hash == other.hash && Arrays.deepEquals(args, other.args);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.deepToString(args);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        // 枚举等类型的 hashCode 在不同 JVM 中不同，反序列化后重新计算
+        hash = Arrays.deepHashCode(args);
+    }
+
+    private static boolean isValues(Object[] args) {
+        for (Object arg : args) {
+            if (! isValue(arg)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isValue(Object arg) {
+        if (arg == null) {
+            return true;
+        }
+        Class<?> type = arg.getClass();
+        if (type.isArray()) {
+            return type.getComponentType().isPrimitive() || isValues((Object[]) arg);
+        }
+        if (! isValueType(type)) {
+            return false;
+        }
+        if (arg instanceof Collection) {
+            // 其它集合没有跨实现的 equals 约定，无法复制成快照
+            if (! (arg instanceof List) && ! (arg instanceof Set)) {
+                return false;
+            }
+            for (Object element : (Collection<?>) arg) {
+                if (! isValue(element)) {
+                    return false;
+                }
+            }
+        } else if (arg instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) arg).entrySet()) {
+                if (! isValue(entry.getKey()) || ! isValue(entry.getValue())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isValueType(Class<?> type) {
+        Boolean value = VALUE_TYPES.get(type);
+        if (value == null) {
+            try {
+                value = type.getMethod("equals", Object.class).getDeclaringClass() != Object.class
+                    && type.getMethod("hashCode").getDeclaringClass() != Object.class;
+            } catch (NoSuchMethodException e) {
+                value = Boolean.FALSE;
+            }
+            VALUE_TYPES.putIfAbsent(type, value);
+        }
+        return value;
+    }
+
+    /**
+     * 复制数组、List、Set 和 Map。List、Set、Map 的 equals 和 hashCode 按接口约定与具体实现无关，快照与原参数仍然相等。
+     */
+    private static Object snapshot(Object arg) {
+        if (arg instanceof List) {
+            List<Object> list = new ArrayList<Object>(((List<?>) arg).size());
+            for (Object element : (List<?>) arg) {
+                list.add(snapshot(element));
+            }
+            return list;
+        }
+        if (arg instanceof Set) {
+            Set<Object> set = new LinkedHashSet<Object>();
+            for (Object element : (Set<?>) arg) {
+                set.add(snapshot(element));
+            }
+            return set;
+        }
+        if (arg instanceof Map) {
+            Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) arg).entrySet()) {
+                map.put(snapshot(entry.getKey()), snapshot(entry.getValue()));
+            }
+            return map;
+        }
+        if (arg == null || ! arg.getClass().isArray()) {
+            return arg;
+        }
+        if (! arg.getClass().getComponentType().isPrimitive()) {
+            Object[] array = ((Object[]) arg).clone();
+            for (int i = 0; i < array.length; i ++) {
+                array[i] = snapshot(array[i]);
+            }
+            return array;
+        }
+        if (arg instanceof byte[]) {
+            return ((byte[]) arg).clone();
+        } else if (arg instanceof int[]) {
+            return ((int[]) arg).clone();
+        } else if (arg instanceof long[]) {
+            return ((long[]) arg).clone();
+        } else if (arg instanceof char[]) {
+            return ((char[]) arg).clone();
+        } else if (arg instanceof short[]) {
+            return ((short[]) arg).clone();
+        } else if (arg instanceof boolean[]) {
+            return ((boolean[]) arg).clone();
+        } else if (arg instanceof float[]) {
+            return ((float[]) arg).clone();
+        } else {
+            return ((double[]) arg).clone();
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.cache.status;
+
+import com.alibaba.dubbo.cache.Cache;
+import com.alibaba.dubbo.cache.CacheFactory;
+import com.alibaba.dubbo.cache.support.AbstractCacheFactory;
+import com.alibaba.dubbo.cache.support.tinylfu.TinyLfuCache;
+import com.alibaba.dubbo.cache.support.tinylfu.TinyLfuCacheFactory;
+import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.common.status.Status;
+import com.alibaba.dubbo.common.status.StatusChecker;
+
+/**
+ * CacheStatusChecker
+ */
+@Activate
+public class CacheStatusChecker implements StatusChecker {
+
+    public Status check() {
+        // 只统计已经使用过的 tinylfu 缓存，不主动创建扩展
+        CacheFactory factory = ExtensionLoader.getExtensionLoader(CacheFactory.class).getLoadedExtension(TinyLfuCacheFactory.NAME);
+        if (! (factory instanceof AbstractCacheFactory)) {
+            return new Status(Status.Level.UNKNOWN);
+        }
+        StringBuilder msg = new StringBuilder();
+        for (Cache cache : ((AbstractCacheFactory) factory).getCaches()) {
+            if (cache instanceof TinyLfuCache) {
+                TinyLfuCache c = (TinyLfuCache) cache;
+                long hits = c.getHitCount();
+                long requests = hits + c.getMissCount();
+                if (msg.length() > 0) {
+                    msg.append(";");
+                }
+                msg.append(c.getName())
+                    .append("(size:").append(c.size())
+                    .append("/").append(c.getMaximumSize())
+                    .append(", hit:").append(hits)
+                    .append(", miss:").append(requests - hits)
+                    .append(", eviction:").append(c.getEvictionCount())
+                    .append(", hit rate:").append(requests == 0 ? 0 : hits * 100 / requests).append("%)");
+            }
+        }
+        return msg.length() == 0 ? new Status(Status.Level.UNKNOWN) : new Status(Status.Level.OK, msg.toString());
+    }
+
+}
@@ -15,6 +15,8 @@
  */
 package com.alibaba.dubbo.cache.support;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -35,12 +37,16 @@ public abstract class AbstractCacheFactory implements CacheFactory {
         String key = url.toFullString();
         Cache cache = caches.get(key);
         if (cache == null) {
-            caches.put(key, createCache(url));
+            caches.putIfAbsent(key, createCache(url));
             cache = caches.get(key);
         }
         return cache;
     }
 
+    public Collection<Cache> getCaches() {
+        return Collections.unmodifiableCollection(caches.values());
+    }
+
     protected abstract Cache createCache(URL url);
 
 }
@@ -0,0 +1,436 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.cache.support.tinylfu;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.alibaba.dubbo.cache.Cache;
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+
+/**
+ * W-TinyLFU 缓存。
+ * <p>
+ * 读操作不加锁：直接查 ConcurrentHashMap，访问记录（包括未命中）写入按线程分段的有损环形缓冲，缓冲积累到一半时由抢到锁的线程批量回放。
+ * 写操作在淘汰锁内完成。新条目先进入占总容量 1% 的 LRU 窗口，被挤出窗口后与主空间 probation 段的队首比较
+ * {@link FrequencySketch} 估算的访问频率，频率更高的留下，避免一次性扫描把热点数据冲掉；
+ * probation 段中再次被访问的条目晋升到占主空间 80% 的 protected 段。
+ * <p>
+ * URL 参数：
+ * <ul>
+ * <li>cache.size: 最大条目数，缺省 1000</li>
+ * <li>cache.expire: 写入后过期时间(毫秒)，可按方法配置，缺省 0 不过期</li>
+ * </ul>
+ */
+public class TinyLfuCache implements Cache {
+
+    private static final int   READ_BUFFER_STRIPES = Math.min(ceilingPowerOfTwo(Runtime.getRuntime().availableProcessors() * 2), 64);
+
+    private static final int   READ_BUFFER_SIZE    = 16;
+
+    private static final int   READ_BUFFER_MASK    = READ_BUFFER_SIZE - 1;
+
+    private static final int   DEAD                = -1;
+
+    private static final int   WINDOW              = 0;
+
+    private static final int   PROBATION           = 1;
+
+    private static final int   PROTECTED           = 2;
+
+    private final String       name;
+
+    private final int          maximum;
+
+    private final int          windowMaximum;
+
+    private final int          protectedMaximum;
+
+    private final long         expireNanos;
+
+    private final ConcurrentMap<Object, Node> data;
+
+    private final ReadBuffer[] readBuffers;
+
+    // 读操作发现过期后从 data 中删除，从队列中摘除留到持锁时处理
+    private final Queue<Node>  removals            = new ConcurrentLinkedQueue<Node>();
+
+    private final ReentrantLock evictionLock       = new ReentrantLock();
+
+    // 以下字段由 evictionLock 保护
+    private final FrequencySketch sketch;
+
+    private final Node         window              = new Node(null, null, 0);
+
+    private final Node         probation           = new Node(null, null, 0);
+
+    private final Node         protectedQueue      = new Node(null, null, 0);
+
+    private int                size;
+
+    private int                windowSize;
+
+    private int                protectedSize;
+
+    private volatile long      evictionCount;
+
+    public TinyLfuCache(URL url) {
+        this(url.getServiceKey() + "." + url.getParameter(Constants.METHOD_KEY, ""),
+             url.getParameter("cache.size", 1000),
+             url.getMethodParameter(url.getParameter(Constants.METHOD_KEY, ""), "cache.expire", 0L));
+    }
+
+    public TinyLfuCache(String name, int maximum, long expireMillis) {
+        if (maximum <= 0) {
+            throw new IllegalArgumentException("Illegal cache.size " + maximum + " of cache " + name);
+        }
+        this.name = name;
+        this.maximum = maximum;
+        this.windowMaximum = Math.max(1, maximum / 100);
+        this.protectedMaximum = (maximum - windowMaximum) * 80 / 100;
+        this.expireNanos = expireMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(expireMillis) : 0;
+        this.data = new ConcurrentHashMap<Object, Node>(Math.min(maximum, 1 << 16));
+        this.sketch = new FrequencySketch(maximum);
+        this.readBuffers = new ReadBuffer[READ_BUFFER_STRIPES];
+        for (int i = 0; i < readBuffers.length; i ++) {
+            readBuffers[i] = new ReadBuffer();
+        }
+        window.prev = window.next = window;
+        probation.prev = probation.next = probation;
+        protectedQueue.prev = protectedQueue.next = protectedQueue;
+    }
+
+    public Object get(Object key) {
+        ReadBuffer buffer = readBuffers[stripe()];
+        if (key == null) {
+            buffer.misses.incrementAndGet();
+            return null;
+        }
+        Node node = data.get(key);
+        if (node == null) {
+            recordMiss(buffer, key);
+            return null;
+        }
+        if (expireNanos > 0 && System.nanoTime() - node.writeTime >= expireNanos) {
+            if (data.remove(key, node)) {
+                removals.offer(node);
+            }
+            recordMiss(buffer, key);
+            return null;
+        }
+        buffer.hits.incrementAndGet();
+        if (buffer.offer(node)) {
+            tryDrain();
+        }
+        return node.value;
+    }
+
+    public void put(Object key, Object value) {
+        if (key == null || value == null) {
+            return;
+        }
+        Node node = new Node(key, value, System.nanoTime());
+        evictionLock.lock();
+        try {
+            drainBuffers();
+            Node old = data.put(key, node);
+            if (old != null) {
+                unlink(old);
+            }
+            sketch.increment(node.hash);
+            node.queue = WINDOW;
+            linkLast(window, node);
+            windowSize ++;
+            size ++;
+            evict();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaximumSize() {
+        return maximum;
+    }
+
+    public int size() {
+        return data.size();
+    }
+
+    public long getHitCount() {
+        long count = 0;
+        for (ReadBuffer buffer : readBuffers) {
+            count += buffer.hits.get();
+        }
+        return count;
+    }
+
+    public long getMissCount() {
+        long count = 0;
+        for (ReadBuffer buffer : readBuffers) {
+            count += buffer.misses.get();
+        }
+        return count;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * 未命中的访问也计入频率，否则反复未命中的 key 积累不到频率，准入时总是输给 probation 段的队首。
+     * 只缓冲调用时的哈希值：调用方的 key 可能是线程内复用的查询键，回放时已经变成另一个 key。
+     */
+    private void recordMiss(ReadBuffer buffer, Object key) {
+        buffer.misses.incrementAndGet();
+        if (buffer.offer(new Node(key.hashCode()))) {
+            tryDrain();
+        }
+    }
+
+    /**
+     * 回放缓冲后返回 key 的估算访问频率，供测试使用
+     */
+    int frequency(Object key) {
+        evictionLock.lock();
+        try {
+            drainBuffers();
+            return sketch.frequency(key.hashCode());
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void tryDrain() {
+        if (evictionLock.tryLock()) {
+            try {
+                drainBuffers();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private void drainBuffers() {
+        for (ReadBuffer buffer : readBuffers) {
+            buffer.drain(this);
+        }
+        Node node;
+        while ((node = removals.poll()) != null) {
+            unlink(node);
+        }
+    }
+
+    private void onAccess(Node node) {
+        sketch.increment(node.hash);
+        // 未命中记录的节点和已移除的节点只计频率
+        if (node.queue == DEAD) {
+            return;
+        }
+        if (node.queue == WINDOW) {
+            unlinkNode(node);
+            linkLast(window, node);
+        } else if (node.queue == PROTECTED) {
+            unlinkNode(node);
+            linkLast(protectedQueue, node);
+        } else {
+            unlinkNode(node);
+            node.queue = PROTECTED;
+            linkLast(protectedQueue, node);
+            protectedSize ++;
+            while (protectedSize > protectedMaximum) {
+                Node demoted = protectedQueue.next;
+                unlinkNode(demoted);
+                protectedSize --;
+                demoted.queue = PROBATION;
+                linkLast(probation, demoted);
+            }
+        }
+    }
+
+    private void evict() {
+        int candidates = 0;
+        while (windowSize > windowMaximum) {
+            Node node = window.next;
+            unlinkNode(node);
+            windowSize --;
+            node.queue = PROBATION;
+            linkLast(probation, node);
+            candidates ++;
+        }
+        while (size > maximum) {
+            Node victim = probation.next;
+            if (victim == probation) {
+                // probation 为空时从 protected 或窗口淘汰
+                victim = protectedQueue.next != protectedQueue ? protectedQueue.next : window.next;
+                evictNode(victim);
+                continue;
+            }
+            Node candidate = candidates > 0 ? probation.prev : victim;
+            if (candidate == victim
+                    || sketch.frequency(candidate.hash) > sketch.frequency(victim.hash)) {
+                evictNode(victim);
+            } else {
+                evictNode(candidate);
+            }
+            if (candidates > 0) {
+                candidates --;
+            }
+        }
+    }
+
+    private void evictNode(Node node) {
+        unlink(node);
+        data.remove(node.key, node);
+        evictionCount ++;
+    }
+
+    private void unlink(Node node) {
+        if (node.queue == DEAD) {
+            return;
+        }
+        unlinkNode(node);
+        if (node.queue == WINDOW) {
+            windowSize --;
+        } else if (node.queue == PROTECTED) {
+            protectedSize --;
+        }
+        size --;
+        node.queue = DEAD;
+    }
+
+    private static void linkLast(Node head, Node node) {
+        node.prev = head.prev;
+        node.next = head;
+        head.prev.next = node;
+        head.prev = node;
+    }
+
+    private static void unlinkNode(Node node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = node.next = null;
+    }
+
+    private static int stripe() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (READ_BUFFER_STRIPES - 1);
+    }
+
+    static int ceilingPowerOfTwo(int x) {
+        int n = 1;
+        while (n < x) {
+            n <<= 1;
+        }
+        return n;
+    }
+
+    private static final class Node {
+
+        final Object   key;
+
+        final int      hash;
+
+        final Object   value;
+
+        final long     writeTime;
+
+        // 以下字段由 evictionLock 保护
+        int            queue = DEAD;
+
+        Node           prev;
+
+        Node           next;
+
+        Node(Object key, Object value, long writeTime) {
+            this.key = key;
+            this.hash = key == null ? 0 : key.hashCode();
+            this.value = value;
+            this.writeTime = writeTime;
+        }
+
+        /**
+         * 未命中记录，只带哈希值，不引用调用方的 key
+         */
+        Node(int hash) {
+            this.key = null;
+            this.hash = hash;
+            this.value = null;
+            this.writeTime = 0;
+        }
+    }
+
+    /**
+     * 有损的访问记录缓冲，满了直接丢弃，只影响淘汰精度。
+     */
+    private static final class ReadBuffer {
+
+        final AtomicLong                 writeCount = new AtomicLong();
+
+        final AtomicReferenceArray<Node> buffer     = new AtomicReferenceArray<Node>(READ_BUFFER_SIZE);
+
+        final AtomicLong                 hits       = new AtomicLong();
+
+        final AtomicLong                 misses     = new AtomicLong();
+
+        volatile long                    readCount;
+
+        /**
+         * @return 是否需要回放
+         */
+        boolean offer(Node node) {
+            long head = readCount;
+            long tail = writeCount.get();
+            long pending = tail - head;
+            if (pending >= READ_BUFFER_SIZE) {
+                return true;
+            }
+            if (writeCount.compareAndSet(tail, tail + 1)) {
+                buffer.lazySet((int) (tail & READ_BUFFER_MASK), node);
+                return pending + 1 >= READ_BUFFER_SIZE / 2;
+            }
+            return false;
+        }
+
+        void drain(TinyLfuCache cache) {
+            long head = readCount;
+            long tail = writeCount.get();
+            for (; head < tail; head ++) {
+                int index = (int) (head & READ_BUFFER_MASK);
+                Node node = buffer.get(index);
+                if (node == null) {
+                    // 写入方已占位但还未发布
+                    break;
+                }
+                buffer.lazySet(index, null);
+                cache.onAccess(node);
+            }
+            readCount = head;
+        }
+    }
+
+}
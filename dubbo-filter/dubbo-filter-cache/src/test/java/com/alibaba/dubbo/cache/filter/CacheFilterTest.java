@@ -0,0 +1,196 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.cache.filter;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.dubbo.cache.CacheFactory;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.RpcResult;
+
+public class CacheFilterTest {
+
+    private CacheFilter filter;
+
+    @Before
+    public void setUp() throws Exception {
+        filter = new CacheFilter();
+        filter.setCacheFactory(ExtensionLoader.getExtensionLoader(CacheFactory.class).getAdaptiveExtension());
+    }
+
+    @Test
+    public void testCache() throws Exception {
+        CountInvoker invoker = new CountInvoker(URL.valueOf("test://127.0.0.1/CacheService?findCache.cache=lru"));
+        assertEquals("findCache:1", filter.invoke(invoker, invocation("findCache", "a", 1)).getValue());
+        assertEquals("findCache:1", filter.invoke(invoker, invocation("findCache", "a", 1)).getValue());
+        assertEquals("findCache:2", filter.invoke(invoker, invocation("findCache", "a", 2)).getValue());
+        assertEquals("findCache:2", filter.invoke(invoker, invocation("findCache", "a", 2)).getValue());
+        assertEquals(2, invoker.count.get());
+    }
+
+    @Test
+    public void testNoCacheMethod() throws Exception {
+        CountInvoker invoker = new CountInvoker(URL.valueOf("test://127.0.0.1/CacheService?findCache.cache=lru"));
+        assertEquals("find:1", filter.invoke(invoker, invocation("find", "a", 1)).getValue());
+        assertEquals("find:2", filter.invoke(invoker, invocation("find", "a", 1)).getValue());
+    }
+
+    @Test
+    public void testCachePerInvoker() throws Exception {
+        CountInvoker invoker1 = new CountInvoker(URL.valueOf("test://127.0.0.1/CacheService?cache=lru"));
+        CountInvoker invoker2 = new CountInvoker(URL.valueOf("test://127.0.0.2/CacheService?cache=threadlocal"));
+        assertEquals("find:1", filter.invoke(invoker1, invocation("find", "a", 1)).getValue());
+        assertEquals("find:1", filter.invoke(invoker2, invocation("find", "a", 1)).getValue());
+        assertEquals("find:1", filter.invoke(invoker1, invocation("find", "a", 1)).getValue());
+        assertEquals("find:1", filter.invoke(invoker2, invocation("find", "a", 1)).getValue());
+        invoker1.available = false;
+        CountInvoker invoker3 = new CountInvoker(URL.valueOf("test://127.0.0.3/CacheService?cache=lru"));
+        assertEquals("find:1", filter.invoke(invoker3, invocation("find", "a", 1)).getValue());
+    }
+
+    @Test
+    public void testCoalesce() throws Exception {
+        final CountInvoker invoker = new CountInvoker(URL.valueOf("test://127.0.0.1/CacheService?cache=lru&find.cache.coalesce=true"));
+        invoker.sleep = 200;
+        final List<Object> values = Collections.synchronizedList(new ArrayList<Object>());
+        Thread[] threads = new Thread[5];
+        for (int i = 0; i < threads.length; i ++) {
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    values.add(filter.invoke(invoker, invocation("find", "a", 1)).getValue());
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1, invoker.count.get());
+        assertEquals(Collections.nCopies(5, "find:1"), values);
+    }
+
+    @Test
+    public void testCoalesceException() throws Exception {
+        final CountInvoker invoker = new CountInvoker(URL.valueOf("test://127.0.0.1/CacheService?cache=lru&cache.coalesce=true"));
+        invoker.sleep = 200;
+        invoker.fail = true;
+        final AtomicInteger failures = new AtomicInteger();
+        Thread[] threads = new Thread[3];
+        for (int i = 0; i < threads.length; i ++) {
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        filter.invoke(invoker, invocation("find", "a", 1));
+                    } catch (RpcException e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1, invoker.count.get());
+        assertEquals(3, failures.get());
+    }
+
+    @Test
+    public void testRefresh() throws Exception {
+        CountInvoker invoker = new CountInvoker(URL.valueOf("test://127.0.0.1/CacheService?cache=lru&find.cache.refresh=50"));
+        assertEquals("find:1", filter.invoke(invoker, invocation("find", "a", 1)).getValue());
+        assertEquals("find:1", filter.invoke(invoker, invocation("find", "a", 1)).getValue());
+        Thread.sleep(100);
+        // 过了刷新时间仍然返回旧值，后台刷新
+        assertEquals("find:1", filter.invoke(invoker, invocation("find", "a", 1)).getValue());
+        for (int i = 0; i < 50 && invoker.count.get() < 2; i ++) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(10);
+        assertEquals("find:2", filter.invoke(invoker, invocation("find", "a", 1)).getValue());
+        assertEquals(2, invoker.count.get());
+    }
+
+    private static Invocation invocation(String methodName, Object... args) {
+        Class<?>[] types = new Class<?>[args.length];
+        for (int i = 0; i < args.length; i ++) {
+            types[i] = args[i].getClass();
+        }
+        return new RpcInvocation(methodName, types, args);
+    }
+
+    private static class CountInvoker implements Invoker<Object> {
+
+        final AtomicInteger count = new AtomicInteger();
+
+        final URL           url;
+
+        volatile boolean    available = true;
+
+        volatile long       sleep;
+
+        volatile boolean    fail;
+
+        CountInvoker(URL url) {
+            this.url = url;
+        }
+
+        public Class<Object> getInterface() {
+            return Object.class;
+        }
+
+        public Result invoke(Invocation invocation) throws RpcException {
+            int count = this.count.incrementAndGet();
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                }
+            }
+            if (fail) {
+                throw new RpcException("failed " + count);
+            }
+            return new RpcResult(invocation.getMethodName() + ":" + count);
+        }
+
+        public URL getUrl() {
+            return url;
+        }
+
+        public boolean isAvailable() {
+            return available;
+        }
+
+        public void destroy() {
+            available = false;
+        }
+    }
+
+}
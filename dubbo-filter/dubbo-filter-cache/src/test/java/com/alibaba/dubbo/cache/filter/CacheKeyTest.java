@@ -0,0 +1,125 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.cache.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class CacheKeyTest {
+
+    @Test
+    public void testValueKey() throws Exception {
+        Object[] args = new Object[] {"a", 1, new int[] {1, 2}, Arrays.asList("x", "y")};
+        Object lookup = CacheKey.lookupKey(args);
+        assertTrue(lookup instanceof CacheKey);
+        Object stored = CacheKey.storeKey(lookup, args);
+        assertNotSame(lookup, stored);
+        assertEquals(stored, lookup);
+        assertEquals(stored.hashCode(), lookup.hashCode());
+
+        Map<Object, Object> map = new HashMap<Object, Object>();
+        map.put(stored, "value");
+        // 修改调用方的数组不影响已缓存的键
+        ((int[]) args[2])[0] = 3;
+        assertEquals("value", map.get(CacheKey.lookupKey(new Object[] {"a", 1, new int[] {1, 2}, Arrays.asList("x", "y")})));
+        assertFalse(map.containsKey(CacheKey.lookupKey(args)));
+    }
+
+    @Test
+    public void testCollectionSnapshot() throws Exception {
+        List<String> list = new ArrayList<String>(Arrays.asList("x", "y"));
+        Map<String, List<String>> param = new HashMap<String, List<String>>();
+        param.put("k", new ArrayList<String>(Arrays.asList("v")));
+        Set<Integer> set = new TreeSet<Integer>(Arrays.asList(1, 2));
+        Object[] args = new Object[] {list, param, set};
+        Object stored = CacheKey.storeKey(CacheKey.lookupKey(args), args);
+        int hash = stored.hashCode();
+        Map<Object, Object> map = new HashMap<Object, Object>();
+        map.put(stored, "value");
+
+        // 调用方复用并修改集合参数不影响已缓存的键
+        list.add("z");
+        param.get("k").add("w");
+        set.add(3);
+        assertEquals(hash, stored.hashCode());
+        assertFalse(map.containsKey(CacheKey.lookupKey(args)));
+        Map<String, List<String>> original = new HashMap<String, List<String>>();
+        original.put("k", Arrays.asList("v"));
+        assertEquals("value", map.get(CacheKey.lookupKey(new Object[] {
+                Arrays.asList("x", "y"), original, new HashSet<Integer>(Arrays.asList(2, 1))})));
+    }
+
+    @Test
+    public void testLookupKeyReused() throws Exception {
+        Object key1 = CacheKey.lookupKey(new Object[] {"a"});
+        CacheKey.release(key1);
+        Object key2 = CacheKey.lookupKey(new Object[] {"b"});
+        assertSame(key1, key2);
+    }
+
+    @Test
+    public void testNullAndEmptyArgs() throws Exception {
+        Object stored = CacheKey.storeKey(CacheKey.lookupKey(null), null);
+        assertEquals(stored, CacheKey.lookupKey(new Object[0]));
+        assertEquals(CacheKey.storeKey(CacheKey.lookupKey(new Object[] {null}), new Object[] {null}),
+                     CacheKey.lookupKey(new Object[] {null}));
+    }
+
+    @Test
+    public void testBeanFallbackToString() throws Exception {
+        Bean bean = new Bean();
+        bean.setName("dubbo");
+        Object[] args = new Object[] {"a", bean};
+        Object key = CacheKey.lookupKey(args);
+        assertTrue(key instanceof String);
+        assertSame(key, CacheKey.storeKey(key, args));
+        Bean other = new Bean();
+        other.setName("dubbo");
+        assertEquals(key, CacheKey.lookupKey(new Object[] {"a", other}));
+
+        List<Object> list = new ArrayList<Object>();
+        list.add(bean);
+        assertTrue(CacheKey.lookupKey(new Object[] {list}) instanceof String);
+    }
+
+    public static class Bean {
+
+        private String name;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+}
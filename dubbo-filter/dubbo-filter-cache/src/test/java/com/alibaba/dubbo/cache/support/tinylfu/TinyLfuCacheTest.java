@@ -0,0 +1,200 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.cache.support.tinylfu;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.cache.Cache;
+import com.alibaba.dubbo.cache.CacheFactory;
+import com.alibaba.dubbo.cache.status.CacheStatusChecker;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.common.status.Status;
+
+public class TinyLfuCacheTest {
+
+    @Test
+    public void testPutAndGet() throws Exception {
+        TinyLfuCache cache = new TinyLfuCache("test", 100, 0);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("c", null);
+        assertEquals("1", cache.get("a"));
+        assertEquals("2", cache.get("b"));
+        assertNull(cache.get("c"));
+        cache.put("a", "3");
+        assertEquals("3", cache.get("a"));
+        assertEquals(2, cache.size());
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testMaximumSize() throws Exception {
+        TinyLfuCache cache = new TinyLfuCache("test", 100, 0);
+        for (int i = 0; i < 1000; i ++) {
+            cache.put(i, i);
+        }
+        assertEquals(100, cache.size());
+        assertEquals(900, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testFrequentEntriesSurviveScan() throws Exception {
+        TinyLfuCache cache = new TinyLfuCache("test", 100, 0);
+        for (int i = 0; i < 50; i ++) {
+            cache.put("hot" + i, i);
+        }
+        for (int round = 0; round < 20; round ++) {
+            for (int i = 0; i < 50; i ++) {
+                cache.get("hot" + i);
+            }
+        }
+        // 一次性扫描大量冷数据，不应冲掉热点数据
+        for (int i = 0; i < 10000; i ++) {
+            cache.put("cold" + i, i);
+        }
+        int hits = 0;
+        for (int i = 0; i < 50; i ++) {
+            if (cache.get("hot" + i) != null) {
+                hits ++;
+            }
+        }
+        assertTrue("hot entries hit " + hits, hits >= 45);
+    }
+
+    @Test
+    public void testFrequentMissesAdmitted() throws Exception {
+        TinyLfuCache cache = new TinyLfuCache("test", 100, 0);
+        for (int i = 0; i < 100; i ++) {
+            cache.put(i, i);
+        }
+        // 反复未命中的 key 积累了频率，被挤出窗口后能替换掉 probation 段只访问过一次的队首
+        for (int i = 0; i < 10; i ++) {
+            assertNull(cache.get("missed"));
+        }
+        cache.put("missed", "1");
+        cache.put("next", "2");
+        assertEquals("1", cache.get("missed"));
+        assertEquals(100, cache.size());
+    }
+
+    @Test
+    public void testMissFrequencyOfReusedLookupKey() throws Exception {
+        TinyLfuCache cache = new TinyLfuCache("test", 100, 0);
+        // 模拟 CacheFilter 在线程内复用的查询键：未命中 A 后同一线程接着用同一个对象查 B
+        MutableKey lookup = new MutableKey();
+        lookup.value = "A";
+        assertNull(cache.get(lookup));
+        lookup.value = "B";
+        assertNull(cache.get(lookup));
+        lookup.value = null;
+        assertEquals(1, cache.frequency("A"));
+        assertEquals(1, cache.frequency("B"));
+    }
+
+    /**
+     * 与内容相同的 String 相等
+     */
+    private static final class MutableKey {
+
+        String value;
+
+        @Override
+        public int hashCode() {
+            return value == null ? 0 : value.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj != null && obj.equals(value);
+        }
+    }
+
+    @Test
+    public void testExpireAfterWrite() throws Exception {
+        TinyLfuCache cache = new TinyLfuCache("test", 100, 50);
+        cache.put("a", "1");
+        assertEquals("1", cache.get("a"));
+        Thread.sleep(100);
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+        cache.put("a", "2");
+        assertEquals("2", cache.get("a"));
+    }
+
+    @Test
+    public void testMethodExpireFromUrl() throws Exception {
+        URL url = URL.valueOf("test://127.0.0.1/DemoService?method=sayHello&cache.size=10&sayHello.cache.expire=1000");
+        TinyLfuCache cache = new TinyLfuCache(url);
+        assertEquals("DemoService.sayHello", cache.getName());
+        assertEquals(10, cache.getMaximumSize());
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final TinyLfuCache cache = new TinyLfuCache("test", 200, 0);
+        final AtomicInteger errors = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(8);
+        for (int t = 0; t < 8; t ++) {
+            final int seed = t;
+            new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        for (int i = 0; i < 20000; i ++) {
+                            Integer key = (i * 31 + seed) % 500;
+                            Object value = cache.get(key);
+                            if (value == null) {
+                                cache.put(key, key);
+                            } else if (! key.equals(value)) {
+                                errors.incrementAndGet();
+                            }
+                        }
+                    } catch (Throwable e) {
+                        errors.incrementAndGet();
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }).start();
+        }
+        latch.await();
+        assertEquals(0, errors.get());
+        assertTrue(cache.size() <= 200);
+        assertEquals(8 * 20000, cache.getHitCount() + cache.getMissCount());
+    }
+
+    @Test
+    public void testFactoryAndStatus() throws Exception {
+        CacheFactory factory = ExtensionLoader.getExtensionLoader(CacheFactory.class).getExtension("tinylfu");
+        Cache cache = factory.getCache(URL.valueOf("test://127.0.0.1/DemoService?method=sayHello&cache=tinylfu"));
+        assertTrue(cache instanceof TinyLfuCache);
+        cache.put("a", "1");
+        cache.get("a");
+        cache.get("b");
+        Status status = new CacheStatusChecker().check();
+        assertEquals(Status.Level.OK, status.getLevel());
+        assertTrue(status.getMessage(), status.getMessage().contains("DemoService.sayHello(size:1/1000, hit:1, miss:1"));
+    }
+
+}
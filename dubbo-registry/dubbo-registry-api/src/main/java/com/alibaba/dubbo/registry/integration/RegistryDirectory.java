@@ -48,6 +48,7 @@ import com.alibaba.dubbo.rpc.cluster.Router;
 import com.alibaba.dubbo.rpc.cluster.RouterFactory;
 import com.alibaba.dubbo.rpc.cluster.directory.AbstractDirectory;
 import com.alibaba.dubbo.rpc.cluster.directory.StaticDirectory;
+import com.alibaba.dubbo.rpc.cluster.router.condition.ConditionRouter;
 import com.alibaba.dubbo.rpc.cluster.support.ClusterUtils;
 import com.alibaba.dubbo.rpc.protocol.InvokerWrapper;
 import com.alibaba.dubbo.rpc.support.RpcUtils;
@@ -451,12 +452,24 @@ public class RegistryDirectory<T> extends AbstractDirectory<T> implements Notify
         return providerUrl;
     }
 
+    /**
+     * 未配置 runtime 的条件路由只取决于消费者URL和提供者URL，在提供者或路由规则变化时按方法预先计算。
+     */
+    @Override
+    protected boolean isRuntimeRouter(Router router) {
+        if (router instanceof ConditionRouter && router.getUrl() != null
+                && router.getUrl().getParameter(Constants.RUNTIME_KEY) == null) {
+            return false;
+        }
+        return super.isRuntimeRouter(router);
+    }
+
     private List<Invoker<T>> route(List<Invoker<T>> invokers, String method) {
         Invocation invocation = new RpcInvocation(method, new Class<?>[0], new Object[0]);
         List<Router> routers = getRouters(); 
         if (routers != null) {
             for (Router router : routers) {
-                if (router.getUrl() != null && ! router.getUrl().getParameter(Constants.RUNTIME_KEY, true)) {
+                if (! isRuntimeRouter(router)) {
                     invokers = router.route(invokers, getConsumerUrl(), invocation);
                 }
             }
@@ -503,12 +516,13 @@ public class RegistryDirectory<T> extends AbstractDirectory<T> implements Notify
                 if (methodInvokers == null || methodInvokers.size() == 0) {
                     methodInvokers = invokersList;
                 }
-                newMethodInvokerMap.put(method, route(methodInvokers, method));
+                newMethodInvokerMap.put(method, methodInvokers);
             }
         }
-        // sort and unmodifiable
+        // route, sort and unmodifiable
+        // 所有方法（包括 * 和只在提供者 methods 中声明的方法）都预先执行非 runtime 的路由，调用时只查表
         for (String method : new HashSet<String>(newMethodInvokerMap.keySet())) {
-            List<Invoker<T>> methodInvokers = newMethodInvokerMap.get(method);
+            List<Invoker<T>> methodInvokers = new ArrayList<Invoker<T>>(route(newMethodInvokerMap.get(method), method));
             Collections.sort(methodInvokers, InvokerComparator.getComparator());
             newMethodInvokerMap.put(method, Collections.unmodifiableList(methodInvokers));
         }
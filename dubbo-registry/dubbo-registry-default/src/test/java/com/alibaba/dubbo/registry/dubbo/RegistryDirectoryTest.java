@@ -912,6 +912,35 @@ public class RegistryDirectoryTest {
         Assert.assertEquals(2,invokers2.size());
     }
 
+    /**
+     * 条件路由在推送时按方法预先计算，包括未声明的方法，调用时直接返回计算好的列表
+     */
+    @Test
+    public void testNotifyConditionRouter_Precomputed() {
+        RegistryDirectory registryDirectory = getRegistryDirectory();
+        registryDirectory.setConsumerUrl(URL.valueOf("consumer://10.20.30.1/" + service));
+
+        List<URL> durls = new ArrayList<URL>();
+        durls.add(URL.valueOf(Constants.ROUTE_PROTOCOL + "://0.0.0.0/" + service)
+                .addParameter(Constants.CATEGORY_KEY, Constants.ROUTERS_CATEGORY)
+                .addParameter(Constants.ROUTER_KEY, "condition")
+                .addParameterAndEncoded(Constants.RULE_KEY, "host = 10.20.30.0/24 => host != 10.20.30.141"));
+        durls.add(SERVICEURL.setHost("10.20.30.140").addParameter("methods", "getXXX1"));
+        durls.add(SERVICEURL.setHost("10.20.30.141").addParameter("methods", "getXXX1"));
+        registryDirectory.notify(durls);
+
+        invocation = new RpcInvocation("getXXX1", new Class[0], new Object[0]);
+        List<Invoker<?>> invokers = registryDirectory.list(invocation);
+        Assert.assertEquals(1, invokers.size());
+        Assert.assertEquals("10.20.30.140", invokers.get(0).getUrl().getHost());
+        Assert.assertSame(invokers, registryDirectory.list(invocation));
+
+        invocation = new RpcInvocation("notDeclared", new Class[0], new Object[0]);
+        invokers = registryDirectory.list(invocation);
+        Assert.assertEquals(1, invokers.size());
+        Assert.assertEquals("10.20.30.140", invokers.get(0).getUrl().getHost());
+    }
+
     @Test
     public void testNotifyRouterUrls_Clean() {
         if (isScriptUnsupported) return;
@@ -0,0 +1,114 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.exchange.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.alibaba.dubbo.common.compress.Compressor;
+import com.alibaba.dubbo.remoting.buffer.ChannelBuffer;
+import com.alibaba.dubbo.remoting.buffer.ChannelBufferOutputStream;
+
+/**
+ * 消息体输出流：先直接写入 buffer，写入量超过阈值时把已写入的部分取出，在原位置写入压缩器编号，
+ * 之后的数据都经压缩后写入 buffer。只有不超过阈值的前缀会被复制一次，消息体不会整体缓冲两遍。
+ * compressor 为 null 时不压缩。
+ */
+final class CompressibleOutputStream extends OutputStream {
+
+    private final ChannelBuffer buffer;
+
+    private final int           startIndex;
+
+    private final Compressor    compressor;
+
+    private final int           threshold;
+
+    private OutputStream        compressed;
+
+    CompressibleOutputStream(ChannelBuffer buffer, Compressor compressor, int threshold) {
+        this.buffer = buffer;
+        this.startIndex = buffer.writerIndex();
+        this.compressor = compressor;
+        this.threshold = threshold;
+    }
+
+    public boolean isCompressed() {
+        return compressed != null;
+    }
+
+    /**
+     * 消息体在 buffer 中的长度，压缩时包含压缩器编号
+     */
+    public int writtenBytes() {
+        return buffer.writerIndex() - startIndex;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (exceedsThreshold(1)) {
+            startCompress();
+        }
+        if (compressed != null) {
+            compressed.write(b);
+        } else {
+            buffer.writeByte(b);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return;
+        }
+        if (exceedsThreshold(len)) {
+            startCompress();
+        }
+        if (compressed != null) {
+            compressed.write(b, off, len);
+        } else {
+            buffer.writeBytes(b, off, len);
+        }
+    }
+
+    /**
+     * 序列化器的 flush 不传给压缩流，避免产生过小的压缩块，数据在 close 时全部写出。
+     */
+    @Override
+    public void flush() throws IOException {
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (compressed != null) {
+            compressed.close();
+        }
+    }
+
+    private boolean exceedsThreshold(int len) {
+        return compressor != null && compressed == null && writtenBytes() + len > threshold;
+    }
+
+    private void startCompress() throws IOException {
+        byte[] head = new byte[writtenBytes()];
+        buffer.getBytes(startIndex, head);
+        buffer.writerIndex(startIndex);
+        buffer.writeByte(compressor.getContentTypeId());
+        compressed = compressor.compress(new ChannelBufferOutputStream(buffer));
+        compressed.write(head);
+    }
+
+}
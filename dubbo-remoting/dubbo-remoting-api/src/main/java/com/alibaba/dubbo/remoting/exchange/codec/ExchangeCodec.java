@@ -17,7 +17,11 @@ package com.alibaba.dubbo.remoting.exchange.codec;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.compress.Compressor;
 import com.alibaba.dubbo.common.io.Bytes;
 import com.alibaba.dubbo.common.io.StreamUtils;
 import com.alibaba.dubbo.common.logger.Logger;
@@ -30,11 +34,11 @@ import com.alibaba.dubbo.remoting.Channel;
 import com.alibaba.dubbo.remoting.RemotingException;
 import com.alibaba.dubbo.remoting.buffer.ChannelBuffer;
 import com.alibaba.dubbo.remoting.buffer.ChannelBufferInputStream;
-import com.alibaba.dubbo.remoting.buffer.ChannelBufferOutputStream;
 import com.alibaba.dubbo.remoting.exchange.Request;
 import com.alibaba.dubbo.remoting.exchange.Response;
 import com.alibaba.dubbo.remoting.exchange.support.DefaultFuture;
 import com.alibaba.dubbo.remoting.telnet.codec.TelnetCodec;
+import com.alibaba.dubbo.remoting.transport.ChannelCodecSettings;
 import com.alibaba.dubbo.remoting.transport.CodecSupport;
 
 /**
@@ -68,6 +72,15 @@ public class ExchangeCodec extends TelnetCodec {
 
     protected static final int      SERIALIZATION_MASK = 0x1f;
 
+    // 消息头第 4 个字节（状态）的最高位，置位时消息体以压缩器编号开头，其后为压缩数据。
+    // 状态码都小于 0x80，请求不使用状态字节；只在对端声明支持时才会置位
+    protected static final byte     FLAG_COMPRESSED    = (byte) 0x80;
+
+    // 编解码器类 -> 是否覆盖了已废弃的 decodeBody(Channel, InputStream, byte[])
+    private static final ConcurrentMap<Class<?>, Boolean> LEGACY_DECODE_BODY = new ConcurrentHashMap<Class<?>, Boolean>();
+
+    private final boolean           legacyDecodeBody   = overridesLegacyDecodeBody(getClass());
+
     public Short getMagicCode() {
         return MAGIC;
     }
@@ -86,6 +99,23 @@ public class ExchangeCodec extends TelnetCodec {
 
     public Object decode(Channel channel, ChannelBuffer buffer) throws IOException {
         int readable = buffer.readableBytes();
+        int index = buffer.readerIndex();
+        // 以魔数开头的数据包直接按绝对位置从 buffer 中读取消息头各字段，不再为每个消息分配消息头数组
+        if (readable > 1 && buffer.getByte(index) == MAGIC_HIGH && buffer.getByte(index + 1) == MAGIC_LOW) {
+            if (readable < HEADER_LENGTH) {
+                return DecodeResult.NEED_MORE_INPUT;
+            }
+            int len = getInt(buffer, index + 12);
+            checkPayload(channel, len);
+            if (readable < len + HEADER_LENGTH) {
+                return DecodeResult.NEED_MORE_INPUT;
+            }
+            byte flag = buffer.getByte(index + 2);
+            byte status = buffer.getByte(index + 3);
+            long id = getLong(buffer, index + 4);
+            buffer.skipBytes(HEADER_LENGTH);
+            return decodeBody(channel, buffer, len, flag, status, id);
+        }
         // 创建消息头字节数组
         byte[] header = new byte[Math.min(readable, HEADER_LENGTH)];
         // 读取消息头数据
@@ -146,13 +176,39 @@ public class ExchangeCodec extends TelnetCodec {
             return DecodeResult.NEED_MORE_INPUT;
         }
 
+        return decodeBody(channel, buffer, len, header[2], header[3], Bytes.bytes2long(header, 4));
+    }
+
+    private Object decodeBody(Channel channel, ChannelBuffer buffer, int len, byte flag, byte status, long id) throws IOException {
         // limit input stream.
         ChannelBufferInputStream is = new ChannelBufferInputStream(buffer, len);
+        InputStream decompressed = null;
 
         try {
+            if ((status & FLAG_COMPRESSED) != 0) {
+                status &= ~FLAG_COMPRESSED;
+                byte compressorId = (byte) is.read();
+                Compressor compressor = CodecSupport.getCompressorById(compressorId);
+                if (compressor == null) {
+                    throw new IOException("Unsupported compressor id " + compressorId + " in message " + id
+                            + " from " + channel.getRemoteAddress());
+                }
+                decompressed = compressor.decompress(is);
+                // 继续进行解码工作，DubboCodec#decodeBody
+                return decodeBody(channel, decompressed, len, flag, status, id);
+            }
             // 继续进行解码工作，DubboCodec#decodeBody
-            return decodeBody(channel, is, header);
+            return decodeBody(channel, is, len, flag, status, id);
         } finally {
+            if (decompressed != null) {
+                try {
+                    // 读到解压流结束，消费掉压缩格式的结束标记（如 lz4 的空块），否则下面会误报未读完的数据
+                    drain(decompressed);
+                    decompressed.close();
+                } catch (IOException e) {
+                    logger.warn(e.getMessage(), e);
+                }
+            }
             if (is.available() > 0) {
                 try {
                     if (logger.isWarnEnabled()) {
@@ -166,12 +222,80 @@ public class ExchangeCodec extends TelnetCodec {
         }
     }
 
+    private static void drain(InputStream is) throws IOException {
+        byte[] skip = new byte[256];
+        while (is.read(skip) >= 0) {
+        }
+    }
+
+    /**
+     * 子类只覆盖了已废弃的 byte[] 重载时，拼出消息头交给它，否则直接按字段解码
+     */
+    private Object decodeBody(Channel channel, InputStream is, int len, byte flag, byte status, long id) throws IOException {
+        if (legacyDecodeBody) {
+            byte[] header = new byte[HEADER_LENGTH];
+            Bytes.short2bytes(MAGIC, header);
+            header[2] = flag;
+            header[3] = status;
+            Bytes.long2bytes(id, header, 4);
+            Bytes.int2bytes(len, header, 12);
+            return decodeBody(channel, is, header);
+        }
+        return decodeBody(channel, is, flag, status, id);
+    }
+
+    /**
+     * 从具体类向上找到第一个声明 decodeBody 的类，看它覆盖的是哪个重载。每个类只反射一次。
+     */
+    private static boolean overridesLegacyDecodeBody(Class<?> type) {
+        Boolean legacy = LEGACY_DECODE_BODY.get(type);
+        if (legacy == null) {
+            legacy = Boolean.FALSE;
+            for (Class<?> c = type; c != null && c != ExchangeCodec.class; c = c.getSuperclass()) {
+                if (declares(c, byte.class, byte.class, long.class)) {
+                    break;
+                }
+                if (declares(c, byte[].class)) {
+                    legacy = Boolean.TRUE;
+                    break;
+                }
+            }
+            LEGACY_DECODE_BODY.putIfAbsent(type, legacy);
+        }
+        return legacy;
+    }
+
+    private static boolean declares(Class<?> type, Class<?>... headerTypes) {
+        Class<?>[] parameterTypes = new Class<?>[headerTypes.length + 2];
+        parameterTypes[0] = Channel.class;
+        parameterTypes[1] = InputStream.class;
+        System.arraycopy(headerTypes, 0, parameterTypes, 2, headerTypes.length);
+        try {
+            type.getDeclaredMethod("decodeBody", parameterTypes);
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @deprecated 消息头已拆分为各字段，请覆盖 {@link #decodeBody(Channel, InputStream, byte, byte, long)}。
+     * 只覆盖此方法的子类仍会被调用，但每个消息都要分配消息头数组
+     */
+    @Deprecated
     protected Object decodeBody(Channel channel, InputStream is, byte[] header) throws IOException {
-        byte flag = header[2], proto = (byte) (flag & SERIALIZATION_MASK);
-        Serialization s = CodecSupport.getSerialization(channel.getUrl(), proto);
+        return decodeBody(channel, is, header[2], header[3], Bytes.bytes2long(header, 4));
+    }
+
+    /**
+     * @param flag 消息头第 3 个字节：请求/响应、单向/双向、事件标志以及序列化器编号
+     * @param status 消息头第 4 个字节：响应状态
+     * @param id 请求编号
+     */
+    protected Object decodeBody(Channel channel, InputStream is, byte flag, byte status, long id) throws IOException {
+        byte proto = (byte) (flag & SERIALIZATION_MASK);
+        Serialization s = ChannelCodecSettings.getSettings(channel).getSerialization(proto);
         ObjectInput in = s.deserialize(channel.getUrl(), is);
-        // get request id.
-        long id = Bytes.bytes2long(header, 4);
         if ((flag & FLAG_REQUEST) == 0) {
             // decode response.
             Response res = new Response(id);
@@ -179,7 +303,6 @@ public class ExchangeCodec extends TelnetCodec {
                 res.setEvent(Response.HEARTBEAT_EVENT);
             }
             // get status.
-            byte status = header[3];
             res.setStatus(status);
             if (status == Response.OK) {
                 try {
@@ -189,7 +312,7 @@ public class ExchangeCodec extends TelnetCodec {
                     } else if (res.isEvent()) {
                         data = decodeEventData(channel, in);
                     } else {
-                        data = decodeResponseData(channel, in, getRequestData(id));
+                        data = decodeResponseData(channel, in, getRequestData(channel, id));
                     }
                     res.setResult(data);
                 } catch (Throwable t) {
@@ -227,6 +350,19 @@ public class ExchangeCodec extends TelnetCodec {
         }
     }
 
+    private static int getInt(ChannelBuffer buffer, int index) {
+        return (buffer.getByte(index) & 0xff) << 24 | (buffer.getByte(index + 1) & 0xff) << 16
+                | (buffer.getByte(index + 2) & 0xff) << 8 | buffer.getByte(index + 3) & 0xff;
+    }
+
+    private static long getLong(ChannelBuffer buffer, int index) {
+        return ((long) getInt(buffer, index)) << 32 | getInt(buffer, index + 4) & 0xffffffffL;
+    }
+
+    /**
+     * @deprecated 需要遍历所有连接，请使用 {@link #getRequestData(Channel, long)}
+     */
+    @Deprecated
     protected Object getRequestData(long id) {
         DefaultFuture future = DefaultFuture.getFuture(id);
         if (future == null)
@@ -237,6 +373,16 @@ public class ExchangeCodec extends TelnetCodec {
         return req.getData();
     }
 
+    protected Object getRequestData(Channel channel, long id) {
+        DefaultFuture future = DefaultFuture.getFuture(channel, id);
+        if (future == null)
+            return null;
+        Request req = future.getRequest();
+        if (req == null)
+            return null;
+        return req.getData();
+    }
+
     /**
      * 请求对象Request的编码过程：将消息头和消息体(需要序列化)写入ChannelBuffer
      * （1）先通过位运算将消息头写入到header数组中
@@ -279,7 +425,10 @@ public class ExchangeCodec extends TelnetCodec {
         int savedWriteIndex = buffer.writerIndex();
         // 更新 writerIndex，为消息头预留 16 个字节的空间
         buffer.writerIndex(savedWriteIndex + HEADER_LENGTH);
-        ChannelBufferOutputStream bos = new ChannelBufferOutputStream(buffer);
+        // 消息体超过压缩阈值时改为边序列化边压缩
+        Compressor compressor = req.isEvent() ? null : getCompressor(channel, req);
+        CompressibleOutputStream bos = new CompressibleOutputStream(buffer, compressor,
+                compressor == null ? 0 : getCompressionThreshold(channel, req));
         // 创建序列化器，比如 Hessian2ObjectOutput
         ObjectOutput out = serialization.serialize(channel.getUrl(), bos);
         if (req.isEvent()) {
@@ -297,6 +446,8 @@ public class ExchangeCodec extends TelnetCodec {
         int len = bos.writtenBytes();
         checkPayload(channel, len);
 
+        if (bos.isCompressed()) header[3] |= FLAG_COMPRESSED;
+
         // 将消息体长度写入到消息头中
         Bytes.int2bytes(len, header, 12);
 
@@ -335,7 +486,10 @@ public class ExchangeCodec extends TelnetCodec {
 
             // 更新 writerIndex，为消息头预留 16 个字节的空间
             buffer.writerIndex(savedWriteIndex + HEADER_LENGTH);
-            ChannelBufferOutputStream bos = new ChannelBufferOutputStream(buffer);
+            // 只压缩正常的调用结果，心跳和错误信息都很小
+            Compressor compressor = status != Response.OK || res.isEvent() ? null : getCompressor(channel, res);
+            CompressibleOutputStream bos = new CompressibleOutputStream(buffer, compressor,
+                    compressor == null ? 0 : getCompressionThreshold(channel, res));
             ObjectOutput out = serialization.serialize(channel.getUrl(), bos);
             // encode response data or error message.
             if (status == Response.OK) {
@@ -358,6 +512,8 @@ public class ExchangeCodec extends TelnetCodec {
             int len = bos.writtenBytes();
             checkPayload(channel, len);
 
+            if (bos.isCompressed()) header[3] |= FLAG_COMPRESSED;
+
             // 将消息体长度写入到消息头中
             Bytes.int2bytes(len, header, 12);
             // write
@@ -505,4 +661,21 @@ public class ExchangeCodec extends TelnetCodec {
         encodeResponseData(out, data);
     }
 
+    /**
+     * 消息体的压缩器，返回 null 时不压缩。只能返回对端声明支持的压缩器，否则对端无法解码。
+     * @param message {@link Request} 或 {@link Response}
+     */
+    protected Compressor getCompressor(Channel channel, Object message) {
+        return null;
+    }
+
+    /**
+     * 序列化后的消息体超过此字节数时才压缩
+     * @param message {@link Request} 或 {@link Response}
+     */
+    protected int getCompressionThreshold(Channel channel, Object message) {
+        return channel.getUrl() == null ? Constants.DEFAULT_COMPRESSION_THRESHOLD
+                : channel.getUrl().getParameter(Constants.COMPRESSION_THRESHOLD_KEY, Constants.DEFAULT_COMPRESSION_THRESHOLD);
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,114 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.exchange.support;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.RemotingException;
+
+/**
+ * 连接级背压。
+ * <p>
+ * 连接上的在途请求数达到 inflight 上限，或底层写队列积压超过 pending.bytes 水位（传输层设置 channel.unwritable 属性）时，连接视为繁忙。
+ * backpressure=wait 时发送前等待连接空闲，直到超时；failfast 时立即失败；spillover 由调用方先换用其它空闲连接，都繁忙时按 wait 处理。
+ * 在途请求数在检查之后才登记，并发发送时可能略超过 inflight 上限。
+ */
+public final class ChannelBackpressure {
+
+    // 连接恢复可写时没有通知，等待线程按此间隔重新检查
+    private static final long RECHECK_INTERVAL = 10;
+
+    private ChannelBackpressure() {
+    }
+
+    public static boolean isEnabled(URL url) {
+        return url != null && ! Constants.DEFAULT_BACKPRESSURE.equals(url.getParameter(Constants.BACKPRESSURE_KEY, Constants.DEFAULT_BACKPRESSURE));
+    }
+
+    /**
+     * 连接上的在途请求数
+     */
+    public static int getInFlight(Channel channel) {
+        FutureTable table = FutureTable.get(channel);
+        return table == null ? 0 : table.size();
+    }
+
+    public static boolean isWritable(Channel channel) {
+        return ! channel.hasAttribute(Constants.CHANNEL_ATTRIBUTE_UNWRITABLE_KEY);
+    }
+
+    /**
+     * 未开启背压时总是返回 false
+     */
+    public static boolean isBusy(Channel channel) {
+        URL url = channel.getUrl();
+        if (! isEnabled(url)) {
+            return false;
+        }
+        return isBusy(channel, url.getParameter(Constants.INFLIGHT_KEY, 0));
+    }
+
+    private static boolean isBusy(Channel channel, int maxInFlight) {
+        // 连接断开时不拦截，交给发送时重连或报错
+        if (! channel.isConnected()) {
+            return false;
+        }
+        return ! isWritable(channel) || (maxInFlight > 0 && getInFlight(channel) >= maxInFlight);
+    }
+
+    /**
+     * 发送请求前调用，连接繁忙时按 backpressure 配置等待或失败。
+     */
+    public static void acquire(Channel channel, int timeout) throws RemotingException {
+        URL url = channel.getUrl();
+        if (! isEnabled(url)) {
+            return;
+        }
+        int maxInFlight = url.getParameter(Constants.INFLIGHT_KEY, 0);
+        if (! isBusy(channel, maxInFlight)) {
+            return;
+        }
+        if (Constants.FAILFAST_BACKPRESSURE.equals(url.getParameter(Constants.BACKPRESSURE_KEY))) {
+            throw new RemotingException(channel, getBusyMessage(channel, maxInFlight));
+        }
+        long deadline = System.currentTimeMillis() + timeout;
+        try {
+            while (isBusy(channel, maxInFlight)) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new RemotingException(channel, "Waiting timeout(" + timeout + "ms), " + getBusyMessage(channel, maxInFlight));
+                }
+                long wait = Math.min(remaining, RECHECK_INTERVAL);
+                FutureTable table = FutureTable.get(channel);
+                if (table == null) {
+                    Thread.sleep(wait);
+                } else {
+                    table.awaitRelease(wait);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemotingException(channel, "Interrupted while waiting, " + getBusyMessage(channel, maxInFlight), e);
+        }
+    }
+
+    private static String getBusyMessage(Channel channel, int maxInFlight) {
+        return "the connection to " + channel.getRemoteAddress() + " is busy, in-flight requests: " + getInFlight(channel)
+                + ", max in-flight: " + maxInFlight + ", writable: " + isWritable(channel);
+    }
+
+}
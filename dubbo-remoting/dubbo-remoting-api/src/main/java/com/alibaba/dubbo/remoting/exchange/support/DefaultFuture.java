@@ -17,9 +17,11 @@ package com.alibaba.dubbo.remoting.exchange.support;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -27,6 +29,7 @@ import java.util.concurrent.locks.ReentrantLock;
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.logger.Logger;
 import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
 import com.alibaba.dubbo.remoting.Channel;
 import com.alibaba.dubbo.remoting.RemotingException;
 import com.alibaba.dubbo.remoting.TimeoutException;
@@ -34,6 +37,10 @@ import com.alibaba.dubbo.remoting.exchange.Request;
 import com.alibaba.dubbo.remoting.exchange.Response;
 import com.alibaba.dubbo.remoting.exchange.ResponseCallback;
 import com.alibaba.dubbo.remoting.exchange.ResponseFuture;
+import com.alibaba.dubbo.remoting.timer.HashedWheelTimer;
+import com.alibaba.dubbo.remoting.timer.Timeout;
+import com.alibaba.dubbo.remoting.timer.Timer;
+import com.alibaba.dubbo.remoting.timer.TimerTask;
 
 /**
  * DefaultFuture.
@@ -45,12 +52,7 @@ public class DefaultFuture implements ResponseFuture {
 
     private static final Logger                   logger = LoggerFactory.getLogger(DefaultFuture.class);
 
-    //key:requestId val:Channel
-    private static final Map<Long, Channel>       CHANNELS   = new ConcurrentHashMap<Long, Channel>();
-
-    //key:requestId val:DefaultFuture
-    //requestId生成见Request#newId：增长到MAX_VALUE时，再增长会变为MIN_VALUE，负数也可以做为ID
-    private static final Map<Long, DefaultFuture> FUTURES   = new ConcurrentHashMap<Long, DefaultFuture>();
+    private static final AtomicBoolean            SCANNER_STARTED = new AtomicBoolean(false);
 
     // invoke id.
     private final long                            id;
@@ -61,6 +63,10 @@ public class DefaultFuture implements ResponseFuture {
 
     private final int                             timeout;
 
+    // 所在连接的在途请求表 key:requestId val:DefaultFuture
+    // requestId生成见Request#newId：增长到MAX_VALUE时，再增长会变为MIN_VALUE，负数也可以做为ID
+    private final FutureTable                     table;
+
     private final Lock                            lock = new ReentrantLock();
 
     private final Condition                       done = lock.newCondition();
@@ -73,6 +79,12 @@ public class DefaultFuture implements ResponseFuture {
 
     private volatile ResponseCallback             callback;
 
+    // 响应在 IO 线程中完成时由派发器设置，完成时已设置的回调交给该线程池执行，避免回调占用 IO 线程
+    private volatile Executor                     callbackExecutor;
+
+    // timeout.checker=wheel 时由时间轮负责超时检测，收到响应或取消时撤销，扫描线程会跳过此类 future
+    private volatile Timeout                      timeoutCheck;
+
     public DefaultFuture(Channel channel, Request request, int timeout){
         this.channel = channel;
         this.request = request;
@@ -81,9 +93,20 @@ public class DefaultFuture implements ResponseFuture {
         this.id = request.getId();
         this.timeout = timeout > 0 ? timeout : channel.getUrl().getPositiveParameter(Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT);
         // put into waiting map.
-        // 存储 <requestId, DefaultFuture> 映射关系到 FUTURES 中
-        FUTURES.put(id, this);
-        CHANNELS.put(id, channel);
+        // 存储 <requestId, DefaultFuture> 映射关系到所在连接的在途请求表中
+        FutureTable t = FutureTable.getOrCreate(channel);
+        if (! t.put(id, this)) {
+            // 连接已关闭，交给超时检测或发送失败处理
+            t = FutureTable.UNBOUND;
+            t.put(id, this);
+        }
+        this.table = t;
+        // 注册超时检测
+        if (Constants.WHEEL_TIMEOUT_CHECKER.equals(channel.getUrl().getParameter(Constants.TIMEOUT_CHECKER_KEY, Constants.DEFAULT_TIMEOUT_CHECKER))) {
+            timeoutCheck = TimeoutTimerHolder.TIMER.newTimeout(new TimeoutCheckTask(this), this.timeout, TimeUnit.MILLISECONDS);
+        } else {
+            startScanner();
+        }
     }
     
     public Object get() throws RemotingException {
@@ -126,11 +149,16 @@ public class DefaultFuture implements ResponseFuture {
     }
     
     public void cancel(){
+        // 已经收到响应或超时的不再处理
+        if (table.remove(id) != this) {
+            return;
+        }
+        cancelTimeoutCheck();
         Response errorResult = new Response(id);
+        errorResult.setStatus(Response.CLIENT_ERROR);
         errorResult.setErrorMessage("request future has been canceled.");
-        response = errorResult ;
-        FUTURES.remove(id);
-        CHANNELS.remove(id);
+        // 唤醒等待的线程并回调
+        doReceived(errorResult);
     }
 
     public boolean isDone() {
@@ -146,7 +174,8 @@ public class DefaultFuture implements ResponseFuture {
             lock.lock();
             try{
                 if (!isDone()) {
-                    this.callback = callback;
+                    // 已有回调时不覆盖，按设置顺序依次调用
+                    this.callback = this.callback == null ? callback : new ChainedCallback(this.callback, callback);
                 } else {
                     isdone = true;
                 }
@@ -222,6 +251,17 @@ public class DefaultFuture implements ResponseFuture {
         return sent > 0;
     }
 
+    public boolean hasCallback() {
+        return callback != null;
+    }
+
+    /**
+     * 设置完成时执行回调的线程池，为 null 时在完成响应的线程中执行回调。
+     */
+    public void setCallbackExecutor(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+    }
+
     public Request getRequest() {
         return request;
     }
@@ -234,45 +274,112 @@ public class DefaultFuture implements ResponseFuture {
         return start;
     }
 
+    /**
+     * @deprecated 需要遍历所有连接，请使用 {@link #getFuture(Channel, long)}
+     */
+    @Deprecated
     public static DefaultFuture getFuture(long id) {
-        return FUTURES.get(id);
+        for (FutureTable table : FutureTable.tables()) {
+            DefaultFuture future = table.get(id);
+            if (future != null) {
+                return future;
+            }
+        }
+        return null;
+    }
+
+    public static DefaultFuture getFuture(Channel channel, long id) {
+        FutureTable table = FutureTable.get(channel);
+        DefaultFuture future = table == null ? null : table.get(id);
+        if (future == null && ! FutureTable.UNBOUND.isEmpty()) {
+            future = FutureTable.UNBOUND.get(id);
+        }
+        return future;
     }
 
     public static boolean hasFuture(Channel channel) {
-        return CHANNELS.containsValue(channel);
+        FutureTable table = FutureTable.get(channel);
+        return table != null && ! table.isEmpty();
     }
 
     public static void sent(Channel channel, Request request) {
-        DefaultFuture future = FUTURES.get(request.getId());
+        DefaultFuture future = getFuture(channel, request.getId());
         if (future != null) {
             future.doSent();
         }
     }
 
+    /**
+     * 连接关闭时，让该连接上所有未完成的请求立即失败，只涉及该连接自己的在途请求。
+     */
+    public static void closeChannel(Channel channel) {
+        List<DefaultFuture> futures = FutureTable.remove(channel);
+        if (futures == null) {
+            return;
+        }
+        for (DefaultFuture future : futures) {
+            if (future.isDone()) {
+                continue;
+            }
+            Response disconnectResponse = new Response(future.getId());
+            disconnectResponse.setStatus(Response.CHANNEL_INACTIVE);
+            disconnectResponse.setErrorMessage("Channel " + channel + " is inactive. Directly return the unfinished request : " + future.getRequest());
+            future.cancelTimeoutCheck();
+            future.doReceived(disconnectResponse);
+        }
+    }
+
     private void doSent() {
         sent = System.currentTimeMillis();
     }
 
+    private void cancelTimeoutCheck() {
+        Timeout t = timeoutCheck;
+        if (t != null) {
+            t.cancel();
+        }
+    }
+
     public static void received(Channel channel, Response response) {
-        try {
-            // 根据调用编号从 FUTURES 集合中查找指定的 DefaultFuture 对象，responseId就是requestId
-            DefaultFuture future = FUTURES.remove(response.getId());
-            if (future != null) {
-                // 继续向下调用
-                future.doReceived(response);
-            } else {
-                logger.warn("The timeout response finally returned at " 
-                            + (new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date())) 
-                            + ", response " + response 
-                            + (channel == null ? "" : ", channel: " + channel.getLocalAddress() 
-                                + " -> " + channel.getRemoteAddress()));
-            }
-        } finally {
-            CHANNELS.remove(response.getId());
+        // 根据调用编号从所在连接的在途请求表中查找指定的 DefaultFuture 对象，responseId就是requestId
+        FutureTable table = FutureTable.get(channel);
+        DefaultFuture future = table == null ? null : table.remove(response.getId());
+        if (future == null && ! FutureTable.UNBOUND.isEmpty()) {
+            future = FutureTable.UNBOUND.remove(response.getId());
+        }
+        if (future != null) {
+            future.cancelTimeoutCheck();
+            // 继续向下调用
+            future.doReceived(response);
+        } else {
+            logTimeoutResponse(channel, response);
         }
     }
 
+    private static void logTimeoutResponse(Channel channel, Response response) {
+        logger.warn("The timeout response finally returned at " 
+                    + (new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date())) 
+                    + ", response " + response 
+                    + (channel == null ? "" : ", channel: " + channel.getLocalAddress() 
+                        + " -> " + channel.getRemoteAddress()));
+    }
+
+    // 超时时直接从 future 所在的表中移除，不依赖连接当前的属性（连接可能已重建）
+    private void timeout(boolean scan) {
+        if (table.remove(id) != this) {
+            return;
+        }
+        // create exception response.
+        Response timeoutResponse = new Response(id);
+        // set timeout status.
+        timeoutResponse.setStatus(isSent() ? Response.SERVER_TIMEOUT : Response.CLIENT_TIMEOUT);
+        timeoutResponse.setErrorMessage(getTimeoutMessage(scan));
+        // handle response.
+        doReceived(timeoutResponse);
+    }
+
     private void doReceived(Response res) {
+        ResponseCallback c;
         lock.lock();
         try {
             // 保存响应对象
@@ -281,14 +388,33 @@ public class DefaultFuture implements ResponseFuture {
                 // 唤醒用户线程
                 done.signal();
             }
+            // 与 setCallback 在同一把锁下决定回调归属：此后设置的回调由设置方线程直接执行
+            c = callback;
         } finally {
             lock.unlock();
         }
-        if (callback != null) {
-            invokeCallback(callback);
+        if (c != null) {
+            dispatchCallback(c);
         }
     }
 
+    private void dispatchCallback(final ResponseCallback c) {
+        Executor executor = callbackExecutor;
+        if (executor != null) {
+            try {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        invokeCallback(c);
+                    }
+                });
+                return;
+            } catch (RejectedExecutionException e) {
+                logger.warn("callback executor rejected, invoke callback in current thread, url:" + channel.getUrl(), e);
+            }
+        }
+        invokeCallback(c);
+    }
+
     private String getTimeoutMessage(boolean scan) {
         long nowTimestamp = System.currentTimeMillis();
         return (sent > 0 ? "Waiting server-side response timeout" : "Sending request timeout in client-side")
@@ -307,18 +433,17 @@ public class DefaultFuture implements ResponseFuture {
         public void run() {
             while (true) {
                 try {
-                    for (DefaultFuture future : FUTURES.values()) {
-                        if (future == null || future.isDone()) {
+                    for (FutureTable table : FutureTable.tables()) {
+                        if (table.isEmpty()) {
                             continue;
                         }
-                        if (System.currentTimeMillis() - future.getStartTimestamp() > future.getTimeout()) {
-                            // create exception response.
-                            Response timeoutResponse = new Response(future.getId());
-                            // set timeout status.
-                            timeoutResponse.setStatus(future.isSent() ? Response.SERVER_TIMEOUT : Response.CLIENT_TIMEOUT);
-                            timeoutResponse.setErrorMessage(future.getTimeoutMessage(true));
-                            // handle response.
-                            DefaultFuture.received(future.getChannel(), timeoutResponse);
+                        for (DefaultFuture future : table.futures()) {
+                            if (future.isDone() || future.timeoutCheck != null) {
+                                continue;
+                            }
+                            if (System.currentTimeMillis() - future.getStartTimestamp() > future.getTimeout()) {
+                                future.timeout(true);
+                            }
                         }
                     }
                     Thread.sleep(30);
@@ -329,10 +454,67 @@ public class DefaultFuture implements ResponseFuture {
         }
     }
 
-    static {
-        Thread th = new Thread(new RemotingInvocationTimeoutScan(), "DubboResponseTimeoutScanTimer");
-        th.setDaemon(true);
-        th.start();
+    private static class TimeoutCheckTask implements TimerTask {
+
+        private final DefaultFuture future;
+
+        TimeoutCheckTask(DefaultFuture future) {
+            this.future = future;
+        }
+
+        public void run(Timeout timeout) {
+            if (future.isDone()) {
+                return;
+            }
+            future.timeout(true);
+        }
+    }
+
+    // 首次使用时才创建时间轮线程
+    private static class TimeoutTimerHolder {
+
+        static final Timer TIMER = new HashedWheelTimer(new NamedThreadFactory("DubboResponseTimeoutWheelTimer", true), 10, TimeUnit.MILLISECONDS);
+    }
+
+    // 只有存在使用扫描方式检测超时的 future 时才启动扫描线程
+    private static void startScanner() {
+        if (! SCANNER_STARTED.get() && SCANNER_STARTED.compareAndSet(false, true)) {
+            Thread th = new Thread(new RemotingInvocationTimeoutScan(), "DubboResponseTimeoutScanTimer");
+            th.setDaemon(true);
+            th.start();
+        }
+    }
+
+
+    private static final class ChainedCallback implements ResponseCallback {
+
+        private final ResponseCallback first;
+
+        private final ResponseCallback second;
+
+        ChainedCallback(ResponseCallback first, ResponseCallback second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        public void done(Object response) {
+            try {
+                first.done(response);
+            } catch (RuntimeException e) {
+                logger.error("callback invoke error, response: " + response, e);
+            }
+            second.done(response);
+        }
+
+        public void caught(Throwable exception) {
+            try {
+                first.caught(exception);
+            } catch (RuntimeException e) {
+                logger.error("callback invoke error, cause: " + exception, e);
+            }
+            second.caught(exception);
+        }
+
     }
 
 }
\ No newline at end of file
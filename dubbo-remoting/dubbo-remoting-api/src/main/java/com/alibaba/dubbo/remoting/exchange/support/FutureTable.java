@@ -0,0 +1,337 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.exchange.support;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.alibaba.dubbo.common.utils.ConcurrentHashSet;
+import com.alibaba.dubbo.remoting.Channel;
+
+/**
+ * In-flight request table of a channel. (ThreadSafe)
+ * <p>
+ * 每个连接一张表，挂在底层 Channel 的属性上，请求和响应只访问自己连接的表。
+ * 表内按请求 id 分成若干段，每段是一个以 long 为 key 的开放寻址哈希表，段内加锁，段间互不影响。
+ */
+final class FutureTable {
+
+    private static final String                  TABLE_KEY = FutureTable.class.getName() + ".TABLE";
+
+    private static final Object                  LOCK      = new Object();
+
+    // 所有连接的表，只供扫描超时检测和按 id 全局查找使用
+    private static final ConcurrentHashSet<FutureTable> TABLES = new ConcurrentHashSet<FutureTable>();
+
+    // 底层连接尚未建立时（如发送时才重连）创建的 future 放到这里
+    static final FutureTable                     UNBOUND   = new FutureTable(false);
+
+    private static final int                     STRIPES   = 16;
+
+    private final Segment[]                      segments  = new Segment[STRIPES];
+
+    private final AtomicInteger                  size      = new AtomicInteger();
+
+    // 等待在途请求数下降的线程数，为 0 时移除请求不做通知
+    private final AtomicInteger                  waiters   = new AtomicInteger();
+
+    // 与 DefaultFuture 一样使用 Lock/Condition 等待，虚拟线程等待时不会占住载体线程
+    private final Lock                           lock      = new ReentrantLock();
+
+    private final Condition                      released  = lock.newCondition();
+
+    private final boolean                        closeable;
+
+    private volatile boolean                     closed;
+
+    private FutureTable(boolean closeable) {
+        this.closeable = closeable;
+        for (int i = 0; i < segments.length; i ++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    static FutureTable get(Channel channel) {
+        return channel == null ? null : (FutureTable) channel.getAttribute(TABLE_KEY);
+    }
+
+    static FutureTable getOrCreate(Channel channel) {
+        FutureTable table = get(channel);
+        if (table == null || table.closed) {
+            synchronized (LOCK) {
+                table = get(channel);
+                if (table == null || table.closed) {
+                    table = new FutureTable(true);
+                    channel.setAttribute(TABLE_KEY, table);
+                    if (get(channel) != table) {
+                        // 连接还没有建立，属性设置不上
+                        return UNBOUND;
+                    }
+                    TABLES.add(table);
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * 关闭连接时摘除并关闭表，返回表中剩余的 future。
+     */
+    static List<DefaultFuture> remove(Channel channel) {
+        FutureTable table = get(channel);
+        if (table == null) {
+            return null;
+        }
+        synchronized (LOCK) {
+            if (get(channel) == table) {
+                channel.removeAttribute(TABLE_KEY);
+            }
+            TABLES.remove(table);
+        }
+        return table.close();
+    }
+
+    static List<FutureTable> tables() {
+        List<FutureTable> tables = new ArrayList<FutureTable>(TABLES);
+        tables.add(UNBOUND);
+        return tables;
+    }
+
+    private Segment segmentFor(long id) {
+        return segments[(int) (id ^ (id >>> 32)) & (STRIPES - 1)];
+    }
+
+    /**
+     * @return false if the table is closed
+     */
+    boolean put(long id, DefaultFuture future) {
+        Segment segment = segmentFor(id);
+        synchronized (segment) {
+            if (closed) {
+                return false;
+            }
+            if (segment.put(id, future) == null) {
+                size.incrementAndGet();
+            }
+        }
+        return true;
+    }
+
+    DefaultFuture get(long id) {
+        Segment segment = segmentFor(id);
+        synchronized (segment) {
+            return segment.get(id);
+        }
+    }
+
+    DefaultFuture remove(long id) {
+        Segment segment = segmentFor(id);
+        DefaultFuture future;
+        synchronized (segment) {
+            future = segment.remove(id);
+        }
+        if (future != null) {
+            size.decrementAndGet();
+            signalWaiters();
+        }
+        return future;
+    }
+
+    /**
+     * 等待有请求移出或表被关闭，最多等待 millis 毫秒。
+     */
+    void awaitRelease(long millis) throws InterruptedException {
+        if (millis <= 0) {
+            return;
+        }
+        waiters.incrementAndGet();
+        try {
+            lock.lock();
+            try {
+                released.await(millis, TimeUnit.MILLISECONDS);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    private void signalWaiters() {
+        if (waiters.get() > 0) {
+            lock.lock();
+            try {
+                released.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    List<DefaultFuture> futures() {
+        List<DefaultFuture> futures = new ArrayList<DefaultFuture>(Math.max(size.get(), 0));
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.values(futures);
+            }
+        }
+        return futures;
+    }
+
+    private List<DefaultFuture> close() {
+        List<DefaultFuture> futures = new ArrayList<DefaultFuture>(Math.max(size.get(), 0));
+        if (! closeable) {
+            return futures;
+        }
+        closed = true;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.values(futures);
+                segment.clear();
+            }
+        }
+        size.set(0);
+        signalWaiters();
+        return futures;
+    }
+
+    /**
+     * long 为 key 的开放寻址哈希表，线性探测，删除时后移补位，不产生装箱对象。非线程安全，由调用方加锁。
+     */
+    private static final class Segment {
+
+        private static final int INITIAL_CAPACITY = 16;
+
+        private long[]           keys             = new long[INITIAL_CAPACITY];
+
+        private DefaultFuture[]  values           = new DefaultFuture[INITIAL_CAPACITY];
+
+        private int              count;
+
+        private static int hash(long key, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+
+        DefaultFuture get(long key) {
+            int mask = keys.length - 1;
+            for (int i = hash(key, mask); values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        DefaultFuture put(long key, DefaultFuture value) {
+            int mask = keys.length - 1;
+            int i = hash(key, mask);
+            for (; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    DefaultFuture old = values[i];
+                    values[i] = value;
+                    return old;
+                }
+            }
+            keys[i] = key;
+            values[i] = value;
+            if (++ count > (keys.length >> 1) + (keys.length >> 2)) {
+                rehash(keys.length << 1);
+            }
+            return null;
+        }
+
+        DefaultFuture remove(long key) {
+            int mask = keys.length - 1;
+            int i = hash(key, mask);
+            for (; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    DefaultFuture old = values[i];
+                    values[i] = null;
+                    count --;
+                    shiftBack(i, mask);
+                    return old;
+                }
+            }
+            return null;
+        }
+
+        // 删除后把同一探测链上的后续元素前移，保证查找不会提前遇到空槽
+        private void shiftBack(int hole, int mask) {
+            int i = (hole + 1) & mask;
+            while (values[i] != null) {
+                int ideal = hash(keys[i], mask);
+                if (((i - ideal) & mask) >= ((i - hole) & mask)) {
+                    keys[hole] = keys[i];
+                    values[hole] = values[i];
+                    values[i] = null;
+                    hole = i;
+                }
+                i = (i + 1) & mask;
+            }
+        }
+
+        private void rehash(int capacity) {
+            long[] oldKeys = keys;
+            DefaultFuture[] oldValues = values;
+            keys = new long[capacity];
+            values = new DefaultFuture[capacity];
+            int mask = capacity - 1;
+            for (int j = 0; j < oldValues.length; j ++) {
+                if (oldValues[j] != null) {
+                    int i = hash(oldKeys[j], mask);
+                    while (values[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+
+        void values(List<DefaultFuture> to) {
+            for (DefaultFuture value : values) {
+                if (value != null) {
+                    to.add(value);
+                }
+            }
+        }
+
+        void clear() {
+            keys = new long[INITIAL_CAPACITY];
+            values = new DefaultFuture[INITIAL_CAPACITY];
+            count = 0;
+        }
+    }
+
+}
@@ -29,6 +29,7 @@ import com.alibaba.dubbo.remoting.exchange.ExchangeHandler;
 import com.alibaba.dubbo.remoting.exchange.Request;
 import com.alibaba.dubbo.remoting.exchange.Response;
 import com.alibaba.dubbo.remoting.exchange.ResponseFuture;
+import com.alibaba.dubbo.remoting.exchange.support.ChannelBackpressure;
 import com.alibaba.dubbo.remoting.exchange.support.DefaultFuture;
 
 /**
@@ -88,6 +89,8 @@ final class HeaderExchangeChannel implements ExchangeChannel {
                 || message instanceof String) {
             channel.send(message, sent);
         } else {
+            // 单向请求同样受连接背压控制
+            ChannelBackpressure.acquire(channel, channel.getUrl().getPositiveParameter(Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT));
             Request request = new Request();
             request.setVersion("2.0.0");
             request.setTwoWay(false);
@@ -105,6 +108,8 @@ final class HeaderExchangeChannel implements ExchangeChannel {
         if (closed) {
             throw new RemotingException(this.getLocalAddress(), null, "Failed to send request " + request + ", cause: The channel " + this + " is closed!");
         }
+        // 连接繁忙时按 backpressure 配置等待或失败
+        ChannelBackpressure.acquire(channel, timeout);
         // create request.
         // 创建 Request 对象
         Request req = new Request();
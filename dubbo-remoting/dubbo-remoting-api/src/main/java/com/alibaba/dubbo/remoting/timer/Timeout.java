@@ -0,0 +1,58 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.timer;
+
+/**
+ * A handle associated with a {@link TimerTask} that is returned by a {@link Timer}.
+ */
+public interface Timeout {
+
+    /**
+     * get the timer that created this handle.
+     * 
+     * @return timer
+     */
+    Timer getTimer();
+
+    /**
+     * get the task which is associated with this handle.
+     * 
+     * @return task
+     */
+    TimerTask getTask();
+
+    /**
+     * check the associated task has been expired (executed).
+     * 
+     * @return expired
+     */
+    boolean isExpired();
+
+    /**
+     * check the associated task has been cancelled.
+     * 
+     * @return cancelled
+     */
+    boolean isCancelled();
+
+    /**
+     * cancel the associated task. no-op if the task has been executed or cancelled already.
+     * 
+     * @return true if the task is cancelled by this call.
+     */
+    boolean cancel();
+
+}
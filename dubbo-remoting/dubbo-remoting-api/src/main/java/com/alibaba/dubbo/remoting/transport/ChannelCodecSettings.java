@@ -0,0 +1,92 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.serialize.Serialization;
+import com.alibaba.dubbo.remoting.Channel;
+
+/**
+ * 通道级别的编解码参数：序列化器编号表、是否在 IO 线程上解码、payload 限制。
+ * 在通道第一次编解码时根据 URL 解析一次（URL 变化时重新解析），保存在通道属性中，避免每个消息都去查 URL 参数。
+ */
+public final class ChannelCodecSettings {
+
+    private static final String             SETTINGS_KEY  = ChannelCodecSettings.class.getName();
+
+    // 消息头中序列化器编号只占低 5 位
+    private static final int                SERIALIZATION_ID_COUNT = 0x20;
+
+    private static final ChannelCodecSettings DEFAULT     = new ChannelCodecSettings(null);
+
+    private final URL                       url;
+
+    private final Serialization[]           serializations = new Serialization[SERIALIZATION_ID_COUNT];
+
+    private final boolean                   decodeInIOThread;
+
+    private final int                       payload;
+
+    private ChannelCodecSettings(URL url) {
+        this.url = url;
+        for (int i = 0; i < serializations.length; i ++) {
+            serializations[i] = CodecSupport.getSerializationById((byte) i);
+        }
+        if (url == null) {
+            this.decodeInIOThread = Constants.DEFAULT_DECODE_IN_IO_THREAD;
+            this.payload = Constants.DEFAULT_PAYLOAD;
+        } else {
+            this.decodeInIOThread = url.getParameter(Constants.DECODE_IN_IO_THREAD_KEY, Constants.DEFAULT_DECODE_IN_IO_THREAD);
+            this.payload = url.getParameter(Constants.PAYLOAD_KEY, Constants.DEFAULT_PAYLOAD);
+        }
+    }
+
+    public static ChannelCodecSettings getSettings(Channel channel) {
+        if (channel == null || channel.getUrl() == null) {
+            return DEFAULT;
+        }
+        Object settings = channel.getAttribute(SETTINGS_KEY);
+        if (settings instanceof ChannelCodecSettings
+                && ((ChannelCodecSettings) settings).url == channel.getUrl()) {
+            return (ChannelCodecSettings) settings;
+        }
+        // 并发初始化时重复解析不影响正确性
+        ChannelCodecSettings created = new ChannelCodecSettings(channel.getUrl());
+        channel.setAttribute(SETTINGS_KEY, created);
+        return created;
+    }
+
+    /**
+     * 按消息头中的编号取序列化器，未知编号时与 {@link CodecSupport#getSerialization(URL, Byte)} 一样退回 URL 配置的序列化器。
+     */
+    public Serialization getSerialization(byte id) {
+        Serialization serialization = id >= 0 && id < SERIALIZATION_ID_COUNT ? serializations[id] : null;
+        if (serialization == null) {
+            serialization = CodecSupport.getSerialization(url, id);
+        }
+        return serialization;
+    }
+
+    public boolean isDecodeInIOThread() {
+        return decodeInIOThread;
+    }
+
+    public int getPayload() {
+        return payload;
+    }
+
+}
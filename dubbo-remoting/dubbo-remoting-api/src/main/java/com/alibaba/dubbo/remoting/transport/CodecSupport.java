@@ -22,6 +22,7 @@ import java.util.Set;
 
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.compress.Compressor;
 import com.alibaba.dubbo.common.extension.ExtensionLoader;
 import com.alibaba.dubbo.common.logger.Logger;
 import com.alibaba.dubbo.common.logger.LoggerFactory;
@@ -55,10 +56,44 @@ public class CodecSupport {
         }
     }
 
+    private static Map<Byte, Compressor> ID_COMPRESSOR_MAP = new HashMap<Byte, Compressor>();
+
+    static {
+        // 依赖的第三方包不在 classpath 中的压缩器不会出现在 supportedExtensions 中
+        Set<String> supportedExtensions = ExtensionLoader.getExtensionLoader(Compressor.class).getSupportedExtensions();
+        for (String name : supportedExtensions) {
+            Compressor compressor = ExtensionLoader.getExtensionLoader(Compressor.class).getExtension(name);
+            byte idByte = compressor.getContentTypeId();
+            if (ID_COMPRESSOR_MAP.containsKey(idByte)) {
+                logger.error("Compressor extension " + compressor.getClass().getName()
+                                 + " has duplicate id to Compressor extension "
+                                 + ID_COMPRESSOR_MAP.get(idByte).getClass().getName()
+                                 + ", ignore this Compressor extension");
+                continue;
+            }
+            ID_COMPRESSOR_MAP.put(idByte, compressor);
+        }
+    }
+
     public static Serialization getSerializationById(Byte id) {
         return ID_SERIALIZATION_MAP.get(id);
     }
 
+    public static Compressor getCompressorById(Byte id) {
+        return ID_COMPRESSOR_MAP.get(id);
+    }
+
+    /**
+     * @return 压缩器不存在或不可用时返回 null
+     */
+    public static Compressor getCompressor(String name) {
+        if (name == null || name.length() == 0
+                || ! ExtensionLoader.getExtensionLoader(Compressor.class).hasExtension(name)) {
+            return null;
+        }
+        return ExtensionLoader.getExtensionLoader(Compressor.class).getExtension(name);
+    }
+
     public static Serialization getSerialization(URL url) {
         return ExtensionLoader.getExtensionLoader(Serialization.class).getExtension(
             url.getParameter(Constants.SERIALIZATION_KEY, Constants.DEFAULT_REMOTING_SERIALIZATION));
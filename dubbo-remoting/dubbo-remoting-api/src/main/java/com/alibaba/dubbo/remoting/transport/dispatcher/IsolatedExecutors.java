@@ -0,0 +1,170 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.dispatcher;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.common.store.DataStore;
+import com.alibaba.dubbo.common.threadpool.ThreadPool;
+
+/**
+ * 服务和方法的隔离线程池。
+ * <p>
+ * 服务配置 isolation=true，或方法配置 &lt;method&gt;.isolation=true 时，该服务或方法的请求派发到独立的固定大小线程池，
+ * 不再与同一端口上的其它服务共用线程池，慢服务耗尽自己的线程池时不会影响其它服务。
+ * 线程数和队列长度由 isolation.threads 和 isolation.queues 配置，同样可以按方法配置。
+ * 线程池登记在 {@link DataStore} 中，可以通过 threadpool 状态检查查看队列长度和拒绝次数。
+ */
+public final class IsolatedExecutors {
+
+    // 端口 -> 服务键 -> 隔离线程池
+    private static final ConcurrentMap<Integer, ConcurrentMap<String, Isolation>> PORTS = new ConcurrentHashMap<Integer, ConcurrentMap<String, Isolation>>();
+
+    private IsolatedExecutors() {
+    }
+
+    public static String serviceKey(String path, String group, String version) {
+        StringBuilder buf = new StringBuilder();
+        if (group != null && group.length() > 0) {
+            buf.append(group).append("/");
+        }
+        buf.append(path);
+        if (version != null && version.length() > 0 && ! "0.0.0".equals(version)) {
+            buf.append(":").append(version);
+        }
+        return buf.toString();
+    }
+
+    public static String serviceKey(URL url) {
+        return serviceKey(url.getPath(), url.getParameter(Constants.GROUP_KEY), url.getParameter(Constants.VERSION_KEY));
+    }
+
+    /**
+     * 按服务 URL 上的 isolation 配置创建隔离线程池，没有配置时不做任何事。
+     */
+    public static void register(URL url) {
+        Isolation isolation = null;
+        if (url.getParameter(Constants.ISOLATION_KEY, false)) {
+            isolation = new Isolation(createExecutor(url, null));
+        }
+        String suffix = "." + Constants.ISOLATION_KEY;
+        for (Map.Entry<String, String> entry : url.getParameters().entrySet()) {
+            String key = entry.getKey();
+            if (key.endsWith(suffix) && ! key.startsWith(Constants.DEFAULT_KEY_PREFIX)
+                    && Boolean.parseBoolean(entry.getValue())) {
+                String method = key.substring(0, key.length() - suffix.length());
+                if (isolation == null) {
+                    isolation = new Isolation(null);
+                }
+                isolation.methods.put(method, createExecutor(url, method));
+            }
+        }
+        if (isolation == null) {
+            return;
+        }
+        ConcurrentMap<String, Isolation> services = PORTS.get(url.getPort());
+        if (services == null) {
+            PORTS.putIfAbsent(url.getPort(), new ConcurrentHashMap<String, Isolation>());
+            services = PORTS.get(url.getPort());
+        }
+        Isolation old = services.put(serviceKey(url), isolation);
+        if (old != null) {
+            old.shutdown(url.getPort(), serviceKey(url));
+        }
+    }
+
+    public static void unregister(URL url) {
+        ConcurrentMap<String, Isolation> services = PORTS.get(url.getPort());
+        if (services == null) {
+            return;
+        }
+        String serviceKey = serviceKey(url);
+        Isolation isolation = services.remove(serviceKey);
+        if (isolation != null) {
+            isolation.shutdown(url.getPort(), serviceKey);
+        }
+    }
+
+    /**
+     * @return 请求所属服务或方法的隔离线程池，没有配置隔离时返回 null
+     */
+    public static ExecutorService getExecutor(int port, Object data) {
+        if (PORTS.isEmpty() || ! (data instanceof ServiceMessage)) {
+            return null;
+        }
+        ConcurrentMap<String, Isolation> services = PORTS.get(port);
+        if (services == null || services.isEmpty()) {
+            return null;
+        }
+        ServiceMessage message = (ServiceMessage) data;
+        String serviceKey = message.getServiceKey();
+        Isolation isolation = serviceKey == null ? null : services.get(serviceKey);
+        if (isolation == null) {
+            return null;
+        }
+        String method = message.getMethodName();
+        ExecutorService executor = method == null ? null : isolation.methods.get(method);
+        return executor != null ? executor : isolation.executor;
+    }
+
+    private static ExecutorService createExecutor(URL url, String method) {
+        String name = serviceKey(url) + (method == null ? "" : "#" + method);
+        int threads = method == null ? url.getParameter(Constants.ISOLATION_THREADS_KEY, Constants.DEFAULT_ISOLATION_THREADS)
+            : url.getMethodParameter(method, Constants.ISOLATION_THREADS_KEY, Constants.DEFAULT_ISOLATION_THREADS);
+        int queues = method == null ? url.getParameter(Constants.ISOLATION_QUEUES_KEY, Constants.DEFAULT_QUEUES)
+            : url.getMethodParameter(method, Constants.ISOLATION_QUEUES_KEY, Constants.DEFAULT_QUEUES);
+        URL executorUrl = url.addParameter(Constants.THREAD_NAME_KEY, "DubboIsolatedHandler-" + name)
+            .addParameter(Constants.THREADS_KEY, threads)
+            .addParameter(Constants.QUEUES_KEY, queues);
+        ExecutorService executor = (ExecutorService) ExtensionLoader.getExtensionLoader(ThreadPool.class).getExtension("fixed").getExecutor(executorUrl);
+        getDataStore().put(Constants.EXECUTOR_SERVICE_COMPONENT_KEY, url.getPort() + "/" + name, executor);
+        return executor;
+    }
+
+    private static DataStore getDataStore() {
+        return ExtensionLoader.getExtensionLoader(DataStore.class).getDefaultExtension();
+    }
+
+    private static final class Isolation {
+
+        final ExecutorService                        executor;
+
+        final ConcurrentMap<String, ExecutorService> methods = new ConcurrentHashMap<String, ExecutorService>();
+
+        Isolation(ExecutorService executor) {
+            this.executor = executor;
+        }
+
+        void shutdown(int port, String serviceKey) {
+            DataStore dataStore = getDataStore();
+            if (executor != null) {
+                dataStore.remove(Constants.EXECUTOR_SERVICE_COMPONENT_KEY, port + "/" + serviceKey);
+                executor.shutdown();
+            }
+            for (Map.Entry<String, ExecutorService> entry : methods.entrySet()) {
+                dataStore.remove(Constants.EXECUTOR_SERVICE_COMPONENT_KEY, port + "/" + serviceKey + "#" + entry.getKey());
+                entry.getValue().shutdown();
+            }
+        }
+    }
+
+}
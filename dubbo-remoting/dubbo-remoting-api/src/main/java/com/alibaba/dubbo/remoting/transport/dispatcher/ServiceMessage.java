@@ -0,0 +1,32 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.dispatcher;
+
+/**
+ * 请求数据实现该接口后，派发请求时可以按服务和方法选择隔离的线程池。
+ * 
+ * @see IsolatedExecutors
+ */
+public interface ServiceMessage {
+
+    /**
+     * @return 服务键，格式同 {@link IsolatedExecutors#serviceKey(String, String, String)}，还未解码时返回 null
+     */
+    String getServiceKey();
+
+    String getMethodName();
+
+}
@@ -28,7 +28,12 @@ import com.alibaba.dubbo.common.threadpool.ThreadPool;
 import com.alibaba.dubbo.common.utils.NamedThreadFactory;
 import com.alibaba.dubbo.remoting.Channel;
 import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.Decodeable;
 import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.exchange.Response;
+import com.alibaba.dubbo.remoting.exchange.support.DefaultFuture;
+import com.alibaba.dubbo.remoting.transport.ChannelCodecSettings;
 import com.alibaba.dubbo.remoting.transport.ChannelHandlerDelegate;
 
 public class WrappedChannelHandler implements ChannelHandlerDelegate {
@@ -42,10 +47,13 @@ public class WrappedChannelHandler implements ChannelHandlerDelegate {
     protected final ChannelHandler handler;
 
     protected final URL url;
+
+    private final boolean responseInIOThread;
     
     public WrappedChannelHandler(ChannelHandler handler, URL url) {
         this.handler = handler;
         this.url = url;
+        this.responseInIOThread = url.getParameter(Constants.RESPONSE_IN_IO_THREAD_KEY, Constants.DEFAULT_RESPONSE_IN_IO_THREAD);
         executor = (ExecutorService) ExtensionLoader.getExtensionLoader(ThreadPool.class).getAdaptiveExtension().getExecutor(url);
 
         String componentKey = Constants.EXECUTOR_SERVICE_COMPONENT_KEY;
@@ -86,6 +94,53 @@ public class WrappedChannelHandler implements ChannelHandlerDelegate {
         handler.caught(channel, exception);
     }
     
+    /**
+     * 已经解码完成的响应直接在 IO 线程中唤醒等待的调用方，省去派发到线程池再唤醒调用方的线程切换。
+     * 还需要在线程池中反序列化结果(decode.in.io=false)的响应仍然派发到线程池。
+     * 回调(可能有耗时的业务逻辑)是否已设置由 {@link DefaultFuture} 在完成时加锁判定，完成时已设置的回调交给线程池执行。
+     */
+    protected boolean isResponseInIOThread(Channel channel, Object message) {
+        if (! responseInIOThread || ! (message instanceof Response)) {
+            return false;
+        }
+        Response response = (Response) message;
+        if (response.getResult() instanceof Decodeable
+                && ! ChannelCodecSettings.getSettings(channel).isDecodeInIOThread()) {
+            return false;
+        }
+        DefaultFuture future = DefaultFuture.getFuture(channel, response.getId());
+        if (future != null) {
+            future.setCallbackExecutor(getExecutorService(message));
+        }
+        return true;
+    }
+
+    /**
+     * 请求所属的服务或方法配置了隔离线程池时使用隔离线程池，否则使用当前端口共用的线程池，共用线程池已关闭时使用共享线程池。
+     */
+    protected ExecutorService getExecutorService(Object message) {
+        ExecutorService isolated = getIsolatedExecutor(message);
+        if (isolated != null) {
+            return isolated;
+        }
+        ExecutorService cexecutor = executor;
+        if (cexecutor == null || cexecutor.isShutdown()) {
+            cexecutor = SHARED_EXECUTOR;
+        }
+        return cexecutor;
+    }
+
+    /**
+     * @return 请求所属的服务或方法的隔离线程池，没有配置隔离时返回 null
+     * @see IsolatedExecutors
+     */
+    protected ExecutorService getIsolatedExecutor(Object message) {
+        if (message instanceof Request) {
+            return IsolatedExecutors.getExecutor(url.getPort(), ((Request) message).getData());
+        }
+        return null;
+    }
+
     public ExecutorService getExecutor() {
         return executor;
     }
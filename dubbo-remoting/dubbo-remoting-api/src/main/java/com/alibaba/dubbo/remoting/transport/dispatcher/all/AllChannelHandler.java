@@ -56,7 +56,11 @@ public class AllChannelHandler extends WrappedChannelHandler {
 
     /** 处理请求和响应消息，这里的 message 变量类型可能是 Request，也可能是 Response */
     public void received(Channel channel, Object message) throws RemotingException {
-        ExecutorService cexecutor = getExecutorService();
+        if (isResponseInIOThread(channel, message)) {
+            handler.received(channel, message);
+            return;
+        }
+        ExecutorService cexecutor = getExecutorService(message);
         try {
             //由线程池执行后续的调用逻辑，ExecutorService#execute(Runnable)
             //将请求和响应消息派发到线程池中处理
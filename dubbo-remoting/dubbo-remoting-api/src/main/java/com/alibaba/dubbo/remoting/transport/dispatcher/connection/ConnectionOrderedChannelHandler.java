@@ -68,10 +68,11 @@ public class ConnectionOrderedChannelHandler extends WrappedChannelHandler {
     }
 
     public void received(Channel channel, Object message) throws RemotingException {
-        ExecutorService cexecutor = executor;
-        if (cexecutor == null || cexecutor.isShutdown()) {
-            cexecutor = SHARED_EXECUTOR;
+        if (isResponseInIOThread(channel, message)) {
+            handler.received(channel, message);
+            return;
         }
+        ExecutorService cexecutor = getExecutorService(message);
         try {
             cexecutor.execute(new ChannelEventRunnable(channel, handler, ChannelState.RECEIVED, message));
         } catch (Throwable t) {
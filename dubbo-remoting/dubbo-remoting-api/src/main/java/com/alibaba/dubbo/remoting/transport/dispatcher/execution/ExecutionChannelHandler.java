@@ -15,6 +15,8 @@
  */
 package com.alibaba.dubbo.remoting.transport.dispatcher.execution;
 
+import java.util.concurrent.ExecutorService;
+
 import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.remoting.Channel;
 import com.alibaba.dubbo.remoting.ChannelHandler;
@@ -38,7 +40,12 @@ public class ExecutionChannelHandler extends WrappedChannelHandler {
     }
 
     public void received(Channel channel, Object message) throws RemotingException {
-        executor.execute(new ChannelEventRunnable(channel, handler, ChannelState.RECEIVED, message));
+        if (isResponseInIOThread(channel, message)) {
+            handler.received(channel, message);
+            return;
+        }
+        ExecutorService isolated = getIsolatedExecutor(message);
+        (isolated != null ? isolated : executor).execute(new ChannelEventRunnable(channel, handler, ChannelState.RECEIVED, message));
     }
 
     public void caught(Channel channel, Throwable exception) throws RemotingException {
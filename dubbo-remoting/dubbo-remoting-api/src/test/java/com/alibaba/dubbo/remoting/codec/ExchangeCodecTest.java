@@ -18,6 +18,7 @@ package com.alibaba.dubbo.remoting.codec;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Date;
 import java.util.HashMap;
 
@@ -25,6 +26,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.compress.Compressor;
 import com.alibaba.dubbo.common.extension.ExtensionLoader;
 import com.alibaba.dubbo.common.io.Bytes;
 import com.alibaba.dubbo.common.io.UnsafeByteArrayOutputStream;
@@ -194,6 +196,25 @@ public class ExchangeCodecTest extends TelnetCodecTest{
         System.out.println(obj);
     }
     
+    @Test
+    public void test_Decode_Header_From_Buffer_Offset() throws IOException{
+        //10000010-request/oneway/hessian |id 跨越高低 32 位
+        byte[] header = new byte[] { MAGIC_HIGH, MAGIC_LOW, (byte) 0x82, 0, 0, 0, 0, 1, (byte) 0x80, 0, 0, 2, 0, 0, 0, 0 };
+        Person person = new Person();
+        byte[] request = getRequestBytes(person, header);
+        
+        //两个消息连续存放，且读指针不在缓冲区起始位置
+        ChannelBuffer buffer = ChannelBuffers.wrappedBuffer(join(join(new byte[] {9, 9, 9}, request), request));
+        buffer.readerIndex(3);
+        Channel channel = getServerSideChannel(url);
+        for (int i = 1; i <= 2; i ++) {
+            Request obj = (Request)codec.decode(channel, buffer);
+            Assert.assertEquals(0x0000000180000002L, obj.getId());
+            Assert.assertEquals(person, obj.getData());
+            Assert.assertEquals(3 + request.length * i, buffer.readerIndex());
+        }
+    }
+    
     @Test //status输入有问题，序列化时读取信息出错.
     public void test_Decode_Return_Response_Error() throws IOException{
         byte[] header = new byte[] { MAGIC_HIGH, MAGIC_LOW, 2, 90, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 };
@@ -439,4 +460,67 @@ public class ExchangeCodecTest extends TelnetCodecTest{
         Assert.assertEquals(Response.BAD_RESPONSE, receiveMessage.getStatus());
         Assert.assertTrue(receiveMessage.getErrorMessage().contains("Data length too large: "));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testLegacyDecodeBodyOverride() throws Exception {
+        final byte[][] legacyHeader = new byte[1][];
+        codec = new ExchangeCodec() {
+            @Override
+            @SuppressWarnings("deprecation")
+            protected Object decodeBody(Channel channel, InputStream is, byte[] header) throws IOException {
+                legacyHeader[0] = header;
+                return super.decodeBody(channel, is, header);
+            }
+        };
+        Channel channel = getServerSideChannel(url);
+        Request request = new Request(3L);
+        request.setData("legacy");
+        ChannelBuffer encodeBuffer = ChannelBuffers.dynamicBuffer(1024);
+        codec.encode(channel, encodeBuffer, request);
+        int length = encodeBuffer.readableBytes();
+
+        Request decoded = (Request) codec.decode(channel, encodeBuffer);
+        Assert.assertEquals("legacy", decoded.getData());
+        Assert.assertNotNull(legacyHeader[0]);
+        Assert.assertEquals(3L, Bytes.bytes2long(legacyHeader[0], 4));
+        Assert.assertEquals(length - 16, Bytes.bytes2int(legacyHeader[0], 12));
+    }
+
+    @Test
+    public void testCompressBodyAboveThreshold() throws Exception {
+        codec = new ExchangeCodec() {
+            @Override
+            protected Compressor getCompressor(Channel channel, Object message) {
+                return ExtensionLoader.getExtensionLoader(Compressor.class).getExtension("deflate");
+            }
+        };
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 10000; i ++) {
+            builder.append("compress me ");
+        }
+        String value = builder.toString();
+        Channel channel = getServerSideChannel(url.addParameter(Constants.COMPRESSION_THRESHOLD_KEY, 1024));
+
+        Response response = new Response(1L);
+        response.setResult(value);
+        ChannelBuffer encodeBuffer = ChannelBuffers.dynamicBuffer(1024);
+        codec.encode(channel, encodeBuffer, response);
+        byte[] bytes = new byte[encodeBuffer.writerIndex()];
+        encodeBuffer.readBytes(bytes);
+        Assert.assertEquals((byte) (Response.OK | 0x80), bytes[3]);
+        Assert.assertTrue(Bytes.bytes2int(bytes, 12) < value.length() / 10);
+
+        Response decoded = (Response) codec.decode(channel, ChannelBuffers.wrappedBuffer(bytes));
+        Assert.assertEquals(Response.OK, decoded.getStatus());
+        Assert.assertEquals(value, decoded.getResult());
+
+        Request request = new Request(2L);
+        request.setData("small");
+        encodeBuffer = ChannelBuffers.dynamicBuffer(1024);
+        codec.encode(channel, encodeBuffer, request);
+        bytes = new byte[encodeBuffer.writerIndex()];
+        encodeBuffer.readBytes(bytes);
+        Assert.assertEquals(0, bytes[3]);
+        Assert.assertEquals("small", ((Request) codec.decode(channel, ChannelBuffers.wrappedBuffer(bytes))).getData());
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.exchange.support;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.exchange.Response;
+import com.alibaba.dubbo.remoting.exchange.support.header.MockChannel;
+
+public class ChannelBackpressureTest {
+
+    private static MockChannel newChannel(String backpressure) {
+        final URL url = URL.valueOf("dubbo://localhost:20880?" + Constants.INFLIGHT_KEY + "=1")
+                .addParameter(Constants.BACKPRESSURE_KEY, backpressure)
+                .addParameter(Constants.TIMEOUT_CHECKER_KEY, Constants.WHEEL_TIMEOUT_CHECKER);
+        return new MockChannel() {
+            @Override
+            public URL getUrl() {
+                return url;
+            }
+
+            @Override
+            public boolean isConnected() {
+                return true;
+            }
+        };
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        MockChannel channel = newChannel(Constants.DEFAULT_BACKPRESSURE);
+        DefaultFuture future = new DefaultFuture(channel, new Request(), 10000);
+        Assert.assertEquals(1, ChannelBackpressure.getInFlight(channel));
+        Assert.assertFalse(ChannelBackpressure.isBusy(channel));
+        ChannelBackpressure.acquire(channel, 10);
+        future.cancel();
+    }
+
+    @Test
+    public void testFailfast() throws Exception {
+        MockChannel channel = newChannel(Constants.FAILFAST_BACKPRESSURE);
+        ChannelBackpressure.acquire(channel, 10);
+        DefaultFuture future = new DefaultFuture(channel, new Request(), 10000);
+        Assert.assertTrue(ChannelBackpressure.isBusy(channel));
+        try {
+            ChannelBackpressure.acquire(channel, 10000);
+            Assert.fail();
+        } catch (RemotingException expected) {
+            Assert.assertTrue(expected.getMessage().contains("busy"));
+        }
+        future.cancel();
+        Assert.assertFalse(ChannelBackpressure.isBusy(channel));
+    }
+
+    @Test
+    public void testWaitUntilReleased() throws Exception {
+        final MockChannel channel = newChannel(Constants.WAIT_BACKPRESSURE);
+        final Request request = new Request();
+        new DefaultFuture(channel, request, 10000);
+        new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                }
+                DefaultFuture.received(channel, new Response(request.getId()));
+            }
+        }).start();
+        long start = System.currentTimeMillis();
+        ChannelBackpressure.acquire(channel, 5000);
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+        Assert.assertEquals(0, ChannelBackpressure.getInFlight(channel));
+    }
+
+    @Test
+    public void testWaitTimeoutWhenUnwritable() throws Exception {
+        MockChannel channel = newChannel(Constants.WAIT_BACKPRESSURE);
+        channel.setAttribute(Constants.CHANNEL_ATTRIBUTE_UNWRITABLE_KEY, Boolean.TRUE);
+        Assert.assertFalse(ChannelBackpressure.isWritable(channel));
+        Assert.assertTrue(ChannelBackpressure.isBusy(channel));
+        try {
+            ChannelBackpressure.acquire(channel, 50);
+            Assert.fail();
+        } catch (RemotingException expected) {
+            Assert.assertTrue(expected.getMessage().contains("timeout"));
+        }
+        channel.removeAttribute(Constants.CHANNEL_ATTRIBUTE_UNWRITABLE_KEY);
+        ChannelBackpressure.acquire(channel, 50);
+    }
+
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.exchange.support;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.PerformanceUtils;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.TimeoutException;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.exchange.Response;
+import com.alibaba.dubbo.remoting.exchange.ResponseCallback;
+import com.alibaba.dubbo.remoting.exchange.support.header.MockChannel;
+
+public class DefaultFutureTest {
+
+    private static MockChannel newChannel(final String checker) {
+        final URL url = URL.valueOf("dubbo://localhost:20880").addParameter(Constants.TIMEOUT_CHECKER_KEY, checker);
+        return new MockChannel() {
+            @Override
+            public URL getUrl() {
+                return url;
+            }
+        };
+    }
+
+    @Test
+    public void testWheelTimeout() throws Exception {
+        MockChannel channel = newChannel(Constants.WHEEL_TIMEOUT_CHECKER);
+        Request request = new Request();
+        DefaultFuture future = new DefaultFuture(channel, request, 100);
+        long start = System.currentTimeMillis();
+        try {
+            future.get(5000);
+            Assert.fail();
+        } catch (TimeoutException expected) {
+            Assert.assertTrue(expected.getMessage().contains("timeout"));
+        }
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+        Assert.assertNull(DefaultFuture.getFuture(channel, request.getId()));
+    }
+
+    @Test
+    public void testCloseChannel() throws Exception {
+        MockChannel channel = newChannel(Constants.DEFAULT_TIMEOUT_CHECKER);
+        MockChannel other = newChannel(Constants.DEFAULT_TIMEOUT_CHECKER);
+        Request request = new Request();
+        DefaultFuture future = new DefaultFuture(channel, request, 10000);
+        Request otherRequest = new Request();
+        DefaultFuture otherFuture = new DefaultFuture(other, otherRequest, 10000);
+        Assert.assertTrue(DefaultFuture.hasFuture(channel));
+        // 响应只在自己的连接上查找
+        Assert.assertNull(DefaultFuture.getFuture(other, request.getId()));
+
+        DefaultFuture.closeChannel(channel);
+        Assert.assertTrue(future.isDone());
+        Assert.assertFalse(DefaultFuture.hasFuture(channel));
+        try {
+            future.get();
+            Assert.fail();
+        } catch (RemotingException expected) {
+            Assert.assertTrue(expected.getMessage().contains("inactive"));
+        }
+        Assert.assertFalse(otherFuture.isDone());
+        Assert.assertTrue(DefaultFuture.hasFuture(other));
+        otherFuture.cancel();
+        Assert.assertFalse(DefaultFuture.hasFuture(other));
+    }
+
+    @Test
+    public void testWheelReceived() throws Exception {
+        MockChannel channel = newChannel(Constants.WHEEL_TIMEOUT_CHECKER);
+        Request request = new Request();
+        DefaultFuture future = new DefaultFuture(channel, request, 100);
+        Response response = new Response(request.getId());
+        response.setResult("ok");
+        DefaultFuture.received(channel, response);
+        Assert.assertEquals("ok", future.get());
+        // 超时检测已撤销，不会再覆盖结果
+        Thread.sleep(200);
+        Assert.assertEquals("ok", future.get());
+    }
+
+    @Test
+    public void testCancelWithCallbacks() throws Exception {
+        MockChannel channel = newChannel(Constants.WHEEL_TIMEOUT_CHECKER);
+        Request request = new Request();
+        DefaultFuture future = new DefaultFuture(channel, request, 10000);
+        final List<Object> events = new ArrayList<Object>();
+        // 多次设置回调时依次调用，不互相覆盖
+        future.setCallback(new RecordCallback("first", events));
+        future.setCallback(new RecordCallback("second", events));
+        future.cancel();
+        Assert.assertTrue(future.isDone());
+        Assert.assertNull(DefaultFuture.getFuture(channel, request.getId()));
+        Assert.assertEquals(2, events.size());
+        Assert.assertTrue(events.get(0).toString().startsWith("first caught"));
+        Assert.assertTrue(events.get(1).toString().startsWith("second caught"));
+        try {
+            future.get();
+            Assert.fail();
+        } catch (RemotingException expected) {
+            Assert.assertTrue(expected.getMessage().contains("canceled"));
+        }
+        // 已完成的请求再次取消或收到响应都不会重复回调
+        future.cancel();
+        Response response = new Response(request.getId());
+        response.setResult("ok");
+        DefaultFuture.received(channel, response);
+        Assert.assertEquals(2, events.size());
+    }
+
+    private static class RecordCallback implements ResponseCallback {
+
+        private final String name;
+
+        private final List<Object> events;
+
+        RecordCallback(String name, List<Object> events) {
+            this.name = name;
+            this.events = events;
+        }
+
+        public void done(Object response) {
+            events.add(name + " done " + response);
+        }
+
+        public void caught(Throwable exception) {
+            events.add(name + " caught " + exception.getMessage());
+        }
+    }
+
+    /**
+     * 对比扫描线程和时间轮在大量未完成请求下的开销，-Dfutures=200000 开启
+     */
+    @Test
+    public void testTimeoutCheckerPerformance() throws Exception {
+        int count = PerformanceUtils.getIntProperty("futures", 0);
+        if (count <= 0) {
+            return;
+        }
+        // 先测时间轮，避免扫描线程已启动影响结果
+        String[] checkers = new String[] {Constants.WHEEL_TIMEOUT_CHECKER, Constants.DEFAULT_TIMEOUT_CHECKER};
+        for (String checker : checkers) {
+            MockChannel channel = newChannel(checker);
+            List<Request> requests = new ArrayList<Request>(count);
+            long cpuStart = getProcessCpuTime();
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i ++) {
+                Request request = new Request();
+                requests.add(request);
+                new DefaultFuture(channel, request, 60 * 1000);
+            }
+            long created = System.nanoTime();
+            // 保持所有请求在途一段时间，统计期间超时检测消耗的 CPU
+            Thread.sleep(5000);
+            long idleCpu = getProcessCpuTime() - cpuStart;
+            long receiveStart = System.nanoTime();
+            for (Request request : requests) {
+                Response response = new Response(request.getId());
+                DefaultFuture.received(channel, response);
+            }
+            long end = System.nanoTime();
+            System.out.println(checker + ": futures " + count
+                    + ", create " + (created - start) / 1000000 + " ms"
+                    + ", receive " + (end - receiveStart) / 1000000 + " ms"
+                    + ", process cpu while in-flight " + idleCpu / 1000000 + " ms");
+        }
+    }
+
+    private static long getProcessCpuTime() {
+        java.lang.management.OperatingSystemMXBean os = java.lang.management.ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return 0;
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.exchange.support;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.exchange.support.header.MockChannel;
+
+public class FutureTableTest {
+
+    private final MockChannel channel = new MockChannel() {
+        @Override
+        public URL getUrl() {
+            return URL.valueOf("dubbo://localhost:20880");
+        }
+    };
+
+    @Test
+    public void testPutGetRemove() throws Exception {
+        FutureTable table = FutureTable.getOrCreate(channel);
+        Assert.assertSame(table, FutureTable.getOrCreate(channel));
+        Map<Long, DefaultFuture> expected = new HashMap<Long, DefaultFuture>();
+        Random random = new Random(0);
+        DefaultFuture future = new DefaultFuture(channel, new Request(), 60000);
+        table.remove(future.getRequest().getId());
+        for (int i = 0; i < 100000; i ++) {
+            // 包含负数 id 以及大量冲突的情况
+            long id = random.nextInt(2000) - 1000;
+            if (random.nextBoolean()) {
+                table.put(id, future);
+                expected.put(id, future);
+            } else {
+                Assert.assertSame(expected.remove(id), table.remove(id));
+            }
+            Assert.assertEquals(expected.size(), table.size());
+        }
+        for (long id = -1000; id < 1000; id ++) {
+            Assert.assertSame(expected.get(id), table.get(id));
+        }
+        Assert.assertEquals(expected.size(), table.futures().size());
+    }
+
+    @Test
+    public void testRemoveChannel() throws Exception {
+        FutureTable table = FutureTable.getOrCreate(channel);
+        DefaultFuture future = new DefaultFuture(channel, new Request(), 60000);
+        Assert.assertFalse(table.isEmpty());
+        Assert.assertEquals(1, FutureTable.remove(channel).size());
+        Assert.assertTrue(table.isClosed());
+        Assert.assertFalse(table.put(future.getRequest().getId(), future));
+        Assert.assertNotSame(table, FutureTable.getOrCreate(channel));
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.handler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.exchange.Response;
+import com.alibaba.dubbo.remoting.exchange.ResponseCallback;
+import com.alibaba.dubbo.remoting.exchange.support.DefaultFuture;
+import com.alibaba.dubbo.remoting.transport.dispatcher.all.AllChannelHandler;
+
+public class AllChannelHandlerTest {
+
+    private URL url = URL.valueOf("test://10.20.30.40:1234");
+
+    @Test
+    public void test_Received_Response_In_IO_Thread() throws Exception {
+        ThreadChannelHandler biz = new ThreadChannelHandler();
+        AllChannelHandler handler = new AllChannelHandler(biz, url);
+        handler.received(new MockedChannel(), new Response(1));
+        Assert.assertSame(Thread.currentThread(), biz.await());
+    }
+
+    @Test
+    public void test_Received_Request_In_Executor() throws Exception {
+        ThreadChannelHandler biz = new ThreadChannelHandler();
+        AllChannelHandler handler = new AllChannelHandler(biz, url);
+        handler.received(new MockedChannel(), new Request(1));
+        Assert.assertNotSame(Thread.currentThread(), biz.await());
+    }
+
+    @Test
+    public void test_Received_Response_In_Executor_When_Disabled() throws Exception {
+        ThreadChannelHandler biz = new ThreadChannelHandler();
+        AllChannelHandler handler = new AllChannelHandler(biz, url.addParameter(Constants.RESPONSE_IN_IO_THREAD_KEY, false));
+        handler.received(new MockedChannel(), new Response(1));
+        Assert.assertNotSame(Thread.currentThread(), biz.await());
+    }
+
+    @Test
+    public void test_Received_Response_With_Callback_In_Executor() throws Exception {
+        ThreadChannelHandler biz = new ThreadChannelHandler();
+        AllChannelHandler handler = new AllChannelHandler(biz, url);
+        Channel channel = new UrlChannel();
+        Request request = new Request();
+        DefaultFuture future = new DefaultFuture(channel, request, 1000);
+        ThreadCallback callback = new ThreadCallback();
+        future.setCallback(callback);
+        handler.received(channel, new Response(request.getId()));
+        Assert.assertSame(Thread.currentThread(), biz.await());
+        DefaultFuture.received(channel, new Response(request.getId()));
+        Assert.assertNotSame(Thread.currentThread(), callback.await());
+    }
+
+    @Test
+    public void test_Received_Response_With_Late_Callback_In_Executor() throws Exception {
+        ThreadChannelHandler biz = new ThreadChannelHandler();
+        AllChannelHandler handler = new AllChannelHandler(biz, url);
+        Channel channel = new UrlChannel();
+        Request request = new Request();
+        DefaultFuture future = new DefaultFuture(channel, request, 1000);
+        handler.received(channel, new Response(request.getId()));
+        Assert.assertSame(Thread.currentThread(), biz.await());
+        // 派发判定之后、响应完成之前设置的回调也不能在 IO 线程中执行
+        ThreadCallback callback = new ThreadCallback();
+        future.setCallback(callback);
+        DefaultFuture.received(channel, new Response(request.getId()));
+        Assert.assertNotSame(Thread.currentThread(), callback.await());
+    }
+
+    class UrlChannel extends MockedChannel {
+        @Override
+        public URL getUrl() {
+            return url;
+        }
+    }
+
+    static class ThreadCallback implements ResponseCallback {
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        private volatile Thread      thread;
+
+        public void done(Object response) {
+            thread = Thread.currentThread();
+            latch.countDown();
+        }
+
+        public void caught(Throwable exception) {
+            thread = Thread.currentThread();
+            latch.countDown();
+        }
+
+        Thread await() throws InterruptedException {
+            Assert.assertTrue(latch.await(1000, TimeUnit.MILLISECONDS));
+            return thread;
+        }
+    }
+
+    static class ThreadChannelHandler extends MockedChannelHandler {
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        private volatile Thread      thread;
+
+        @Override
+        public void received(Channel channel, Object message) throws RemotingException {
+            thread = Thread.currentThread();
+            latch.countDown();
+        }
+
+        Thread await() throws InterruptedException {
+            Assert.assertTrue(latch.await(1000, TimeUnit.MILLISECONDS));
+            return thread;
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.timer;
+
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+
+public class HashedWheelTimerTest {
+
+    private HashedWheelTimer timer;
+
+    @Before
+    public void setUp() {
+        timer = new HashedWheelTimer(new NamedThreadFactory("HashedWheelTimerTest", true), 10, TimeUnit.MILLISECONDS, 8);
+    }
+
+    @After
+    public void tearDown() {
+        if (! timer.isStopped()) {
+            timer.stop();
+        }
+    }
+
+    @Test
+    public void testExpire() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        long start = System.currentTimeMillis();
+        Timeout timeout = timer.newTimeout(new TimerTask() {
+            public void run(Timeout timeout) {
+                latch.countDown();
+            }
+        }, 200, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(latch.await(2, TimeUnit.SECONDS));
+        Assert.assertTrue(System.currentTimeMillis() - start >= 190);
+        Assert.assertTrue(timeout.isExpired());
+        Assert.assertFalse(timeout.cancel());
+    }
+
+    @Test
+    public void testExpireAfterManyRounds() throws Exception {
+        // 8 ticks * 10ms 的 wheel，300ms 需要转多圈
+        final CountDownLatch latch = new CountDownLatch(3);
+        for (int i = 1; i <= 3; i ++) {
+            timer.newTimeout(new TimerTask() {
+                public void run(Timeout timeout) {
+                    latch.countDown();
+                }
+            }, 100 * i, TimeUnit.MILLISECONDS);
+        }
+        Assert.assertTrue(latch.await(2, TimeUnit.SECONDS));
+        Assert.assertEquals(0, timer.pendingTimeouts());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        final AtomicInteger counter = new AtomicInteger();
+        Timeout timeout = timer.newTimeout(new TimerTask() {
+            public void run(Timeout timeout) {
+                counter.incrementAndGet();
+            }
+        }, 100, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(timeout.cancel());
+        Assert.assertTrue(timeout.isCancelled());
+        Assert.assertFalse(timeout.cancel());
+        Thread.sleep(300);
+        Assert.assertEquals(0, counter.get());
+        Assert.assertEquals(0, timer.pendingTimeouts());
+    }
+
+    @Test
+    public void testStop() throws Exception {
+        TimerTask task = new TimerTask() {
+            public void run(Timeout timeout) {
+            }
+        };
+        timer.newTimeout(task, 10, TimeUnit.SECONDS);
+        timer.newTimeout(task, 20, TimeUnit.SECONDS);
+        Set<Timeout> unprocessed = timer.stop();
+        Assert.assertEquals(2, unprocessed.size());
+        Assert.assertTrue(timer.isStopped());
+        try {
+            timer.newTimeout(task, 1, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+}
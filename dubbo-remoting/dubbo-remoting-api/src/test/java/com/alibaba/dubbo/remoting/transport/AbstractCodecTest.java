@@ -21,8 +21,11 @@ import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.remoting.Channel;
 import junit.framework.TestCase;
 
+import static org.easymock.EasyMock.anyObject;
 import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.isA;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertThat;
@@ -37,6 +40,10 @@ public class AbstractCodecTest extends TestCase {
     public void test_checkPayload_default8M() throws Exception {
         Channel channel = createMock(Channel.class);
         expect(channel.getUrl()).andReturn(URL.valueOf("dubbo://1.1.1.1")).anyTimes();
+        // payload 作为通道级别的编解码参数缓存在通道属性中
+        expect(channel.getAttribute(isA(String.class))).andReturn(null).anyTimes();
+        channel.setAttribute(isA(String.class), anyObject());
+        expectLastCall().anyTimes();
         replay(channel);
 
         AbstractCodec.checkPayload(channel, 1 * 1024 * 1024);
@@ -57,6 +64,10 @@ public class AbstractCodecTest extends TestCase {
     public void test_checkPayload_minusPayloadNoLimit() throws Exception {
         Channel channel = createMock(Channel.class);
         expect(channel.getUrl()).andReturn(URL.valueOf("dubbo://1.1.1.1?payload=-1")).anyTimes();
+        // payload 作为通道级别的编解码参数缓存在通道属性中
+        expect(channel.getAttribute(isA(String.class))).andReturn(null).anyTimes();
+        channel.setAttribute(isA(String.class), anyObject());
+        expectLastCall().anyTimes();
         replay(channel);
 
         AbstractCodec.checkPayload(channel, 15 * 1024 * 1024);
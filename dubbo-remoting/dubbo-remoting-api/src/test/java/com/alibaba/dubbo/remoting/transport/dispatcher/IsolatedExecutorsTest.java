@@ -0,0 +1,153 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.dispatcher;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.common.store.DataStore;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.handler.MockedChannel;
+import com.alibaba.dubbo.remoting.handler.MockedChannelHandler;
+import com.alibaba.dubbo.remoting.transport.dispatcher.all.AllChannelHandler;
+
+public class IsolatedExecutorsTest {
+
+    private URL slowUrl = URL.valueOf("dubbo://127.0.0.1:20901/com.foo.SlowService?group=g&version=1.0.0"
+                                       + "&isolation=true&isolation.threads=2&query.isolation=true&query.isolation.threads=1");
+
+    private URL fastUrl = URL.valueOf("dubbo://127.0.0.1:20901/com.foo.FastService");
+
+    @After
+    public void tearDown() {
+        IsolatedExecutors.unregister(slowUrl);
+        IsolatedExecutors.unregister(fastUrl);
+    }
+
+    @Test
+    public void testServiceKey() {
+        Assert.assertEquals("g/com.foo.SlowService:1.0.0", IsolatedExecutors.serviceKey(slowUrl));
+        Assert.assertEquals("com.foo.FastService", IsolatedExecutors.serviceKey(fastUrl));
+        Assert.assertEquals("com.foo.FastService", IsolatedExecutors.serviceKey("com.foo.FastService", "", "0.0.0"));
+    }
+
+    @Test
+    public void testGetExecutor() {
+        IsolatedExecutors.register(slowUrl);
+        IsolatedExecutors.register(fastUrl);
+        ThreadPoolExecutor service = (ThreadPoolExecutor) IsolatedExecutors.getExecutor(20901, new Message("g/com.foo.SlowService:1.0.0", "find"));
+        ThreadPoolExecutor method = (ThreadPoolExecutor) IsolatedExecutors.getExecutor(20901, new Message("g/com.foo.SlowService:1.0.0", "query"));
+        Assert.assertEquals(2, service.getMaximumPoolSize());
+        Assert.assertEquals(1, method.getMaximumPoolSize());
+        Assert.assertNotSame(service, method);
+        Assert.assertNull(IsolatedExecutors.getExecutor(20901, new Message("com.foo.FastService", "find")));
+        Assert.assertNull(IsolatedExecutors.getExecutor(20902, new Message("g/com.foo.SlowService:1.0.0", "find")));
+        Assert.assertNull(IsolatedExecutors.getExecutor(20901, new Message(null, "find")));
+        Assert.assertNull(IsolatedExecutors.getExecutor(20901, "find"));
+
+        DataStore dataStore = ExtensionLoader.getExtensionLoader(DataStore.class).getDefaultExtension();
+        Assert.assertSame(service, dataStore.get(Constants.EXECUTOR_SERVICE_COMPONENT_KEY, "20901/g/com.foo.SlowService:1.0.0"));
+        Assert.assertSame(method, dataStore.get(Constants.EXECUTOR_SERVICE_COMPONENT_KEY, "20901/g/com.foo.SlowService:1.0.0#query"));
+
+        IsolatedExecutors.unregister(slowUrl);
+        Assert.assertTrue(service.isShutdown());
+        Assert.assertTrue(method.isShutdown());
+        Assert.assertNull(IsolatedExecutors.getExecutor(20901, new Message("g/com.foo.SlowService:1.0.0", "find")));
+        Assert.assertNull(dataStore.get(Constants.EXECUTOR_SERVICE_COMPONENT_KEY, "20901/g/com.foo.SlowService:1.0.0"));
+    }
+
+    @Test
+    public void testDispatchToIsolatedExecutor() throws Exception {
+        IsolatedExecutors.register(slowUrl);
+        final CountDownLatch block = new CountDownLatch(1);
+        final CountDownLatch fastDone = new CountDownLatch(1);
+        final String[] threadNames = new String[2];
+        AllChannelHandler handler = new AllChannelHandler(new MockedChannelHandler() {
+            @Override
+            public void received(Channel channel, Object message) throws RemotingException {
+                Message data = (Message) ((Request) message).getData();
+                if ("query".equals(data.getMethodName())) {
+                    threadNames[0] = Thread.currentThread().getName();
+                    try {
+                        block.await();
+                    } catch (InterruptedException e) {
+                    }
+                } else {
+                    threadNames[1] = Thread.currentThread().getName();
+                    fastDone.countDown();
+                }
+            }
+        }, URL.valueOf("dubbo://127.0.0.1:20901/com.foo.FastService"));
+        try {
+            Request slow = new Request(1);
+            slow.setData(new Message("g/com.foo.SlowService:1.0.0", "query"));
+            handler.received(new MockedChannel(), slow);
+            // 慢方法的线程池只有 1 个线程，再提交会被拒绝
+            ExecutorService method = IsolatedExecutors.getExecutor(20901, slow.getData());
+            for (int i = 0; i < 50 && ((ThreadPoolExecutor) method).getActiveCount() == 0; i ++) {
+                Thread.sleep(10);
+            }
+            try {
+                handler.received(new MockedChannel(), slow);
+                Assert.fail();
+            } catch (RemotingException expected) {
+            }
+            // 其它服务不受影响
+            Request fast = new Request(2);
+            fast.setData(new Message("com.foo.FastService", "find"));
+            handler.received(new MockedChannel(), fast);
+            Assert.assertTrue(fastDone.await(1000, TimeUnit.MILLISECONDS));
+            Assert.assertTrue(threadNames[0], threadNames[0].startsWith("DubboIsolatedHandler-g/com.foo.SlowService:1.0.0#query"));
+            Assert.assertFalse(threadNames[1], threadNames[1].startsWith("DubboIsolatedHandler"));
+        } finally {
+            block.countDown();
+            handler.close();
+        }
+    }
+
+    static class Message implements ServiceMessage {
+
+        private final String serviceKey;
+
+        private final String methodName;
+
+        Message(String serviceKey, String methodName) {
+            this.serviceKey = serviceKey;
+            this.methodName = methodName;
+        }
+
+        public String getServiceKey() {
+            return serviceKey;
+        }
+
+        public String getMethodName() {
+            return methodName;
+        }
+    }
+
+}
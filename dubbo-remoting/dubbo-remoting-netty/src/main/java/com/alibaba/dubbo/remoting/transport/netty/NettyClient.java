@@ -15,7 +15,6 @@
  */
 package com.alibaba.dubbo.remoting.transport.netty;
 
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import org.jboss.netty.bootstrap.ClientBootstrap;
@@ -25,14 +24,13 @@ import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelPipelineFactory;
 import org.jboss.netty.channel.Channels;
-import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
+import org.jboss.netty.channel.socket.nio.NioSocketChannelConfig;
 
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.Version;
 import com.alibaba.dubbo.common.logger.Logger;
 import com.alibaba.dubbo.common.logger.LoggerFactory;
-import com.alibaba.dubbo.common.utils.NamedThreadFactory;
 import com.alibaba.dubbo.common.utils.NetUtils;
 import com.alibaba.dubbo.remoting.ChannelHandler;
 import com.alibaba.dubbo.remoting.RemotingException;
@@ -50,9 +48,8 @@ public class NettyClient extends AbstractClient {
 
     // 因ChannelFactory的关闭有DirectMemory泄露，采用静态化规避
     // https://issues.jboss.org/browse/NETTY-424
-    private static final ChannelFactory channelFactory = new NioClientSocketChannelFactory(Executors.newCachedThreadPool(new NamedThreadFactory("NettyClientBoss", true)), 
-                                                                                           Executors.newCachedThreadPool(new NamedThreadFactory("NettyClientWorker", true)), 
-                                                                                           Constants.DEFAULT_IO_THREADS);
+    // IO 线程与 NettyServer 来自同一个进程内共享的线程池
+    private static final ChannelFactory channelFactory = NettyEventLoops.getClientChannelFactory();
     private ClientBootstrap bootstrap;
 
     // 这里的 Channel 全限定名称为 org.jboss.netty.channel.Channel
@@ -82,7 +79,13 @@ public class NettyClient extends AbstractClient {
                 ChannelPipeline pipeline = Channels.pipeline();
                 //设置消息流的处理handler,发出去的消息先经过handler再经过encoder，
                 //这里断点可以设置在nettyHandler类里。
+                pipeline.addLast("statistics", NettyEventLoops.getStatisticsHandler());
                 pipeline.addLast("decoder", adapter.getDecoder());
+                // 下行事件从后往前经过，合并写处理的是 encoder 编码后的数据
+                NettyWriteBatcher batcher = NettyWriteBatcher.create(getUrl());
+                if (batcher != null) {
+                    pipeline.addLast("batcher", batcher);
+                }
                 pipeline.addLast("encoder", adapter.getEncoder());
                 pipeline.addLast("handler", nettyHandler);
                 return pipeline;
@@ -90,6 +93,25 @@ public class NettyClient extends AbstractClient {
         });
     }
 
+    /**
+     * 写队列积压超过 pending.bytes 时连接变为不可写，降到一半以下恢复可写，供连接背压判断
+     */
+    private void setWriteBufferWaterMark(Channel channel) {
+        int pendingBytes = getUrl().getParameter(Constants.PENDING_BYTES_KEY, 0);
+        if (pendingBytes <= 0 || ! (channel.getConfig() instanceof NioSocketChannelConfig)) {
+            return;
+        }
+        NioSocketChannelConfig config = (NioSocketChannelConfig) channel.getConfig();
+        // 高水位不能低于低水位，按当前低水位决定设置顺序
+        if (pendingBytes < config.getWriteBufferLowWaterMark()) {
+            config.setWriteBufferLowWaterMark(pendingBytes / 2);
+            config.setWriteBufferHighWaterMark(pendingBytes);
+        } else {
+            config.setWriteBufferHighWaterMark(pendingBytes);
+            config.setWriteBufferLowWaterMark(pendingBytes / 2);
+        }
+    }
+
     protected void doConnect() throws Throwable {
         long start = System.currentTimeMillis();
         ChannelFuture future = bootstrap.connect(getConnectAddress());
@@ -99,6 +121,7 @@ public class NettyClient extends AbstractClient {
             if (ret && future.isSuccess()) {
                 Channel newChannel = future.getChannel();
                 newChannel.setInterestOps(Channel.OP_READ_WRITE);
+                setWriteBufferWaterMark(newChannel);
                 try {
                     // 关闭旧的连接
                     Channel oldChannel = NettyClient.this.channel; // copy reference
@@ -32,7 +32,8 @@ import org.jboss.netty.handler.codec.oneone.OneToOneEncoder;
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.remoting.Codec2;
-import com.alibaba.dubbo.remoting.buffer.DynamicChannelBuffer;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.exchange.Response;
 
 /**
  * NettyCodecAdapter.
@@ -41,6 +42,16 @@ import com.alibaba.dubbo.remoting.buffer.DynamicChannelBuffer;
  */
 final class NettyCodecAdapter {
 
+    // dubbo 协议消息头，与 ExchangeCodec 一致：魔数(2) + 标志(1) + 状态(1) + 请求编号(8) + 消息体长度(4)
+    static final int             FRAME_HEADER_LENGTH = 16;
+
+    private static final byte    FRAME_MAGIC_HIGH    = (byte) 0xda;
+
+    private static final byte    FRAME_MAGIC_LOW     = (byte) 0xbb;
+
+    // 按消息头预分配累积缓冲区的上限为 bufferSize 的倍数，消息头未经校验，超出部分随数据实际到达再扩容
+    static final int             MAX_PREALLOCATE_FACTOR = 16;
+
     private final ChannelHandler encoder = new InternalEncoder();
     
     private final ChannelHandler decoder = new InternalDecoder();
@@ -50,6 +61,8 @@ final class NettyCodecAdapter {
     private final URL            url;
     
     private final int            bufferSize;
+
+    private final int            payload;
     
     private final com.alibaba.dubbo.remoting.ChannelHandler handler;
 
@@ -59,6 +72,7 @@ final class NettyCodecAdapter {
         this.handler = handler;
         int b = url.getPositiveParameter(Constants.BUFFER_KEY, Constants.DEFAULT_BUFFER_SIZE);
         this.bufferSize = b >= Constants.MIN_BUFFER_SIZE && b <= Constants.MAX_BUFFER_SIZE ? b : Constants.DEFAULT_BUFFER_SIZE;
+        this.payload = url.getParameter(Constants.PAYLOAD_KEY, Constants.DEFAULT_PAYLOAD);
     }
 
     public ChannelHandler getEncoder() {
@@ -72,22 +86,105 @@ final class NettyCodecAdapter {
     @Sharable
     private class InternalEncoder extends OneToOneEncoder {
 
+        // 按消息类型（请求、响应、其它）记录编码后的大小，作为下次分配缓冲区的初始容量
+        private final EncodeSizeHint[] sizeHints = new EncodeSizeHint[] {
+            new EncodeSizeHint(), new EncodeSizeHint(), new EncodeSizeHint()
+        };
+
         @Override
         protected Object encode(ChannelHandlerContext ctx, Channel ch, Object msg) throws Exception {
-            com.alibaba.dubbo.remoting.buffer.ChannelBuffer buffer =
-                com.alibaba.dubbo.remoting.buffer.ChannelBuffers.dynamicBuffer(1024);
+            EncodeSizeHint sizeHint = sizeHints[msg instanceof Request ? 0 : msg instanceof Response ? 1 : 2];
+            // 直接编码到 Netty 的缓冲区中，避免中间的 dubbo 缓冲区和扩容时的拷贝
+            ChannelBuffer nettyBuffer = ChannelBuffers.dynamicBuffer(sizeHint.next(), ch.getConfig().getBufferFactory());
+            com.alibaba.dubbo.remoting.buffer.ChannelBuffer buffer = new NettyBackedChannelBuffer(nettyBuffer);
             NettyChannel channel = NettyChannel.getOrAddChannel(ch, url, handler);
             try {
             	codec.encode(channel, buffer, msg);
             } finally {
                 NettyChannel.removeChannelIfDisconnected(ch);
             }
-            return ChannelBuffers.wrappedBuffer(buffer.toByteBuffer());
+            sizeHint.record(nettyBuffer.readableBytes());
+            return nettyBuffer;
+        }
+    }
+
+    /**
+     * 编码缓冲区大小预测：比上次预测大时立即放大，连续多次明显偏小时才缩小。
+     * 预测值不超过 MAX_SIZE，更大的消息由动态缓冲区在编码时扩容，避免一次大消息之后的大量小消息都预分配大缓冲区。
+     */
+    static final class EncodeSizeHint {
+
+        static final int     MIN_SIZE     = 256;
+
+        static final int     MAX_SIZE     = 64 * 1024;
+
+        private static final int SHRINK_THRESHOLD = 8;
+
+        // 多个 IO 线程共享，竞争时丢失一次更新不影响正确性
+        private volatile int size         = 1024;
+
+        private volatile int smallerCount = 0;
+
+        int next() {
+            return size;
+        }
+
+        void record(int actual) {
+            int current = size;
+            if (actual > current) {
+                size = Math.min(roundUp(actual), MAX_SIZE);
+                smallerCount = 0;
+            } else if (actual <= (current >>> 2) && current > MIN_SIZE) {
+                if (++ smallerCount >= SHRINK_THRESHOLD) {
+                    size = Math.max(current >>> 1, MIN_SIZE);
+                    smallerCount = 0;
+                }
+            } else {
+                smallerCount = 0;
+            }
+        }
+
+        private static int roundUp(int actual) {
+            int n = MIN_SIZE;
+            while (n < actual && n > 0) {
+                n <<= 1;
+            }
+            return n > 0 ? n : actual;
+        }
+    }
+
+    /**
+     * 从未读完的数据中预测当前帧的总长度：数据以 dubbo 协议魔数开头且消息头完整时，返回消息头长度加消息体长度，否则返回 -1。
+     */
+    static int frameLength(com.alibaba.dubbo.remoting.buffer.ChannelBuffer buffer, int payload) {
+        if (buffer.readableBytes() < FRAME_HEADER_LENGTH) {
+            return -1;
+        }
+        int index = buffer.readerIndex();
+        if (buffer.getByte(index) != FRAME_MAGIC_HIGH || buffer.getByte(index + 1) != FRAME_MAGIC_LOW) {
+            return -1;
         }
+        int len = (buffer.getByte(index + 12) & 0xff) << 24 | (buffer.getByte(index + 13) & 0xff) << 16
+                | (buffer.getByte(index + 14) & 0xff) << 8 | buffer.getByte(index + 15) & 0xff;
+        // 消息体长度非法或超出限制时不预分配，交给 codec 抛出异常
+        if (len < 0 || len > Integer.MAX_VALUE - FRAME_HEADER_LENGTH || payload > 0 && len > payload) {
+            return -1;
+        }
+        return len + FRAME_HEADER_LENGTH;
+    }
+
+    /**
+     * 累积缓冲区的初始容量：至少容纳已有数据和 bufferSize，按帧长度预分配的部分不超过 bufferSize 的 {@link #MAX_PREALLOCATE_FACTOR} 倍，
+     * 避免只发消息头的对端让每个连接都占用 payload 大小的内存。
+     */
+    static int cumulationCapacity(int size, int frameLength, int bufferSize) {
+        int preallocate = (int) Math.min((long) frameLength, (long) bufferSize * MAX_PREALLOCATE_FACTOR);
+        return Math.max(Math.max(size, preallocate), bufferSize);
     }
 
     private class InternalDecoder extends SimpleChannelUpstreamHandler {
 
+        // 跨多次读取的半包累积缓冲区，读完后若不超过 bufferSize 则保留复用
         private com.alibaba.dubbo.remoting.buffer.ChannelBuffer buffer =
             com.alibaba.dubbo.remoting.buffer.ChannelBuffers.EMPTY_BUFFER;
 
@@ -107,19 +204,12 @@ final class NettyCodecAdapter {
 
             com.alibaba.dubbo.remoting.buffer.ChannelBuffer message;
             if (buffer.readable()) {
-                if (buffer instanceof DynamicChannelBuffer) {
-                    buffer.writeBytes(input.toByteBuffer());
-                    message = buffer;
-                } else {
-                    int size = buffer.readableBytes() + input.readableBytes();
-                    message = com.alibaba.dubbo.remoting.buffer.ChannelBuffers.dynamicBuffer(
-                        size > bufferSize ? size : bufferSize);
-                    message.writeBytes(buffer, buffer.readableBytes());
-                    message.writeBytes(input.toByteBuffer());
-                }
+                // 累积缓冲区是动态缓冲区，容量不足时按倍数扩容
+                buffer.writeBytes(input.toByteBuffer());
+                message = buffer;
             } else {
-                message = com.alibaba.dubbo.remoting.buffer.ChannelBuffers.wrappedBuffer(
-                    input.toByteBuffer());
+                // 没有半包时直接在 Netty 的缓冲区上解码，不做拷贝
+                message = new NettyBackedChannelBuffer(input);
             }
 
             NettyChannel channel = NettyChannel.getOrAddChannel(ctx.getChannel(), url, handler);
@@ -151,8 +241,14 @@ final class NettyCodecAdapter {
                 } while (message.readable());
             } finally {
                 if (message.readable()) {
-                    message.discardReadBytes();
-                    buffer = message;
+                    if (message == buffer) {
+                        message.discardReadBytes();
+                    } else {
+                        // Netty 的缓冲区不能跨事件持有，把剩余的半包拷贝到累积缓冲区
+                        buffer = cumulate(message);
+                    }
+                } else if (message == buffer && buffer.capacity() <= bufferSize) {
+                    buffer.clear();
                 } else {
                     buffer = com.alibaba.dubbo.remoting.buffer.ChannelBuffers.EMPTY_BUFFER;
                 }
@@ -160,6 +256,18 @@ final class NettyCodecAdapter {
             }
         }
 
+        /**
+         * 分配新的累积缓冲区并拷入 remaining 中未读的数据。已知帧长度时按整帧大小预分配，但不超过 bufferSize 的 {@link #MAX_PREALLOCATE_FACTOR} 倍。
+         */
+        private com.alibaba.dubbo.remoting.buffer.ChannelBuffer cumulate(
+                com.alibaba.dubbo.remoting.buffer.ChannelBuffer remaining) {
+            int capacity = cumulationCapacity(remaining.readableBytes(), frameLength(remaining, payload), bufferSize);
+            com.alibaba.dubbo.remoting.buffer.ChannelBuffer cumulation =
+                com.alibaba.dubbo.remoting.buffer.ChannelBuffers.dynamicBuffer(capacity);
+            cumulation.writeBytes(remaining.toByteBuffer());
+            return cumulation;
+        }
+
         @Override
         public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
             ctx.sendUpstream(e);
@@ -0,0 +1,53 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.netty;
+
+import java.util.List;
+
+import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.common.status.Status;
+import com.alibaba.dubbo.common.status.StatusChecker;
+import com.alibaba.dubbo.remoting.transport.netty.NettyEventLoops.EventLoop;
+
+/**
+ * 共享 IO 线程的状态，列出每个线程自上次检查以来的忙碌占比，有线程超过 90% 时告警
+ */
+@Activate
+public class NettyEventLoopStatusChecker implements StatusChecker {
+
+    public Status check() {
+        List<EventLoop> loops = NettyEventLoops.getLoops();
+        if (loops.isEmpty()) {
+            return new Status(Status.Level.UNKNOWN);
+        }
+        Status.Level level = Status.Level.OK;
+        StringBuilder buf = new StringBuilder();
+        buf.append("iothreads:").append(NettyEventLoops.IO_THREADS);
+        for (EventLoop loop : loops) {
+            int utilization = (int) (loop.sampleUtilization() * 100);
+            if (utilization > 90) {
+                level = Status.Level.WARN;
+            }
+            buf.append(",");
+            buf.append(loop.getName());
+            buf.append("(");
+            buf.append(utilization);
+            buf.append("%)");
+        }
+        return new Status(level, buf.toString());
+    }
+
+}
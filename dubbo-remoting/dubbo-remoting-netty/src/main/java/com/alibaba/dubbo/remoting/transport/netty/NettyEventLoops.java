@@ -0,0 +1,198 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.netty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelHandler;
+import org.jboss.netty.channel.ChannelFactory;
+import org.jboss.netty.channel.ChannelHandler.Sharable;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.utils.ConcurrentHashSet;
+import com.alibaba.dubbo.common.utils.ConfigUtils;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+
+/**
+ * 进程内共享的 netty IO 线程，所有 NettyServer 共用一个 server ChannelFactory，所有 NettyClient 共用一个 client ChannelFactory，
+ * 每个 ChannelFactory 的 IO 线程数由 dubbo.io.threads 配置，默认等于 CPU 核数。
+ * <p>
+ * netty 3.2 的 server 和 client ChannelFactory 不能共用 NioWorker，因此两者各有一组 IO 线程。
+ * NioWorker 没有连接时会退出并在有新连接时重新提交，只统计正在运行 NioWorker 的线程，线程池中空闲的线程不计入。
+ * 因 ChannelFactory 的关闭有 DirectMemory 泄露，共享的 ChannelFactory 不释放。
+ * https://issues.jboss.org/browse/NETTY-424
+ */
+final class NettyEventLoops {
+
+    static final int                            IO_THREADS = getIoThreads();
+
+    private static final ConcurrentHashSet<EventLoop> LOOPS  = new ConcurrentHashSet<EventLoop>();
+
+    private static final ThreadLocal<EventLoop> CURRENT    = new ThreadLocal<EventLoop>();
+
+    private static final StatisticsHandler      STATISTICS = new StatisticsHandler();
+
+    private NettyEventLoops() {
+    }
+
+    private static int getIoThreads() {
+        try {
+            int threads = Integer.parseInt(ConfigUtils.getProperty(Constants.SHARED_IO_THREADS_KEY, "0").trim());
+            if (threads > 0) {
+                return threads;
+            }
+        } catch (NumberFormatException e) {
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * 未配置 iothreads 且没有关闭 io.shared 时使用共享的 IO 线程
+     */
+    static boolean isShared(URL url) {
+        return url.getParameter(Constants.IO_SHARED_KEY, true) && ! url.hasParameter(Constants.IO_THREADS_KEY);
+    }
+
+    static ChannelFactory getServerChannelFactory() {
+        return ServerFactoryHolder.FACTORY;
+    }
+
+    static ChannelFactory getClientChannelFactory() {
+        return ClientFactoryHolder.FACTORY;
+    }
+
+    /**
+     * 放在 pipeline 最前面，统计 IO 线程处理上行事件（解码、派发及其中同步完成的写）的耗时
+     */
+    static ChannelHandler getStatisticsHandler() {
+        return STATISTICS;
+    }
+
+    static List<EventLoop> getLoops() {
+        return new ArrayList<EventLoop>(LOOPS);
+    }
+
+    /**
+     * NioWorker 运行期间登记为 EventLoop，退出后立即移除
+     */
+    static Executor newWorkerExecutor(String name) {
+        return new EventLoopExecutor(Executors.newCachedThreadPool(new NamedThreadFactory(name, true)));
+    }
+
+    private static class ServerFactoryHolder {
+
+        static final ChannelFactory FACTORY = new NioServerSocketChannelFactory(
+                Executors.newCachedThreadPool(new NamedThreadFactory("NettyServerBoss", true)),
+                newWorkerExecutor("NettyServerWorker"), IO_THREADS);
+    }
+
+    private static class ClientFactoryHolder {
+
+        static final ChannelFactory FACTORY = new NioClientSocketChannelFactory(
+                Executors.newCachedThreadPool(new NamedThreadFactory("NettyClientBoss", true)),
+                newWorkerExecutor("NettyClientWorker"), IO_THREADS);
+    }
+
+    /**
+     * 一个 IO 线程的忙碌时间统计
+     */
+    static final class EventLoop {
+
+        private final String     name;
+
+        private final AtomicLong busy = new AtomicLong();
+
+        private long             lastBusy;
+
+        private long             lastTime = System.nanoTime();
+
+        EventLoop(String name) {
+            this.name = name;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        /**
+         * 上次调用以来忙碌时间的占比，0 到 1
+         */
+        synchronized double sampleUtilization() {
+            long now = System.nanoTime();
+            long busyNow = busy.get();
+            long elapsed = now - lastTime;
+            double utilization = elapsed <= 0 ? 0 : Math.min(1, (double) (busyNow - lastBusy) / elapsed);
+            lastTime = now;
+            lastBusy = busyNow;
+            return utilization;
+        }
+    }
+
+    private static final class EventLoopExecutor implements Executor {
+
+        private final Executor delegate;
+
+        EventLoopExecutor(Executor delegate) {
+            this.delegate = delegate;
+        }
+
+        public void execute(final Runnable worker) {
+            delegate.execute(new Runnable() {
+                public void run() {
+                    EventLoop loop = new EventLoop(Thread.currentThread().getName());
+                    CURRENT.set(loop);
+                    LOOPS.add(loop);
+                    try {
+                        worker.run();
+                    } finally {
+                        LOOPS.remove(loop);
+                        CURRENT.remove();
+                    }
+                }
+            });
+        }
+    }
+
+    @Sharable
+    private static final class StatisticsHandler extends SimpleChannelUpstreamHandler {
+
+        @Override
+        public void handleUpstream(ChannelHandlerContext ctx, ChannelEvent e) throws Exception {
+            EventLoop loop = CURRENT.get();
+            if (loop == null) {
+                ctx.sendUpstream(e);
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                ctx.sendUpstream(e);
+            } finally {
+                loop.busy.addAndGet(System.nanoTime() - start);
+            }
+        }
+    }
+
+}
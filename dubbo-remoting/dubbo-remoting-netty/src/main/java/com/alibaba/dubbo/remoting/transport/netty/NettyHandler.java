@@ -26,6 +26,7 @@ import org.jboss.netty.channel.ExceptionEvent;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.SimpleChannelHandler;
 
+import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.utils.NetUtils;
 import com.alibaba.dubbo.remoting.Channel;
@@ -86,6 +87,26 @@ public class NettyHandler extends SimpleChannelHandler {
         }
     }
 
+    /**
+     * 写队列越过高低水位时 netty 触发此事件，把可写状态同步到 channel.unwritable 属性上，供连接背压判断
+     */
+    @Override
+    public void channelInterestChanged(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+        NettyChannel channel = NettyChannel.getOrAddChannel(ctx.getChannel(), url, handler);
+        try {
+            if (channel != null) {
+                if (ctx.getChannel().isWritable()) {
+                    channel.removeAttribute(Constants.CHANNEL_ATTRIBUTE_UNWRITABLE_KEY);
+                } else {
+                    channel.setAttribute(Constants.CHANNEL_ATTRIBUTE_UNWRITABLE_KEY, Boolean.TRUE);
+                }
+            }
+        } finally {
+            NettyChannel.removeChannelIfDisconnected(ctx.getChannel());
+        }
+        super.channelInterestChanged(ctx, e);
+    }
+
     /**
      * （1）获取NettyChannel实例
      * （2）将NettyChannel以及Request对象向下传递
@@ -59,6 +59,8 @@ public class NettyServer extends AbstractServer implements Server {
 
     private org.jboss.netty.channel.Channel channel;
 
+    private boolean                         shared;
+
     public NettyServer(URL url, ChannelHandler handler) throws RemotingException{
         //调用父类AbstractServer构造方法
         super(url, ChannelHandlers.wrap(handler, ExecutorUtil.setThreadName(url, SERVER_THREAD_POOL_NAME)));
@@ -68,9 +70,16 @@ public class NettyServer extends AbstractServer implements Server {
     protected void doOpen() throws Throwable {
         //通过netty 开启服务监听端口
         NettyHelper.setNettyLoggerFactory();
-        ExecutorService boss = Executors.newCachedThreadPool(new NamedThreadFactory("NettyServerBoss", true));
-        ExecutorService worker = Executors.newCachedThreadPool(new NamedThreadFactory("NettyServerWorker", true));
-        ChannelFactory channelFactory = new NioServerSocketChannelFactory(boss, worker, getUrl().getPositiveParameter(Constants.IO_THREADS_KEY, Constants.DEFAULT_IO_THREADS));
+        ChannelFactory channelFactory;
+        shared = NettyEventLoops.isShared(getUrl());
+        if (shared) {
+            // 所有端口共用进程内的 IO 线程
+            channelFactory = NettyEventLoops.getServerChannelFactory();
+        } else {
+            ExecutorService boss = Executors.newCachedThreadPool(new NamedThreadFactory("NettyServerBoss", true));
+            ExecutorService worker = Executors.newCachedThreadPool(new NamedThreadFactory("NettyServerWorker", true));
+            channelFactory = new NioServerSocketChannelFactory(boss, worker, getUrl().getPositiveParameter(Constants.IO_THREADS_KEY, Constants.DEFAULT_IO_THREADS));
+        }
         bootstrap = new ServerBootstrap(channelFactory);
         
         final NettyHandler nettyHandler = new NettyHandler(getUrl(), this);
@@ -86,7 +95,15 @@ public class NettyServer extends AbstractServer implements Server {
                 if (idleTimeout > 10000) {
                     pipeline.addLast("timer", new IdleStateHandler(timer, idleTimeout / 1000, 0, 0));
                 }*/
+                if (shared) {
+                    pipeline.addLast("statistics", NettyEventLoops.getStatisticsHandler());
+                }
                 pipeline.addLast("decoder", adapter.getDecoder());
+                // 下行事件从后往前经过，合并写处理的是 encoder 编码后的数据
+                NettyWriteBatcher batcher = NettyWriteBatcher.create(getUrl());
+                if (batcher != null) {
+                    pipeline.addLast("batcher", batcher);
+                }
                 pipeline.addLast("encoder", adapter.getEncoder());
                 pipeline.addLast("handler", nettyHandler);
                 return pipeline;
@@ -121,7 +138,8 @@ public class NettyServer extends AbstractServer implements Server {
             logger.warn(e.getMessage(), e);
         }
         try {
-            if (bootstrap != null) { 
+            // 共享的 IO 线程不释放
+            if (bootstrap != null && ! shared) { 
                 // release external resource.
                 bootstrap.releaseExternalResources();
             }
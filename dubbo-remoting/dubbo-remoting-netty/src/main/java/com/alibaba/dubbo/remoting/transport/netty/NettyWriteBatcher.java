@@ -0,0 +1,170 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.netty;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelDownstreamHandler;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+
+/**
+ * 合并写：位于 encoder 之后，把同一连接上写出的已编码消息合并成一次写操作，减少系统调用和 TCP 报文数。
+ * <p>
+ * 每个连接同时只有一个写操作在途：前一次写出的 ChannelFuture 完成（即 I/O 线程已把数据写入 socket）之前，
+ * 后续消息留在队列中，完成时再把队列中的消息按 write.batch.size 合并写出。Netty 3 中业务线程的写只是把消息交给
+ * I/O 线程，等待 I/O 线程处理的这段时间里到达的消息都会被合并；连接空闲时第一条消息直接写出，不增加延迟。
+ * 每条消息的 ChannelFuture 在所在批次写完后才完成，sent="true" 的语义不变。每个连接一个实例，不可共享。
+ */
+final class NettyWriteBatcher extends SimpleChannelDownstreamHandler {
+
+    private final int                       batchSize;
+
+    private final Queue<MessageEvent>       queue   = new ConcurrentLinkedQueue<MessageEvent>();
+
+    // 是否有写操作在途，由写出该批次的 ChannelFuture 完成时释放
+    private final AtomicBoolean             writing = new AtomicBoolean();
+
+    // 正在 drain 中写出批次的线程，批次在该线程中同步完成时由 drain 循环继续写，避免递归
+    private volatile Thread                 drainer;
+
+    NettyWriteBatcher(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * url 上配置了 write.batch=true 时返回合并写处理器，否则返回 null
+     */
+    static NettyWriteBatcher create(URL url) {
+        if (! url.getParameter(Constants.WRITE_BATCH_KEY, false)) {
+            return null;
+        }
+        return new NettyWriteBatcher(url.getPositiveParameter(Constants.WRITE_BATCH_SIZE_KEY, Constants.DEFAULT_WRITE_BATCH_SIZE));
+    }
+
+    @Override
+    public void writeRequested(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+        if (! (e.getMessage() instanceof ChannelBuffer)) {
+            ctx.sendDownstream(e);
+            return;
+        }
+        queue.offer(e);
+        drain(ctx);
+    }
+
+    private void drain(ChannelHandlerContext ctx) {
+        // 释放写权限后再检查一次队列，避免其它线程入队时恰好错过
+        while (! queue.isEmpty() && writing.compareAndSet(false, true)) {
+            Thread current = Thread.currentThread();
+            drainer = current;
+            try {
+                if (! writeBatch(ctx)) {
+                    writing.set(false);
+                }
+            } finally {
+                if (drainer == current) {
+                    drainer = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * 从队列中取出不超过 batchSize 的消息写出，队列为空时返回 false
+     */
+    private boolean writeBatch(ChannelHandlerContext ctx) {
+        // 只有持有写权限的线程出队，peek 到的就是下一个 poll 的消息
+        MessageEvent first = queue.poll();
+        if (first == null) {
+            return false;
+        }
+        List<MessageEvent> events = new ArrayList<MessageEvent>();
+        events.add(first);
+        int bytes = ((ChannelBuffer) first.getMessage()).readableBytes();
+        MessageEvent next;
+        while (bytes < batchSize && (next = queue.peek()) != null) {
+            int size = ((ChannelBuffer) next.getMessage()).readableBytes();
+            if (bytes + size > batchSize) {
+                break;
+            }
+            events.add(queue.poll());
+            bytes += size;
+        }
+        if (events.size() == 1) {
+            first.getFuture().addListener(new BatchListener(ctx, null));
+            ctx.sendDownstream(first);
+            return true;
+        }
+        ChannelBuffer[] buffers = new ChannelBuffer[events.size()];
+        for (int i = 0; i < buffers.length; i ++) {
+            buffers[i] = (ChannelBuffer) events.get(i).getMessage();
+        }
+        ChannelFuture future = Channels.future(ctx.getChannel());
+        future.addListener(new BatchListener(ctx, events));
+        try {
+            Channels.write(ctx, future, ChannelBuffers.wrappedBuffer(buffers), first.getRemoteAddress());
+        } catch (Throwable t) {
+            future.setFailure(t);
+        }
+        return true;
+    }
+
+    private final class BatchListener implements ChannelFutureListener {
+
+        private final ChannelHandlerContext ctx;
+
+        private final List<MessageEvent>    events;
+
+        BatchListener(ChannelHandlerContext ctx, List<MessageEvent> events) {
+            this.ctx = ctx;
+            this.events = events;
+        }
+
+        public void operationComplete(ChannelFuture future) throws Exception {
+            if (events != null) {
+                Throwable cause = null;
+                if (! future.isSuccess()) {
+                    cause = future.getCause() != null ? future.getCause() : new IOException("Batched write cancelled");
+                }
+                for (MessageEvent event : events) {
+                    if (cause == null) {
+                        event.getFuture().setSuccess();
+                    } else {
+                        event.getFuture().setFailure(cause);
+                    }
+                }
+            }
+            writing.set(false);
+            if (drainer != Thread.currentThread()) {
+                drain(ctx);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.netty;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.io.Bytes;
+import com.alibaba.dubbo.remoting.buffer.ChannelBuffer;
+import com.alibaba.dubbo.remoting.buffer.ChannelBuffers;
+
+public class NettyCodecAdapterTest {
+
+    @Test
+    public void testEncodeSizeHintGrowImmediately() {
+        NettyCodecAdapter.EncodeSizeHint hint = new NettyCodecAdapter.EncodeSizeHint();
+        hint.record(10 * 1024 + 1);
+        Assert.assertEquals(16 * 1024, hint.next());
+        hint.record(Integer.MAX_VALUE);
+        Assert.assertEquals(NettyCodecAdapter.EncodeSizeHint.MAX_SIZE, hint.next());
+    }
+
+    @Test
+    public void testEncodeSizeHintBoundedAfterLargeMessage() {
+        NettyCodecAdapter.EncodeSizeHint hint = new NettyCodecAdapter.EncodeSizeHint();
+        // 一次大响应之后的小消息最多预分配 MAX_SIZE，超出部分由动态缓冲区扩容
+        hint.record(5 * 1024 * 1024);
+        Assert.assertTrue(hint.next() <= 128 * 1024);
+        for (int i = 0; i < 100; i ++) {
+            hint.record(1024);
+            Assert.assertTrue(hint.next() <= NettyCodecAdapter.EncodeSizeHint.MAX_SIZE);
+        }
+        Assert.assertTrue(hint.next() < NettyCodecAdapter.EncodeSizeHint.MAX_SIZE);
+    }
+
+    @Test
+    public void testEncodeSizeHintShrinkSlowly() {
+        NettyCodecAdapter.EncodeSizeHint hint = new NettyCodecAdapter.EncodeSizeHint();
+        hint.record(64 * 1024);
+        Assert.assertEquals(64 * 1024, hint.next());
+        // 偶尔出现的小消息不会缩小
+        for (int i = 0; i < 5; i ++) {
+            hint.record(100);
+        }
+        hint.record(60 * 1024);
+        Assert.assertEquals(64 * 1024, hint.next());
+        // 连续的小消息逐步缩小，但不低于下限
+        for (int i = 0; i < 1000; i ++) {
+            hint.record(100);
+        }
+        Assert.assertEquals(NettyCodecAdapter.EncodeSizeHint.MIN_SIZE, hint.next());
+    }
+
+    @Test
+    public void testFrameLength() {
+        ChannelBuffer buffer = header(1024);
+        Assert.assertEquals(NettyCodecAdapter.FRAME_HEADER_LENGTH + 1024, NettyCodecAdapter.frameLength(buffer, 8 * 1024 * 1024));
+        // 读指针之前的数据不参与计算
+        ChannelBuffer shifted = ChannelBuffers.dynamicBuffer(64);
+        shifted.writeBytes(new byte[5]);
+        shifted.writeBytes(header(10));
+        shifted.readerIndex(5);
+        Assert.assertEquals(NettyCodecAdapter.FRAME_HEADER_LENGTH + 10, NettyCodecAdapter.frameLength(shifted, 0));
+    }
+
+    @Test
+    public void testFrameLengthUnknown() {
+        // 消息头不完整
+        ChannelBuffer buffer = header(1024);
+        buffer.writerIndex(NettyCodecAdapter.FRAME_HEADER_LENGTH - 1);
+        Assert.assertEquals(-1, NettyCodecAdapter.frameLength(buffer, 0));
+        // 非 dubbo 协议数据，如 telnet 命令
+        Assert.assertEquals(-1, NettyCodecAdapter.frameLength(ChannelBuffers.wrappedBuffer("ls -l invoke hello\r\n".getBytes()), 0));
+        // 超出 payload 限制或长度非法
+        Assert.assertEquals(-1, NettyCodecAdapter.frameLength(header(1025), 1024));
+        Assert.assertEquals(-1, NettyCodecAdapter.frameLength(header(-1), 0));
+    }
+
+    @Test
+    public void testCumulationCapacity() {
+        int bufferSize = 8 * 1024;
+        // 小帧按帧长度预分配
+        Assert.assertEquals(20 * 1024, NettyCodecAdapter.cumulationCapacity(100, 20 * 1024, bufferSize));
+        // 只有消息头的大帧不按声明的长度预分配
+        Assert.assertEquals(bufferSize * NettyCodecAdapter.MAX_PREALLOCATE_FACTOR,
+                NettyCodecAdapter.cumulationCapacity(NettyCodecAdapter.FRAME_HEADER_LENGTH, 8 * 1024 * 1024, bufferSize));
+        // 已有数据超过上限时按实际数据分配
+        Assert.assertEquals(1024 * 1024, NettyCodecAdapter.cumulationCapacity(1024 * 1024, 8 * 1024 * 1024, bufferSize));
+        // 帧长度未知
+        Assert.assertEquals(bufferSize, NettyCodecAdapter.cumulationCapacity(100, -1, bufferSize));
+    }
+
+    private static ChannelBuffer header(int len) {
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer(NettyCodecAdapter.FRAME_HEADER_LENGTH);
+        buffer.writeBytes(Bytes.short2bytes((short) 0xdabb));
+        buffer.writeByte((byte) 0xc2);
+        buffer.writeByte((byte) 0);
+        buffer.writeBytes(Bytes.long2bytes(1L));
+        buffer.writeBytes(Bytes.int2bytes(len));
+        return buffer;
+    }
+
+}
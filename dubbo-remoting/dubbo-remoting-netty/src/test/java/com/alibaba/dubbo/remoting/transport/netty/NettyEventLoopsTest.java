@@ -0,0 +1,99 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.netty;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.status.Status;
+import com.alibaba.dubbo.remoting.exchange.ExchangeChannel;
+import com.alibaba.dubbo.remoting.exchange.ExchangeServer;
+import com.alibaba.dubbo.remoting.exchange.Exchangers;
+
+public class NettyEventLoopsTest {
+
+    @Test
+    public void testIsShared() {
+        Assert.assertTrue(NettyEventLoops.isShared(URL.valueOf("dubbo://localhost:20880")));
+        Assert.assertFalse(NettyEventLoops.isShared(URL.valueOf("dubbo://localhost:20880?iothreads=2")));
+        Assert.assertFalse(NettyEventLoops.isShared(URL.valueOf("dubbo://localhost:20880?io.shared=false")));
+    }
+
+    @Test
+    public void testIdleWorkerThreadNotReported() throws Exception {
+        Executor executor = NettyEventLoops.newWorkerExecutor("EventLoopTest");
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch exit = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            public void run() {
+                running.countDown();
+                try {
+                    exit.await();
+                } catch (InterruptedException e) {
+                }
+            }
+        });
+        Assert.assertTrue(running.await(1, TimeUnit.SECONDS));
+        Assert.assertEquals(1, countLoops("EventLoopTest"));
+        exit.countDown();
+        // 线程仍留在线程池中，但已不再运行 NioWorker
+        for (int i = 0; i < 100 && countLoops("EventLoopTest") > 0; i ++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(0, countLoops("EventLoopTest"));
+    }
+
+    private static int countLoops(String prefix) {
+        int count = 0;
+        for (NettyEventLoops.EventLoop loop : NettyEventLoops.getLoops()) {
+            if (loop.getName().startsWith(prefix)) {
+                count ++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testSharedByServers() throws Exception {
+        int port = (int) (1000 * Math.random() + 10000);
+        ExchangeServer first = Exchangers.bind(URL.valueOf("exchange://localhost:" + port + "?server=netty"), new WorldHandler());
+        ExchangeServer second = Exchangers.bind(URL.valueOf("exchange://localhost:" + (port + 1) + "?server=netty"), new WorldHandler());
+        ExchangeChannel client = Exchangers.connect(URL.valueOf("exchange://localhost:" + (port + 1) + "?client=netty"));
+        try {
+            Hello result = (Hello) client.request(new World("world")).get();
+            Assert.assertEquals("hello,world", result.getName());
+            // 关闭一个端口不影响共享 IO 线程上的其它端口
+            first.close();
+            result = (Hello) client.request(new World("again")).get();
+            Assert.assertEquals("hello,again", result.getName());
+
+            Assert.assertFalse(NettyEventLoops.getLoops().isEmpty());
+            Status status = new NettyEventLoopStatusChecker().check();
+            Assert.assertNotSame(Status.Level.UNKNOWN, status.getLevel());
+            Assert.assertTrue(status.getMessage(), status.getMessage().startsWith("iothreads:" + NettyEventLoops.IO_THREADS));
+        } finally {
+            client.close();
+            first.close();
+            second.close();
+        }
+    }
+
+}
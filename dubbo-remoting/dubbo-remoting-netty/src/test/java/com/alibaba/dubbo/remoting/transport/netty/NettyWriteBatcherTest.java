@@ -0,0 +1,156 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.netty;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelDownstreamHandler;
+import org.jboss.netty.handler.codec.embedder.EncoderEmbedder;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+
+public class NettyWriteBatcherTest {
+
+    @Test
+    public void testCreate() {
+        Assert.assertNull(NettyWriteBatcher.create(URL.valueOf("dubbo://localhost:20880")));
+        Assert.assertNotNull(NettyWriteBatcher.create(URL.valueOf("dubbo://localhost:20880?" + Constants.WRITE_BATCH_KEY + "=true")));
+    }
+
+    @Test
+    public void testWriteDirectlyWithoutContention() {
+        EncoderEmbedder<ChannelBuffer> embedder = new EncoderEmbedder<ChannelBuffer>(new CompletingHandler(), new NettyWriteBatcher(1024));
+        embedder.offer(buffer(1, 10));
+        embedder.offer(buffer(2, 10));
+        Assert.assertEquals(10, embedder.poll().readableBytes());
+        Assert.assertEquals(10, embedder.poll().readableBytes());
+        Assert.assertNull(embedder.poll());
+    }
+
+    @Test
+    public void testMergeWhileWriting() throws Exception {
+        BlockingHandler blocker = new BlockingHandler();
+        final EncoderEmbedder<ChannelBuffer> embedder = new EncoderEmbedder<ChannelBuffer>(new CompletingHandler(), blocker, new NettyWriteBatcher(25));
+        Thread writer = new Thread(new Runnable() {
+            public void run() {
+                embedder.offer(buffer(1, 10));
+            }
+        });
+        writer.start();
+        blocker.entered.await();
+        // 第一条消息写出期间入队的消息，由写出线程合并后写出，不超过批量大小
+        embedder.offer(buffer(2, 10));
+        embedder.offer(buffer(3, 10));
+        embedder.offer(buffer(4, 10));
+        blocker.release.countDown();
+        writer.join();
+
+        ChannelBuffer first = embedder.poll();
+        Assert.assertEquals(10, first.readableBytes());
+        Assert.assertEquals(1, first.getByte(0));
+        ChannelBuffer merged = embedder.poll();
+        Assert.assertEquals(20, merged.readableBytes());
+        Assert.assertEquals(2, merged.getByte(0));
+        Assert.assertEquals(3, merged.getByte(10));
+        ChannelBuffer last = embedder.poll();
+        Assert.assertEquals(10, last.readableBytes());
+        Assert.assertEquals(4, last.getByte(0));
+        Assert.assertNull(embedder.poll());
+    }
+
+    @Test
+    public void testHoldUntilWriteCompletes() {
+        RecordingHandler recorder = new RecordingHandler();
+        EncoderEmbedder<ChannelBuffer> embedder = new EncoderEmbedder<ChannelBuffer>(recorder, new NettyWriteBatcher(1024));
+        embedder.offer(buffer(1, 10));
+        embedder.offer(buffer(2, 10));
+        embedder.offer(buffer(3, 10));
+        // 第一条消息还没写完，同一线程后续写出的消息也留在队列中
+        Assert.assertEquals(10, embedder.poll().readableBytes());
+        Assert.assertNull(embedder.poll());
+        Assert.assertEquals(1, recorder.events.size());
+
+        recorder.events.get(0).getFuture().setSuccess();
+        ChannelBuffer merged = embedder.poll();
+        Assert.assertEquals(20, merged.readableBytes());
+        Assert.assertEquals(2, merged.getByte(0));
+        Assert.assertEquals(3, merged.getByte(10));
+        Assert.assertNull(embedder.poll());
+
+        // 合并的批次写完之前，新消息同样留在队列中
+        embedder.offer(buffer(4, 10));
+        Assert.assertNull(embedder.poll());
+        recorder.events.get(1).getFuture().setSuccess();
+        Assert.assertEquals(4, embedder.poll().getByte(0));
+    }
+
+    private static ChannelBuffer buffer(int value, int length) {
+        ChannelBuffer buffer = ChannelBuffers.buffer(length);
+        for (int i = 0; i < length; i ++) {
+            buffer.writeByte(value);
+        }
+        return buffer;
+    }
+
+    /**
+     * 模拟 I/O 线程写完，EncoderEmbedder 本身不会完成写出的 future
+     */
+    private static class CompletingHandler extends SimpleChannelDownstreamHandler {
+
+        @Override
+        public void writeRequested(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+            ctx.sendDownstream(e);
+            e.getFuture().setSuccess();
+        }
+    }
+
+    private static class RecordingHandler extends SimpleChannelDownstreamHandler {
+
+        final List<MessageEvent> events = new CopyOnWriteArrayList<MessageEvent>();
+
+        @Override
+        public void writeRequested(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+            events.add(e);
+            ctx.sendDownstream(e);
+        }
+    }
+
+    private static class BlockingHandler extends SimpleChannelDownstreamHandler {
+
+        final CountDownLatch entered = new CountDownLatch(1);
+
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void writeRequested(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+            if (entered.getCount() > 0) {
+                entered.countDown();
+                release.await();
+            }
+            ctx.sendDownstream(e);
+        }
+    }
+
+}
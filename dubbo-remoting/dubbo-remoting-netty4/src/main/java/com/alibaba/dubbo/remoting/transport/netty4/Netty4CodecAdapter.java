@@ -0,0 +1,110 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.netty4;
+
+import java.io.IOException;
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.MessageToByteEncoder;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.Codec2;
+import com.alibaba.dubbo.remoting.buffer.ChannelBuffer;
+
+/**
+ * Netty4CodecAdapter，编解码直接在 netty 的池化缓冲区上进行。
+ * <p>
+ * 半包由 ByteToMessageDecoder 累积，编码时 MessageToByteEncoder 从 channel 的分配器申请缓冲区，写出后由 netty 释放。
+ */
+final class Netty4CodecAdapter {
+
+    private final ChannelHandler encoder = new InternalEncoder();
+
+    private final ChannelHandler decoder = new InternalDecoder();
+
+    private final Codec2         codec;
+
+    private final URL            url;
+
+    private final com.alibaba.dubbo.remoting.ChannelHandler handler;
+
+    public Netty4CodecAdapter(Codec2 codec, URL url, com.alibaba.dubbo.remoting.ChannelHandler handler) {
+        this.codec = codec;
+        this.url = url;
+        this.handler = handler;
+    }
+
+    public ChannelHandler getEncoder() {
+        return encoder;
+    }
+
+    public ChannelHandler getDecoder() {
+        return decoder;
+    }
+
+    private class InternalEncoder extends MessageToByteEncoder<Object> {
+
+        @Override
+        protected void encode(ChannelHandlerContext ctx, Object msg, ByteBuf out) throws Exception {
+            Netty4Channel channel = Netty4Channel.getOrAddChannel(ctx.channel(), url, handler);
+            try {
+                codec.encode(channel, new Netty4BackedChannelBuffer(out), msg);
+            } finally {
+                Netty4Channel.removeChannelIfDisconnected(ctx.channel());
+            }
+        }
+    }
+
+    private class InternalDecoder extends ByteToMessageDecoder {
+
+        @Override
+        protected void decode(ChannelHandlerContext ctx, ByteBuf input, List<Object> out) throws Exception {
+            ChannelBuffer message = new Netty4BackedChannelBuffer(input);
+            Netty4Channel channel = Netty4Channel.getOrAddChannel(ctx.channel(), url, handler);
+            try {
+                do {
+                    int saveReaderIndex = message.readerIndex();
+                    Object msg;
+                    try {
+                        msg = codec.decode(channel, message);
+                    } catch (IOException e) {
+                        // 与 NettyCodecAdapter 一致，解码失败时丢弃已累积的数据
+                        input.skipBytes(input.readableBytes());
+                        throw e;
+                    }
+                    if (msg == Codec2.DecodeResult.NEED_MORE_INPUT) {
+                        message.readerIndex(saveReaderIndex);
+                        break;
+                    }
+                    if (saveReaderIndex == message.readerIndex()) {
+                        input.skipBytes(input.readableBytes());
+                        throw new IOException("Decode without read data.");
+                    }
+                    if (msg != null) {
+                        out.add(msg);
+                    }
+                } while (message.readable());
+            } finally {
+                Netty4Channel.removeChannelIfDisconnected(ctx.channel());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.netty4;
+
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.utils.ConfigUtils;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+
+/**
+ * netty4 的 IO 线程。Linux 上有 native 库时使用边缘触发的 epoll，否则使用 NIO，可用 dubbo.io.epoll=false 关闭 epoll。
+ * <p>
+ * 所有 Netty4Server 和 Netty4Client 共用一组 worker 线程，数量由 dubbo.io.threads 配置，默认等于 CPU 核数；
+ * 配置了 iothreads 或 io.shared=false 的 server 使用自己的 worker 线程。共享的线程组不关闭。
+ */
+final class Netty4EventLoops {
+
+    static final boolean EPOLL      = ! "false".equals(ConfigUtils.getProperty(Constants.NATIVE_EPOLL_KEY)) && Epoll.isAvailable();
+
+    static final int     IO_THREADS = getIoThreads();
+
+    private Netty4EventLoops() {
+    }
+
+    private static int getIoThreads() {
+        try {
+            int threads = Integer.parseInt(ConfigUtils.getProperty(Constants.SHARED_IO_THREADS_KEY, "0").trim());
+            if (threads > 0) {
+                return threads;
+            }
+        } catch (NumberFormatException e) {
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    static boolean isShared(URL url) {
+        return url.getParameter(Constants.IO_SHARED_KEY, true) && ! url.hasParameter(Constants.IO_THREADS_KEY);
+    }
+
+    static EventLoopGroup getWorkerGroup() {
+        return WorkerGroupHolder.GROUP;
+    }
+
+    static EventLoopGroup newGroup(int threads, String name) {
+        NamedThreadFactory threadFactory = new NamedThreadFactory(name, true);
+        return EPOLL ? new EpollEventLoopGroup(threads, threadFactory) : new NioEventLoopGroup(threads, threadFactory);
+    }
+
+    static Class<? extends ServerChannel> serverChannelClass() {
+        return EPOLL ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    static Class<? extends Channel> channelClass() {
+        return EPOLL ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
+    private static class WorkerGroupHolder {
+
+        static final EventLoopGroup GROUP = newGroup(IO_THREADS, "Netty4IOWorker");
+    }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.netty4;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.EpollChannelOption;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.ExecutorUtil;
+import com.alibaba.dubbo.common.utils.NetUtils;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.Server;
+import com.alibaba.dubbo.remoting.transport.AbstractServer;
+import com.alibaba.dubbo.remoting.transport.dispatcher.ChannelHandlers;
+
+/**
+ * Netty4Server
+ * <p>
+ * 使用 epoll 时可配置 acceptors，以 SO_REUSEPORT 在同一端口上绑定多个监听 channel，由内核在各 acceptor 之间分配新连接。
+ */
+public class Netty4Server extends AbstractServer implements Server {
+
+    private static final Logger logger = LoggerFactory.getLogger(Netty4Server.class);
+
+    private Map<String, Channel>  channels; // <ip:port, channel>
+
+    private final List<io.netty.channel.Channel> serverChannels = new ArrayList<io.netty.channel.Channel>();
+
+    private EventLoopGroup                       bossGroup;
+
+    private EventLoopGroup                       workerGroup;
+
+    private boolean                              shared;
+
+    public Netty4Server(URL url, ChannelHandler handler) throws RemotingException{
+        super(url, ChannelHandlers.wrap(handler, ExecutorUtil.setThreadName(url, SERVER_THREAD_POOL_NAME)));
+    }
+
+    @Override
+    protected void doOpen() throws Throwable {
+        int acceptors = Netty4EventLoops.EPOLL ? getUrl().getPositiveParameter(Constants.ACCEPTORS_KEY, 1) : 1;
+        bossGroup = Netty4EventLoops.newGroup(acceptors, "Netty4ServerBoss");
+        shared = Netty4EventLoops.isShared(getUrl());
+        workerGroup = shared ? Netty4EventLoops.getWorkerGroup()
+                : Netty4EventLoops.newGroup(getUrl().getPositiveParameter(Constants.IO_THREADS_KEY, Constants.DEFAULT_IO_THREADS), "Netty4ServerWorker");
+
+        final Netty4Handler nettyHandler = new Netty4Handler(getUrl(), this);
+        channels = nettyHandler.getChannels();
+        ServerBootstrap bootstrap = new ServerBootstrap()
+                .group(bossGroup, workerGroup)
+                .channel(Netty4EventLoops.serverChannelClass())
+                .option(ChannelOption.SO_REUSEADDR, Boolean.TRUE)
+                .childOption(ChannelOption.TCP_NODELAY, Boolean.TRUE)
+                .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                .childHandler(new ChannelInitializer<io.netty.channel.Channel>() {
+                    @Override
+                    protected void initChannel(io.netty.channel.Channel ch) throws Exception {
+                        Netty4CodecAdapter adapter = new Netty4CodecAdapter(getCodec(), getUrl(), Netty4Server.this);
+                        ch.pipeline()
+                                .addLast("decoder", adapter.getDecoder())
+                                .addLast("encoder", adapter.getEncoder())
+                                .addLast("handler", nettyHandler);
+                    }
+                });
+        if (acceptors > 1) {
+            bootstrap.option(EpollChannelOption.SO_REUSEPORT, Boolean.TRUE);
+        }
+        // 每次 bind 创建一个监听 channel，依次注册到 boss 线程组的各个线程上
+        try {
+            for (int i = 0; i < acceptors; i ++) {
+                serverChannels.add(bootstrap.bind(getBindAddress()).syncUninterruptibly().channel());
+            }
+        } catch (Throwable t) {
+            // 绑定失败时释放已创建的监听 channel 和线程
+            doClose();
+            throw t;
+        }
+    }
+
+    @Override
+    protected void doClose() throws Throwable {
+        try {
+            for (io.netty.channel.Channel channel : serverChannels) {
+                // unbind.
+                channel.close();
+            }
+        } catch (Throwable e) {
+            logger.warn(e.getMessage(), e);
+        }
+        try {
+            Collection<com.alibaba.dubbo.remoting.Channel> channels = getChannels();
+            if (channels != null && channels.size() > 0) {
+                for (com.alibaba.dubbo.remoting.Channel channel : channels) {
+                    try {
+                        channel.close();
+                    } catch (Throwable e) {
+                        logger.warn(e.getMessage(), e);
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            logger.warn(e.getMessage(), e);
+        }
+        try {
+            if (bossGroup != null) {
+                bossGroup.shutdownGracefully();
+            }
+            // 共享的 IO 线程不关闭
+            if (workerGroup != null && ! shared) {
+                workerGroup.shutdownGracefully();
+            }
+        } catch (Throwable e) {
+            logger.warn(e.getMessage(), e);
+        }
+        try {
+            if (channels != null) {
+                channels.clear();
+            }
+        } catch (Throwable e) {
+            logger.warn(e.getMessage(), e);
+        }
+    }
+
+    public Collection<Channel> getChannels() {
+        Collection<Channel> chs = new HashSet<Channel>();
+        for (Channel channel : this.channels.values()) {
+            if (channel.isConnected()) {
+                chs.add(channel);
+            } else {
+                channels.remove(NetUtils.toAddressString(channel.getRemoteAddress()));
+            }
+        }
+        return chs;
+    }
+
+    public Channel getChannel(InetSocketAddress remoteAddress) {
+        return channels.get(NetUtils.toAddressString(remoteAddress));
+    }
+
+    public boolean isBound() {
+        for (io.netty.channel.Channel channel : serverChannels) {
+            if (channel.isActive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.netty4;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.exchange.ExchangeChannel;
+import com.alibaba.dubbo.remoting.exchange.ExchangeServer;
+import com.alibaba.dubbo.remoting.exchange.Exchangers;
+
+/**
+ * 多个 acceptor 以 SO_REUSEPORT 绑定同一端口，仅在 native epoll 可用时运行
+ */
+public class Netty4ReusePortTest {
+
+    @Test
+    public void testMultipleAcceptors() throws Exception {
+        if (! Netty4EventLoops.EPOLL) {
+            return;
+        }
+        int port = (int) (1000 * Math.random() + 10000);
+        ExchangeServer server = Exchangers.bind(URL.valueOf("exchange://localhost:" + port + "?server=netty4&acceptors=2"), new WorldHandler());
+        ExchangeChannel first = Exchangers.connect(URL.valueOf("exchange://localhost:" + port + "?client=netty4"));
+        ExchangeChannel second = Exchangers.connect(URL.valueOf("exchange://localhost:" + port + "?client=netty4"));
+        try {
+            Assert.assertTrue(server.isBound());
+            Assert.assertEquals("hello,first", ((Hello) first.request(new World("first")).get()).getName());
+            Assert.assertEquals("hello,second", ((Hello) second.request(new World("second")).get()).getName());
+        } finally {
+            first.close();
+            second.close();
+            server.close();
+        }
+    }
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc;
+
+/**
+ * 异步调用结果的回调。
+ * 
+ * @see ResultFuture
+ */
+public interface ResultCallback {
+
+    /**
+     * 收到调用结果，业务异常也包含在结果中。
+     * 
+     * @param result
+     */
+    void done(Result result);
+
+    /**
+     * 调用失败，如超时、网络异常、被取消等。
+     * 
+     * @param exception
+     */
+    void caught(Throwable exception);
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc;
+
+import java.util.concurrent.Future;
+
+/**
+ * 支持回调的异步调用 Future，异步调用时由协议放入 {@link RpcContext#getFuture()}。
+ * 
+ * @see ResultCallback
+ */
+public interface ResultFuture<V> extends Future<V> {
+
+    /**
+     * 设置回调，已经完成时在当前线程立即回调。多次设置时各回调按设置顺序依次调用。
+     * 
+     * @param callback
+     */
+    void setCallback(ResultCallback callback);
+
+}
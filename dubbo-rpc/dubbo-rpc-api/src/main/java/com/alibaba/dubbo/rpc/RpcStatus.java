@@ -28,6 +28,7 @@ import com.alibaba.dubbo.common.URL;
  * @see com.alibaba.dubbo.rpc.filter.ActiveLimitFilter
  * @see com.alibaba.dubbo.rpc.filter.ExecuteLimitFilter
  * @see com.alibaba.dubbo.rpc.cluster.loadbalance.LeastActiveLoadBalance
+ * @see com.alibaba.dubbo.rpc.cluster.loadbalance.PeakEwmaLoadBalance
  * @author william.liangf
  */
 public class RpcStatus {
@@ -118,6 +119,7 @@ public class RpcStatus {
     }
     
     private static void endCount(RpcStatus status, long elapsed, boolean succeeded) {
+        status.updateEwmaElapsed(elapsed, System.currentTimeMillis());
         status.active.decrementAndGet();
         status.total.incrementAndGet();
         status.totalElapsed.addAndGet(elapsed);
@@ -154,6 +156,15 @@ public class RpcStatus {
     private final AtomicLong failedMaxElapsed = new AtomicLong();
 
     private final AtomicLong succeededMaxElapsed = new AtomicLong();
+
+    // 响应时间的指数衰减移动平均（peak-EWMA）的衰减时间常数，毫秒
+    private static final double EWMA_DECAY_TIME = 10 * 1000d;
+
+    // guarded by this
+    private double ewmaElapsed;
+
+    // guarded by this
+    private long ewmaTimestamp;
     
     private RpcStatus() {}
 
@@ -306,6 +317,34 @@ public class RpcStatus {
         return succeededMaxElapsed.get();
     }
 
+    /**
+     * get peak-EWMA elapsed: 响应时间超过当前均值时立即取峰值，否则按距上次更新的时间指数衰减地并入，
+     * 没有新的调用时随时间向 0 衰减，使慢过的提供者之后还能重新被选中。
+     * 
+     * @return ewma elapsed in milliseconds.
+     * @see com.alibaba.dubbo.rpc.cluster.loadbalance.PeakEwmaLoadBalance
+     */
+    public double getEwmaElapsed() {
+        return getEwmaElapsed(System.currentTimeMillis());
+    }
+
+    synchronized double getEwmaElapsed(long now) {
+        if (ewmaElapsed == 0d) {
+            return 0d;
+        }
+        return ewmaElapsed * Math.exp(- Math.max(now - ewmaTimestamp, 0L) / EWMA_DECAY_TIME);
+    }
+
+    synchronized void updateEwmaElapsed(long elapsed, long now) {
+        if (elapsed > ewmaElapsed) {
+            ewmaElapsed = elapsed;
+        } else {
+            double w = Math.exp(- Math.max(now - ewmaTimestamp, 0L) / EWMA_DECAY_TIME);
+            ewmaElapsed = ewmaElapsed * w + elapsed * (1d - w);
+        }
+        ewmaTimestamp = now;
+    }
+
     /**
      * Calculate average TPS (Transaction per second).
      *
@@ -24,43 +24,43 @@ import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.Result;
 import com.alibaba.dubbo.rpc.RpcException;
 import com.alibaba.dubbo.rpc.RpcStatus;
+import com.alibaba.dubbo.rpc.filter.active.ActiveLimiter;
 
 /**
  * LimitInvokerFilter
+ * <p>
+ * 超过 actives 时按 FIFO 排队等待许可，最多等待调用超时时间；配置 actives.failfast=true 时不等待，直接失败。
  * 
  * @author william.liangf
  */
 @Activate(group = Constants.CONSUMER, value = Constants.ACTIVES_KEY)
 public class ActiveLimitFilter implements Filter {
 
+    private static final String LIMITER_KEY = "actives.limiter";
+
     public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
         URL url = invoker.getUrl();
         String methodName = invocation.getMethodName();
         int max = invoker.getUrl().getMethodParameter(methodName, Constants.ACTIVES_KEY, 0);
-        RpcStatus count = RpcStatus.getStatus(invoker.getUrl(), invocation.getMethodName());
+        ActiveLimiter limiter = null;
         if (max > 0) {
-            long timeout = invoker.getUrl().getMethodParameter(invocation.getMethodName(), Constants.TIMEOUT_KEY, 0);
+            limiter = getLimiter(RpcStatus.getStatus(url, methodName), max);
+            long timeout = 0;
             long start = System.currentTimeMillis();
-            long remain = timeout;
-            int active = count.getActive();
-            if (active >= max) {
-                synchronized (count) {
-                    while ((active = count.getActive()) >= max) {
-                        try {
-                            count.wait(remain);
-                        } catch (InterruptedException e) {
-                        }
-                        long elapsed = System.currentTimeMillis() - start;
-                        remain = timeout - elapsed;
-                        if (remain <= 0) {
-                            throw new RpcException("Waiting concurrent invoke timeout in client-side for service:  "
-                                                   + invoker.getInterface().getName() + ", method: "
-                                                   + invocation.getMethodName() + ", elapsed: " + elapsed
-                                                   + ", timeout: " + timeout + ". concurrent invokes: " + active
-                                                   + ". max concurrent invoke limit: " + max);
-                        }
-                    }
-                }
+            boolean acquired;
+            if (url.getMethodParameter(methodName, Constants.ACTIVES_FAIL_FAST_KEY, false)) {
+                acquired = limiter.tryAcquire();
+            } else {
+                timeout = url.getMethodParameter(methodName, Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT);
+                acquired = limiter.tryAcquire(timeout);
+            }
+            if (! acquired) {
+                long elapsed = System.currentTimeMillis() - start;
+                throw new RpcException("Waiting concurrent invoke timeout in client-side for service:  "
+                                       + invoker.getInterface().getName() + ", method: "
+                                       + invocation.getMethodName() + ", elapsed: " + elapsed
+                                       + ", timeout: " + timeout + ". concurrent invokes: " + (max - limiter.getAvailablePermits())
+                                       + ". max concurrent invoke limit: " + max);
             }
         }
         try {
@@ -75,12 +75,25 @@ public class ActiveLimitFilter implements Filter {
                 throw t;
             }
         } finally {
-            if(max>0){
-                synchronized (count) {
-                    count.notify();
-                } 
+            if (limiter != null) {
+                limiter.release();
+            }
+        }
+    }
+
+    private static ActiveLimiter getLimiter(RpcStatus status, int max) {
+        Object limiter = status.get(LIMITER_KEY);
+        if (! (limiter instanceof ActiveLimiter) || ((ActiveLimiter) limiter).getMax() != max) {
+            synchronized (status) {
+                limiter = status.get(LIMITER_KEY);
+                // actives 被动态修改时换新的许可，已拿到旧许可的调用仍然还给旧的
+                if (! (limiter instanceof ActiveLimiter) || ((ActiveLimiter) limiter).getMax() != max) {
+                    limiter = new ActiveLimiter(max);
+                    status.set(LIMITER_KEY, limiter);
+                }
             }
         }
+        return (ActiveLimiter) limiter;
     }
 
-}
\ No newline at end of file
+}
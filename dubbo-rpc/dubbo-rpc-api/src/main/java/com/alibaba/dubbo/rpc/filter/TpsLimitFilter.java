@@ -17,28 +17,42 @@
 package com.alibaba.dubbo.rpc.filter;
 
 import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.extension.Activate;
 import com.alibaba.dubbo.rpc.Filter;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.Result;
 import com.alibaba.dubbo.rpc.RpcException;
-import com.alibaba.dubbo.rpc.filter.tps.DefaultTPSLimiter;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.filter.tps.SlidingWindowTPSLimiter;
 import com.alibaba.dubbo.rpc.filter.tps.TPSLimiter;
 
 /**
  * 限制 service 或方法的 tps.
+ * <p>
+ * 提供端按 tps.keys 配置的维度限流；消费端只在需要按消费方应用限流时把应用名放入隐式参数。
  *
  * @author <a href="mailto:gang.lvg@alibaba-inc.com">kimi</a>
  */
-@Activate(group = Constants.PROVIDER, value = Constants.TPS_LIMIT_RATE_KEY)
+@Activate(group = {Constants.PROVIDER, Constants.CONSUMER}, value = Constants.TPS_LIMIT_RATE_KEY)
 public class TpsLimitFilter implements Filter {
 
-    private final TPSLimiter tpsLimiter = new DefaultTPSLimiter();
+    private final TPSLimiter tpsLimiter = new SlidingWindowTPSLimiter();
 
     public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
+        URL url = invoker.getUrl();
+        if (Constants.CONSUMER_SIDE.equals(url.getParameter(Constants.SIDE_KEY))) {
+            String keys = url.getMethodParameter(invocation.getMethodName(), Constants.TPS_LIMIT_KEYS_KEY, "");
+            String application = url.getParameter(Constants.APPLICATION_KEY);
+            if (keys.contains(Constants.TPS_LIMIT_KEY_APPLICATION) && application != null
+                    && invocation instanceof RpcInvocation) {
+                ((RpcInvocation) invocation).setAttachment(Constants.APPLICATION_KEY, application);
+            }
+            return invoker.invoke(invocation);
+        }
 
-        if (!tpsLimiter.isAllowable(invoker.getUrl(), invocation)) {
+        if (!tpsLimiter.isAllowable(url, invocation)) {
             throw new RpcException(
                     new StringBuilder(64)
                             .append("Failed to invoke service ")
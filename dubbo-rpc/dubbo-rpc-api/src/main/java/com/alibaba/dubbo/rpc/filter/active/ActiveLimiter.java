@@ -0,0 +1,169 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter.active;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 并发调用许可：CAS 计数器加 FIFO 等待队列。
+ * <p>
+ * 释放许可时直接交给队首的等待者并只唤醒它一个，而不是唤醒所有等待者重新争抢；
+ * 队列中有等待者时新来的调用不插队。等待超时的调用自行出队。
+ */
+public class ActiveLimiter {
+
+    private final int                             max;
+
+    private final AtomicInteger                   permits;
+
+    private final ConcurrentLinkedQueue<Waiter>   waiters = new ConcurrentLinkedQueue<Waiter>();
+
+    public ActiveLimiter(int max) {
+        this.max = max;
+        this.permits = new AtomicInteger(max);
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    public int getAvailablePermits() {
+        return permits.get();
+    }
+
+    public int getWaitingCount() {
+        return waiters.size();
+    }
+
+    /**
+     * 不等待，立即返回是否拿到许可。
+     */
+    public boolean tryAcquire() {
+        if (! waiters.isEmpty()) {
+            return false;
+        }
+        return decrement();
+    }
+
+    /**
+     * 拿不到许可时按 FIFO 排队等待，最多等待 timeout 毫秒。
+     */
+    public boolean tryAcquire(long timeout) {
+        if (tryAcquire()) {
+            return true;
+        }
+        if (timeout <= 0) {
+            return false;
+        }
+        Waiter waiter = new Waiter(Thread.currentThread());
+        waiters.offer(waiter);
+        // 入队前释放的许可可能已经还回计数器，这里补一次分配，避免丢失唤醒
+        dispatch();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        boolean interrupted = false;
+        try {
+            while (waiter.state == Waiter.WAITING) {
+                long remain = deadline - System.nanoTime();
+                if (remain <= 0) {
+                    if (waiter.cancel()) {
+                        waiters.remove(waiter);
+                        return false;
+                    }
+                    // 取消前许可已交给自己
+                    break;
+                }
+                LockSupport.parkNanos(this, remain);
+                if (Thread.interrupted()) {
+                    // 与原来的 wait 一样忽略中断继续等待，返回前恢复中断标志
+                    interrupted = true;
+                }
+            }
+            return true;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public void release() {
+        permits.incrementAndGet();
+        dispatch();
+    }
+
+    private boolean decrement() {
+        for (;;) {
+            int available = permits.get();
+            if (available <= 0) {
+                return false;
+            }
+            if (permits.compareAndSet(available, available - 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 有空闲许可且有等待者时，取出许可交给队首的等待者。释放者和新入队的等待者都会执行，保证不会两边都看不到对方。
+     */
+    private void dispatch() {
+        while (! waiters.isEmpty() && decrement()) {
+            Waiter waiter;
+            while ((waiter = waiters.poll()) != null) {
+                if (waiter.grant()) {
+                    LockSupport.unpark(waiter.thread);
+                    break;
+                }
+            }
+            if (waiter == null) {
+                // 等待者都已超时取消，许可还回计数器
+                permits.incrementAndGet();
+            }
+        }
+    }
+
+    private static final class Waiter {
+
+        static final int WAITING   = 0;
+
+        static final int GRANTED   = 1;
+
+        static final int CANCELLED = 2;
+
+        private static final AtomicIntegerFieldUpdater<Waiter> STATE_UPDATER = AtomicIntegerFieldUpdater.newUpdater(Waiter.class, "state");
+
+        final Thread thread;
+
+        volatile int state = WAITING;
+
+        Waiter(Thread thread) {
+            this.thread = thread;
+        }
+
+        boolean grant() {
+            return STATE_UPDATER.compareAndSet(this, WAITING, GRANTED);
+        }
+
+        boolean cancel() {
+            return STATE_UPDATER.compareAndSet(this, WAITING, CANCELLED);
+        }
+    }
+
+}
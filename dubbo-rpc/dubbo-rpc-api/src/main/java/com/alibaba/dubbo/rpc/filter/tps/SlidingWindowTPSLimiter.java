@@ -0,0 +1,237 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter.tps;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.RpcContext;
+
+/**
+ * 滑动窗口限流：以 tps.interval 为窗口，估算最近一个窗口内的调用数 = 上个窗口调用数 * 上个窗口仍在范围内的比例 + 当前窗口调用数，
+ * 不会像固定窗口那样在窗口交界处放过 2 倍的请求。当前窗口用分段计数器累加，窗口切换用 CAS 替换，不加锁。
+ * <p>
+ * 限流维度由 tps.keys 配置，缺省整个服务共用一个限额：
+ * <ul>
+ * <li>method: 每个方法各自一个限额；方法上单独配置了 tps 时总是单独计数</li>
+ * <li>application: 每个消费方应用各自一个限额，消费方应用由消费端的 TpsLimitFilter 放在隐式参数中传递，没有时按消费方地址区分。
+ * 隐式参数由消费方提供，限流信任它：不可信的消费方可以轮换应用名绕过限额，需要防范时不要按 application 限流</li>
+ * </ul>
+ * 超过两个窗口没有调用的窗口计数已全部滑出，窗口数较多时会被定期清理，按应用限流时窗口数不会无限增长。
+ */
+public class SlidingWindowTPSLimiter implements TPSLimiter {
+
+    // 窗口数超过此值时才清理空闲窗口
+    static final int                 SWEEP_THRESHOLD     = 1024;
+
+    private static final long        SWEEP_INTERVAL      = 1000;
+
+    // 每个服务缓存的方法配置数上限，消费方可以传入任意方法名
+    private static final int         MAX_CACHED_METHODS  = 1024;
+
+    private final ConcurrentMap<String, SlidingWindow> windows = new ConcurrentHashMap<String, SlidingWindow>();
+
+    // serviceKey -> 方法名 -> 解析好的限流配置
+    private final ConcurrentMap<String, ConcurrentMap<String, Limit>> limits = new ConcurrentHashMap<String, ConcurrentMap<String, Limit>>();
+
+    private final AtomicLong         lastSweep           = new AtomicLong();
+
+    public boolean isAllowable(URL url, Invocation invocation) {
+        Limit limit = getLimit(url, invocation.getMethodName());
+        if (limit.rate <= 0) {
+            return true;
+        }
+        String key = limit.perApplication ? limit.key + '@' + getApplication(invocation) : limit.key;
+        long now = System.currentTimeMillis();
+        return getWindow(key, limit, now).isAllowable(now);
+    }
+
+    private SlidingWindow getWindow(String key, Limit limit, long now) {
+        for (;;) {
+            SlidingWindow window = windows.get(key);
+            if (window == null) {
+                SlidingWindow created = new SlidingWindow(limit.rate, limit.interval, now);
+                if (windows.putIfAbsent(key, created) == null) {
+                    sweepIfNecessary(now);
+                    return created;
+                }
+            } else if (window.rate == limit.rate && window.interval == limit.interval) {
+                return window;
+            } else {
+                // 限额被动态修改时重新计数
+                SlidingWindow created = new SlidingWindow(limit.rate, limit.interval, now);
+                if (windows.replace(key, window, created)) {
+                    return created;
+                }
+            }
+        }
+    }
+
+    private Limit getLimit(URL url, String methodName) {
+        String serviceKey = url.getServiceKey();
+        ConcurrentMap<String, Limit> methods = limits.get(serviceKey);
+        if (methods == null) {
+            limits.putIfAbsent(serviceKey, new ConcurrentHashMap<String, Limit>());
+            methods = limits.get(serviceKey);
+        }
+        Limit limit = methods.get(methodName);
+        // URL 被动态配置替换后重新解析
+        if (limit == null || limit.url != url) {
+            limit = new Limit(url, methodName);
+            if (methods.size() < MAX_CACHED_METHODS || methods.containsKey(methodName)) {
+                methods.put(methodName, limit);
+            }
+        }
+        return limit;
+    }
+
+    private static String getApplication(Invocation invocation) {
+        String application = invocation.getAttachment(Constants.APPLICATION_KEY);
+        if (application == null || application.length() == 0) {
+            application = RpcContext.getContext().getRemoteHost();
+        }
+        return application;
+    }
+
+    private void sweepIfNecessary(long now) {
+        if (windows.size() <= SWEEP_THRESHOLD) {
+            return;
+        }
+        long last = lastSweep.get();
+        if (now - last >= SWEEP_INTERVAL && lastSweep.compareAndSet(last, now)) {
+            sweep(now);
+        }
+    }
+
+    /**
+     * 移除空闲窗口，并发取到被移除窗口的调用最多漏计一次
+     */
+    void sweep(long now) {
+        for (Map.Entry<String, SlidingWindow> entry : windows.entrySet()) {
+            if (entry.getValue().isIdle(now)) {
+                windows.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    int size() {
+        return windows.size();
+    }
+
+    /**
+     * 一个服务方法的限流配置，按 URL 和方法名解析一次
+     */
+    private static final class Limit {
+
+        final URL     url;
+
+        final int     rate;
+
+        final long    interval;
+
+        final boolean perApplication;
+
+        // 不含消费方应用的窗口 key
+        final String  key;
+
+        Limit(URL url, String methodName) {
+            this.url = url;
+            this.rate = url.getMethodParameter(methodName, Constants.TPS_LIMIT_RATE_KEY, -1);
+            this.interval = url.getMethodParameter(methodName, Constants.TPS_LIMIT_INTERVAL_KEY,
+                                                   Constants.DEFAULT_TPS_LIMIT_INTERVAL);
+            String keys = url.getMethodParameter(methodName, Constants.TPS_LIMIT_KEYS_KEY, "");
+            boolean perMethod = keys.contains(Constants.TPS_LIMIT_KEY_METHOD)
+                || url.hasParameter(methodName + "." + Constants.TPS_LIMIT_RATE_KEY);
+            this.perApplication = keys.contains(Constants.TPS_LIMIT_KEY_APPLICATION);
+            this.key = perMethod ? url.getServiceKey() + '.' + methodName : url.getServiceKey();
+        }
+    }
+
+    static final class SlidingWindow {
+
+        final int                        rate;
+
+        final long                       interval;
+
+        private final AtomicReference<Window> current;
+
+        SlidingWindow(int rate, long interval) {
+            this(rate, interval, System.currentTimeMillis());
+        }
+
+        SlidingWindow(int rate, long interval, long start) {
+            this.rate = rate;
+            this.interval = interval;
+            this.current = new AtomicReference<Window>(new Window(start, 0));
+        }
+
+        /**
+         * 超过两个窗口没有调用时，上个窗口和当前窗口的计数都已滑出
+         */
+        boolean isIdle(long now) {
+            return now >= current.get().start + 2 * interval;
+        }
+
+        boolean isAllowable(long now) {
+            Window window = current(now);
+            // 上个窗口在最近 interval 内的部分按比例计入
+            double previousWeight = 1d - (double) (now - window.start) / interval;
+            long estimated = (long) (window.previous * Math.max(previousWeight, 0d)) + window.counter.sum();
+            if (estimated >= rate) {
+                return false;
+            }
+            window.counter.increment();
+            return true;
+        }
+
+        private Window current(long now) {
+            for (;;) {
+                Window window = current.get();
+                if (now < window.start + interval) {
+                    return window;
+                }
+                long elapsedWindows = (now - window.start) / interval;
+                // 超过一个窗口没有调用时，上个窗口已经完全滑出
+                long previous = elapsedWindows == 1 ? window.counter.sum() : 0;
+                Window next = new Window(window.start + elapsedWindows * interval, previous);
+                if (current.compareAndSet(window, next)) {
+                    return next;
+                }
+            }
+        }
+    }
+
+    private static final class Window {
+
+        final long           start;
+
+        final long           previous;
+
+        final StripedCounter counter = new StripedCounter();
+
+        Window(long start, long previous) {
+            this.start = start;
+            this.previous = previous;
+        }
+    }
+
+}
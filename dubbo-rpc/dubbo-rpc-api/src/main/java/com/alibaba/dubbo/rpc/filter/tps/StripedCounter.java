@@ -0,0 +1,58 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter.tps;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 分段计数器：按线程分散到多个计数槽上累加，读取时求和，避免高并发下所有线程在同一个 AtomicInteger 上 CAS 重试。
+ */
+class StripedCounter {
+
+    // 每个槽之间间隔 8 个 long (64 字节)，避免伪共享
+    private static final int    PADDING = 8;
+
+    private static final int    STRIPES = stripes(Runtime.getRuntime().availableProcessors());
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    void increment() {
+        cells.incrementAndGet(index());
+    }
+
+    long sum() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i ++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    private static int index() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return ((h ^ (h >>> 16)) & (STRIPES - 1)) * PADDING;
+    }
+
+    static int stripes(int processors) {
+        int n = 1;
+        while (n < processors && n < 64) {
+            n <<= 1;
+        }
+        return n;
+    }
+
+}
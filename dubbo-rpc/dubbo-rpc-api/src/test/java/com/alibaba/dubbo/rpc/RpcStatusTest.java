@@ -0,0 +1,43 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+
+public class RpcStatusTest {
+
+    @Test
+    public void testEwmaElapsed() {
+        RpcStatus status = RpcStatus.getStatus(URL.valueOf("dubbo://127.0.0.1:20880/RpcStatusTest"), "testEwmaElapsed");
+        long now = 100000L;
+        Assert.assertEquals(0d, status.getEwmaElapsed(now), 0d);
+        // 变慢时立即取峰值
+        status.updateEwmaElapsed(10, now);
+        Assert.assertEquals(10d, status.getEwmaElapsed(now), 0.0001d);
+        status.updateEwmaElapsed(200, now);
+        Assert.assertEquals(200d, status.getEwmaElapsed(now), 0.0001d);
+        // 变快时按时间衰减地并入
+        status.updateEwmaElapsed(10, now + 10000);
+        double expected = 200 * Math.exp(-1) + 10 * (1 - Math.exp(-1));
+        Assert.assertEquals(expected, status.getEwmaElapsed(now + 10000), 0.0001d);
+        // 没有新的调用时向 0 衰减
+        Assert.assertEquals(expected * Math.exp(-2), status.getEwmaElapsed(now + 30000), 0.0001d);
+    }
+
+}
@@ -16,6 +16,8 @@
 package com.alibaba.dubbo.rpc.filter;
 
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import org.junit.Test;
 
@@ -24,6 +26,7 @@ import com.alibaba.dubbo.rpc.Filter;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.support.BlockMyInvoker;
 import com.alibaba.dubbo.rpc.support.MockInvocation;
 import com.alibaba.dubbo.rpc.support.MyInvoker;
 
@@ -80,4 +83,28 @@ public class ActiveLimitFilterTest {
         }
         assertNotSame(0, count);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testInvokeFailFast() throws Exception {
+        URL url = URL.valueOf("test://test:11/test?accesslog=true&group=dubbo&version=1.1&actives=1&actives.failfast=true&timeout=10000");
+        final Invoker<ActiveLimitFilterTest> invoker = new BlockMyInvoker<ActiveLimitFilterTest>(url, 500);
+        final Invocation invocation = new MockInvocation();
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                activeLimitFilter.invoke(invoker, invocation);
+            }
+        });
+        thread.start();
+        Thread.sleep(100);
+        long start = System.currentTimeMillis();
+        try {
+            activeLimitFilter.invoke(invoker, invocation);
+            fail();
+        } catch (RpcException expected) {
+        }
+        assertTrue(System.currentTimeMillis() - start < 300);
+        thread.join();
+        // 许可已归还
+        activeLimitFilter.invoke(new MyInvoker<ActiveLimitFilterTest>(url), invocation);
+    }
+}
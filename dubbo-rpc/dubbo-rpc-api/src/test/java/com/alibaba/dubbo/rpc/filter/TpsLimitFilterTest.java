@@ -21,12 +21,15 @@ import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcInvocation;
 import com.alibaba.dubbo.rpc.RpcStatus;
 import com.alibaba.dubbo.rpc.support.MockInvocation;
 import com.alibaba.dubbo.rpc.support.MyInvoker;
 
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -65,4 +68,30 @@ public class TpsLimitFilterTest {
         }
     }
 
-}
+    @Test
+    public void testConsumerAttachApplication() throws Exception {
+        URL url = URL.valueOf("test://test?side=consumer&application=demo-consumer&tps=1&tps.keys=application");
+        url = url.addParameter(Constants.INTERFACE_KEY,
+                               "com.alibaba.dubbo.rpc.file.TpsService");
+        Invoker<TpsLimitFilterTest> invoker = new MyInvoker<TpsLimitFilterTest>(url);
+        RpcInvocation invocation = new RpcInvocation();
+        invocation.setMethodName("echo");
+        for (int i = 0; i < 10; i++) {
+            filter.invoke(invoker, invocation);
+        }
+        assertEquals("demo-consumer", invocation.getAttachment(Constants.APPLICATION_KEY));
+    }
+
+    @Test
+    public void testConsumerWithoutApplicationKey() throws Exception {
+        URL url = URL.valueOf("test://test?side=consumer&application=demo-consumer&tps=1");
+        url = url.addParameter(Constants.INTERFACE_KEY,
+                               "com.alibaba.dubbo.rpc.file.TpsService");
+        Invoker<TpsLimitFilterTest> invoker = new MyInvoker<TpsLimitFilterTest>(url);
+        RpcInvocation invocation = new RpcInvocation();
+        invocation.setMethodName("echo");
+        filter.invoke(invoker, invocation);
+        assertNull(invocation.getAttachment(Constants.APPLICATION_KEY));
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,115 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter.active;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ActiveLimiterTest {
+
+    @Test
+    public void testTryAcquire() {
+        ActiveLimiter limiter = new ActiveLimiter(2);
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertFalse(limiter.tryAcquire());
+        limiter.release();
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertEquals(0, limiter.getAvailablePermits());
+    }
+
+    @Test
+    public void testTimeout() {
+        ActiveLimiter limiter = new ActiveLimiter(1);
+        Assert.assertTrue(limiter.tryAcquire(100));
+        long start = System.currentTimeMillis();
+        Assert.assertFalse(limiter.tryAcquire(100));
+        Assert.assertTrue(System.currentTimeMillis() - start >= 90);
+        Assert.assertEquals(0, limiter.getWaitingCount());
+        limiter.release();
+        Assert.assertEquals(1, limiter.getAvailablePermits());
+    }
+
+    @Test
+    public void testHandOffInOrder() throws Exception {
+        final ActiveLimiter limiter = new ActiveLimiter(1);
+        Assert.assertTrue(limiter.tryAcquire());
+        final List<Integer> order = new CopyOnWriteArrayList<Integer>();
+        final CountDownLatch done = new CountDownLatch(3);
+        for (int i = 0; i < 3; i ++) {
+            final int index = i;
+            new Thread(new Runnable() {
+                public void run() {
+                    if (limiter.tryAcquire(5000)) {
+                        order.add(index);
+                        limiter.release();
+                    }
+                    done.countDown();
+                }
+            }).start();
+            // 等前一个线程入队后再启动下一个
+            while (limiter.getWaitingCount() <= i) {
+                Thread.sleep(1);
+            }
+        }
+        // 有等待者时新来的调用不插队
+        Assert.assertFalse(limiter.tryAcquire());
+        limiter.release();
+        done.await();
+        Assert.assertEquals("[0, 1, 2]", order.toString());
+        Assert.assertEquals(1, limiter.getAvailablePermits());
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        final int max = 4;
+        final ActiveLimiter limiter = new ActiveLimiter(max);
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger overflow = new AtomicInteger();
+        final AtomicInteger acquired = new AtomicInteger();
+        int threads = 32;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i ++) {
+            new Thread(new Runnable() {
+                public void run() {
+                    for (int j = 0; j < 2000; j ++) {
+                        // 部分调用超时很短，覆盖取消与交接的竞争
+                        if (limiter.tryAcquire(j % 3 == 0 ? 1 : 1000)) {
+                            if (active.incrementAndGet() > max) {
+                                overflow.incrementAndGet();
+                            }
+                            acquired.incrementAndGet();
+                            active.decrementAndGet();
+                            limiter.release();
+                        }
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+        Assert.assertEquals(0, overflow.get());
+        Assert.assertTrue(acquired.get() > 0);
+        Assert.assertEquals(max, limiter.getAvailablePermits());
+        Assert.assertEquals(0, limiter.getWaitingCount());
+    }
+
+}
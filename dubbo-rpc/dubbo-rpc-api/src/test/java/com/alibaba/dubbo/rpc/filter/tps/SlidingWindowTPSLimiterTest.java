@@ -0,0 +1,186 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter.tps;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SlidingWindowTPSLimiterTest {
+
+    private SlidingWindowTPSLimiter limiter = new SlidingWindowTPSLimiter();
+
+    private static RpcInvocation invocation(String methodName, String application) {
+        RpcInvocation invocation = new RpcInvocation();
+        invocation.setMethodName(methodName);
+        if (application != null) {
+            invocation.setAttachment(Constants.APPLICATION_KEY, application);
+        }
+        return invocation;
+    }
+
+    private static int allowed(SlidingWindowTPSLimiter limiter, URL url, RpcInvocation invocation, int times) {
+        int allowed = 0;
+        for (int i = 0; i < times; i ++) {
+            if (limiter.isAllowable(url, invocation)) {
+                allowed ++;
+            }
+        }
+        return allowed;
+    }
+
+    @Test
+    public void testServiceLimit() throws Exception {
+        URL url = URL.valueOf("test://localhost/DemoService?tps=5");
+        assertEquals(5, allowed(limiter, url, invocation("sayHello", null), 10));
+        assertFalse(limiter.isAllowable(url, invocation("echo", null)));
+    }
+
+    @Test
+    public void testNoLimit() throws Exception {
+        URL url = URL.valueOf("test://localhost/DemoService");
+        assertEquals(10, allowed(limiter, url, invocation("sayHello", null), 10));
+    }
+
+    @Test
+    public void testMethodLimit() throws Exception {
+        URL url = URL.valueOf("test://localhost/DemoService?tps=5&tps.keys=method&echo.tps=2");
+        assertEquals(5, allowed(limiter, url, invocation("sayHello", null), 10));
+        assertEquals(2, allowed(limiter, url, invocation("echo", null), 10));
+    }
+
+    @Test
+    public void testApplicationLimit() throws Exception {
+        URL url = URL.valueOf("test://localhost/DemoService?tps=3&tps.keys=application");
+        assertEquals(3, allowed(limiter, url, invocation("sayHello", "app1"), 10));
+        assertEquals(3, allowed(limiter, url, invocation("sayHello", "app2"), 10));
+        assertFalse(limiter.isAllowable(url, invocation("echo", "app1")));
+    }
+
+    @Test
+    public void testRateChanged() throws Exception {
+        URL url = URL.valueOf("test://localhost/DemoService?tps=2");
+        assertEquals(2, allowed(limiter, url, invocation("sayHello", null), 10));
+        url = url.addParameter(Constants.TPS_LIMIT_RATE_KEY, 4);
+        assertEquals(4, allowed(limiter, url, invocation("sayHello", null), 10));
+    }
+
+    @Test
+    public void testConcurrentFirstCallers() throws Exception {
+        final URL url = URL.valueOf("test://localhost/DemoService?tps=100");
+        final AtomicInteger allowed = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i ++) {
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    allowed.addAndGet(allowed(limiter, url, invocation("sayHello", null), 50));
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // 首次并发调用不会互相覆盖窗口而丢失计数，检查和计数之间的竞争最多让每个线程多放过一次
+        assertTrue(allowed.get() >= 100 && allowed.get() <= 100 + threads.length);
+    }
+
+    @Test
+    public void testSweepIdleWindows() throws Exception {
+        URL url = URL.valueOf("test://localhost/DemoService?tps=3&tps.keys=application");
+        for (int i = 0; i < SlidingWindowTPSLimiter.SWEEP_THRESHOLD; i ++) {
+            limiter.isAllowable(url, invocation("sayHello", "app" + i));
+        }
+        assertEquals(SlidingWindowTPSLimiter.SWEEP_THRESHOLD, limiter.size());
+        limiter.sweep(System.currentTimeMillis());
+        assertEquals(SlidingWindowTPSLimiter.SWEEP_THRESHOLD, limiter.size());
+        limiter.sweep(System.currentTimeMillis() + 2 * Constants.DEFAULT_TPS_LIMIT_INTERVAL);
+        assertEquals(0, limiter.size());
+    }
+
+    @Test
+    public void testSlidingWindow() throws Exception {
+        long start = System.currentTimeMillis();
+        SlidingWindowTPSLimiter.SlidingWindow window = new SlidingWindowTPSLimiter.SlidingWindow(10, 1000L, start);
+        for (int i = 0; i < 10; i ++) {
+            assertTrue(window.isAllowable(start));
+        }
+        assertFalse(window.isAllowable(start));
+        // 刚进入下一个窗口时上个窗口仍然几乎全部计入，不会在窗口交界处放过 2 倍请求
+        assertFalse(window.isAllowable(start + 1000L));
+        // 滑过一半后约有一半的额度
+        int allowed = 0;
+        for (int i = 0; i < 10; i ++) {
+            if (window.isAllowable(start + 1500L)) {
+                allowed ++;
+            }
+        }
+        assertTrue(allowed >= 4 && allowed <= 6);
+        // 超过两个窗口没有调用，额度完全恢复
+        allowed = 0;
+        for (int i = 0; i < 20; i ++) {
+            if (window.isAllowable(start + 5000L)) {
+                allowed ++;
+            }
+        }
+        assertEquals(10, allowed);
+    }
+
+    @Test
+    public void testStripes() throws Exception {
+        assertEquals(1, StripedCounter.stripes(1));
+        assertEquals(4, StripedCounter.stripes(3));
+        assertEquals(8, StripedCounter.stripes(8));
+        assertEquals(64, StripedCounter.stripes(1000));
+    }
+
+    @Test
+    public void testConcurrentCount() throws Exception {
+        final StripedCounter counter = new StripedCounter();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i ++) {
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    for (int j = 0; j < 10000; j ++) {
+                        counter.increment();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(80000L, counter.sum());
+    }
+
+}
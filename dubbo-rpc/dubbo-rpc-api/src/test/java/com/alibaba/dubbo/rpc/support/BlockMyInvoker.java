@@ -0,0 +1,43 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.support;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcException;
+
+/**
+ * 调用时阻塞指定时间的 MyInvoker
+ */
+public class BlockMyInvoker<T> extends MyInvoker<T> {
+
+    private final long blockTime;
+
+    public BlockMyInvoker(URL url, long blockTime) {
+        super(url);
+        this.blockTime = blockTime;
+    }
+
+    public Result invoke(Invocation invocation) throws RpcException {
+        try {
+            Thread.sleep(blockTime);
+        } catch (InterruptedException e) {
+        }
+        return super.invoke(invocation);
+    }
+
+}
@@ -33,7 +33,9 @@ import com.alibaba.dubbo.remoting.Channel;
 import com.alibaba.dubbo.remoting.Codec;
 import com.alibaba.dubbo.remoting.Decodeable;
 import com.alibaba.dubbo.remoting.exchange.Request;
-import com.alibaba.dubbo.remoting.transport.CodecSupport;
+import com.alibaba.dubbo.remoting.transport.ChannelCodecSettings;
+import com.alibaba.dubbo.remoting.transport.dispatcher.IsolatedExecutors;
+import com.alibaba.dubbo.remoting.transport.dispatcher.ServiceMessage;
 import com.alibaba.dubbo.rpc.RpcInvocation;
 
 import static com.alibaba.dubbo.rpc.protocol.dubbo.CallbackServiceCodec.decodeInvocationArgument;
@@ -41,7 +43,7 @@ import static com.alibaba.dubbo.rpc.protocol.dubbo.CallbackServiceCodec.decodeIn
 /**
  * @author <a href="mailto:gang.lvg@alibaba-inc.com">kimi</a>
  */
-public class DecodeableRpcInvocation extends RpcInvocation implements Codec, Decodeable {
+public class DecodeableRpcInvocation extends RpcInvocation implements Codec, Decodeable, ServiceMessage {
 
     private static final Logger log = LoggerFactory.getLogger(DecodeableRpcInvocation.class);
 
@@ -65,6 +67,14 @@ public class DecodeableRpcInvocation extends RpcInvocation implements Codec, Dec
         this.serializationType = id;
     }
 
+    public String getServiceKey() {
+        if (! hasDecoded) {
+            return null;
+        }
+        return IsolatedExecutors.serviceKey(getAttachment(Constants.PATH_KEY), getAttachment(Constants.GROUP_KEY),
+                                            getAttachment(Constants.VERSION_KEY));
+    }
+
     public void decode() throws Exception {
         if (!hasDecoded && channel != null && inputStream != null) {
             try {
@@ -93,7 +103,7 @@ public class DecodeableRpcInvocation extends RpcInvocation implements Codec, Dec
      * @throws IOException
      */
     public Object decode(Channel channel, InputStream input) throws IOException {
-        ObjectInput in = CodecSupport.getSerialization(channel.getUrl(), serializationType)
+        ObjectInput in = ChannelCodecSettings.getSettings(channel).getSerialization(serializationType)
             .deserialize(channel.getUrl(), input);
 
         // 通过反序列化得到 dubbo version，并保存到 attachments 变量中
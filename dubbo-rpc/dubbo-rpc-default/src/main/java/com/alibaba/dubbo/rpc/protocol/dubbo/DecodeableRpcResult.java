@@ -30,7 +30,7 @@ import com.alibaba.dubbo.remoting.Channel;
 import com.alibaba.dubbo.remoting.Codec;
 import com.alibaba.dubbo.remoting.Decodeable;
 import com.alibaba.dubbo.remoting.exchange.Response;
-import com.alibaba.dubbo.remoting.transport.CodecSupport;
+import com.alibaba.dubbo.remoting.transport.ChannelCodecSettings;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.RpcResult;
 import com.alibaba.dubbo.rpc.support.RpcUtils;
@@ -70,7 +70,7 @@ public class DecodeableRpcResult extends RpcResult implements Codec, Decodeable
     }
 
     public Object decode(Channel channel, InputStream input) throws IOException {
-        ObjectInput in = CodecSupport.getSerialization(channel.getUrl(), serializationType)
+        ObjectInput in = ChannelCodecSettings.getSettings(channel).getSerialization(serializationType)
             .deserialize(channel.getUrl(), input);
 
         // 反序列化响应类型
@@ -17,24 +17,30 @@ package com.alibaba.dubbo.rpc.protocol.dubbo;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
 
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.Version;
-import com.alibaba.dubbo.common.io.Bytes;
+import com.alibaba.dubbo.common.compress.Compressor;
 import com.alibaba.dubbo.common.io.UnsafeByteArrayInputStream;
+import com.alibaba.dubbo.common.io.UnsafeByteArrayOutputStream;
 import com.alibaba.dubbo.common.logger.Logger;
 import com.alibaba.dubbo.common.logger.LoggerFactory;
 import com.alibaba.dubbo.common.serialize.ObjectInput;
 import com.alibaba.dubbo.common.serialize.ObjectOutput;
 import com.alibaba.dubbo.common.serialize.Serialization;
+import com.alibaba.dubbo.common.utils.IOUtils;
 import com.alibaba.dubbo.common.utils.ReflectUtils;
 import com.alibaba.dubbo.common.utils.StringUtils;
 import com.alibaba.dubbo.remoting.Channel;
 import com.alibaba.dubbo.remoting.Codec2;
+import com.alibaba.dubbo.remoting.buffer.ChannelBufferInputStream;
 import com.alibaba.dubbo.remoting.exchange.Request;
 import com.alibaba.dubbo.remoting.exchange.Response;
 import com.alibaba.dubbo.remoting.exchange.codec.ExchangeCodec;
+import com.alibaba.dubbo.remoting.transport.ChannelCodecSettings;
 import com.alibaba.dubbo.remoting.transport.CodecSupport;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Result;
@@ -78,18 +84,19 @@ public class DubboCodec extends ExchangeCodec implements Codec2 {
      *      b. 其他状态码，则反序列化异常信息后设置到Response对象中
      * @param channel
      * @param is
-     * @param header
+     * @param flag
+     * @param status
+     * @param id
      * @return
      * @throws IOException
      */
-    protected Object decodeBody(Channel channel, InputStream is, byte[] header) throws IOException {
-        // 获取消息头中的第三个字节，并通过逻辑与运算得到序列化器编号
-        byte flag = header[2], proto = (byte) (flag & SERIALIZATION_MASK);
+    protected Object decodeBody(Channel channel, InputStream is, byte flag, byte status, long id) throws IOException {
+        // 通过逻辑与运算得到序列化器编号
+        byte proto = (byte) (flag & SERIALIZATION_MASK);
+        // 通道级别的编解码参数，在通道上只解析一次
+        ChannelCodecSettings settings = ChannelCodecSettings.getSettings(channel);
         //根据请求数据中传入的序列id获取对应的序列化类，DubboSerialization：序列id=1
-        Serialization s = CodecSupport.getSerialization(channel.getUrl(), proto);
-        // get request id.
-        // 获取调用编号
-        long id = Bytes.bytes2long(header, 4);
+        Serialization s = settings.getSerialization(proto);
         // 通过逻辑与运算得到调用类型，0 - Response，1 - Request
         if ((flag & FLAG_REQUEST) == 0) {
             // decode response.
@@ -102,9 +109,6 @@ public class DubboCodec extends ExchangeCodec implements Codec2 {
                 // 设置心跳事件
                 res.setEvent(Response.HEARTBEAT_EVENT);
             }
-            // get status.
-            // 获取响应状态
-            byte status = header[3];
             // 设置响应状态
             res.setStatus(status);
             // 如果响应状态为 OK，表明调用过程正常
@@ -120,19 +124,17 @@ public class DubboCodec extends ExchangeCodec implements Codec2 {
                     } else {
                         DecodeableRpcResult result;
                         // 根据 url 参数决定是否在 IO 线程上执行解码逻辑
-                        if (channel.getUrl().getParameter(
-                            Constants.DECODE_IN_IO_THREAD_KEY,
-                            Constants.DEFAULT_DECODE_IN_IO_THREAD)) {
+                        if (settings.isDecodeInIOThread()) {
                             // 创建 DecodeableRpcResult 对象
                             result = new DecodeableRpcResult(channel, res, is,
-                                                             (Invocation)getRequestData(id), proto);
+                                                             (Invocation)getRequestData(channel, id), proto);
                             // 进行后续的解码工作，反序列化调用结果，DecodeableRpcResult#decode()
                             result.decode();
                         } else {
                             // 创建 DecodeableRpcResult 对象
                             result = new DecodeableRpcResult(channel, res,
                                                              new UnsafeByteArrayInputStream(readMessageData(is)),
-                                                             (Invocation) getRequestData(id), proto);
+                                                             (Invocation) getRequestData(channel, id), proto);
                         }
                         data = result;
                     }
@@ -180,9 +182,7 @@ public class DubboCodec extends ExchangeCodec implements Codec2 {
                 } else {
                     DecodeableRpcInvocation inv;
                     // 根据 url 参数判断是否在 IO 线程上对消息体进行解码
-                    if (channel.getUrl().getParameter(
-                        Constants.DECODE_IN_IO_THREAD_KEY,
-                        Constants.DEFAULT_DECODE_IN_IO_THREAD)) {
+                    if (settings.isDecodeInIOThread()) {
                         inv = new DecodeableRpcInvocation(channel, req, is, proto);
                         // 在当前线程，也就是 IO 线程上进行后续的解码工作。此工作完成后，可将
                         // 调用方法名、attachment、以及调用参数解析出来，DecodeableRpcInvocation#decode
@@ -217,6 +217,12 @@ public class DubboCodec extends ExchangeCodec implements Codec2 {
     }
 
     private byte[] readMessageData(InputStream is) throws IOException {
+        if (! (is instanceof ChannelBufferInputStream)) {
+            // 解压流的 available() 不是剩余长度，需要读到流结束
+            UnsafeByteArrayOutputStream os = new UnsafeByteArrayOutputStream();
+            IOUtils.write(is, os);
+            return os.toByteArray();
+        }
         if (is.available() > 0) {
             byte[] result = new byte[is.available()];
             is.read(result);
@@ -246,7 +252,7 @@ public class DubboCodec extends ExchangeCodec implements Codec2 {
         }
 
         // 序列化 attachments
-        out.writeObject(inv.getAttachments());
+        out.writeObject(getSerializedAttachments(inv));
     }
 
     /**
@@ -286,4 +292,59 @@ public class DubboCodec extends ExchangeCodec implements Codec2 {
             out.writeObject(th);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 去掉只在本端使用的附件，不修改调用对象本身
+     */
+    private static Map<String, String> getSerializedAttachments(RpcInvocation inv) {
+        Map<String, String> attachments = inv.getAttachments();
+        if (attachments == null || (! attachments.containsKey(Constants.REQUEST_COMPRESSION_KEY)
+                && ! attachments.containsKey(Constants.REQUEST_COMPRESSION_THRESHOLD_KEY))) {
+            return attachments;
+        }
+        attachments = new HashMap<String, String>(attachments);
+        attachments.remove(Constants.REQUEST_COMPRESSION_KEY);
+        attachments.remove(Constants.REQUEST_COMPRESSION_THRESHOLD_KEY);
+        return attachments;
+    }
+
+    /**
+     * 请求：由 {@link DubboInvoker} 按调用方的 url 在不序列化的附件中标记，提供者未声明 accept.compression 时不标记；
+     * 响应：由 {@link DubboProtocol} 根据请求中的 accept.compression 附件在结果上标记。
+     */
+    @Override
+    protected Compressor getCompressor(Channel channel, Object message) {
+        if (message instanceof Request) {
+            Object data = ((Request) message).getData();
+            if (data instanceof Invocation) {
+                return CodecSupport.getCompressor(((Invocation) data).getAttachment(Constants.REQUEST_COMPRESSION_KEY));
+            }
+        } else if (message instanceof Response) {
+            Object result = ((Response) message).getResult();
+            if (result instanceof Result) {
+                return CodecSupport.getCompressor(((Result) result).getAttachment(Constants.COMPRESSION_KEY));
+            }
+        }
+        return null;
+    }
+
+    @Override
+    protected int getCompressionThreshold(Channel channel, Object message) {
+        String threshold = null;
+        if (message instanceof Request) {
+            Object data = ((Request) message).getData();
+            if (data instanceof Invocation) {
+                threshold = ((Invocation) data).getAttachment(Constants.REQUEST_COMPRESSION_THRESHOLD_KEY);
+            }
+        } else if (message instanceof Response) {
+            Object result = ((Response) message).getResult();
+            if (result instanceof Result) {
+                threshold = ((Result) result).getAttachment(Constants.COMPRESSION_THRESHOLD_KEY);
+            }
+        }
+        if (threshold != null && threshold.length() > 0) {
+            return Integer.parseInt(threshold);
+        }
+        return super.getCompressionThreshold(channel, message);
+    }
+}
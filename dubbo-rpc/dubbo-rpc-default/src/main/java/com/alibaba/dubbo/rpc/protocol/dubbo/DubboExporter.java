@@ -17,6 +17,7 @@ package com.alibaba.dubbo.rpc.protocol.dubbo;
 
 import java.util.Map;
 
+import com.alibaba.dubbo.remoting.transport.dispatcher.IsolatedExecutors;
 import com.alibaba.dubbo.rpc.Exporter;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.protocol.AbstractExporter;
@@ -42,6 +43,7 @@ public class DubboExporter<T> extends AbstractExporter<T> {
     public void unexport() {
         super.unexport();
         exporterMap.remove(key);
+        IsolatedExecutors.unregister(getInvoker().getUrl());
     }
 
 }
\ No newline at end of file
@@ -25,6 +25,8 @@ import com.alibaba.dubbo.remoting.RemotingException;
 import com.alibaba.dubbo.remoting.TimeoutException;
 import com.alibaba.dubbo.remoting.exchange.ExchangeClient;
 import com.alibaba.dubbo.remoting.exchange.ResponseFuture;
+import com.alibaba.dubbo.remoting.exchange.support.ChannelBackpressure;
+import com.alibaba.dubbo.remoting.transport.CodecSupport;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.Result;
@@ -52,6 +54,8 @@ public class DubboInvoker<T> extends AbstractInvoker<T> {
     private final ReentrantLock     destroyLock = new ReentrantLock();
     
     private final Set<Invoker<?>> invokers;
+
+    private final boolean           spillover;
     
     public DubboInvoker(Class<T> serviceType, URL url, ExchangeClient[] clients){
         this(serviceType, url, clients, null);
@@ -63,6 +67,7 @@ public class DubboInvoker<T> extends AbstractInvoker<T> {
         // get version.
         this.version = url.getParameter(Constants.VERSION_KEY, "0.0.0");
         this.invokers = invokers; 
+        this.spillover = Constants.SPILLOVER_BACKPRESSURE.equals(url.getParameter(Constants.BACKPRESSURE_KEY));
     }
 
     /**
@@ -84,13 +89,14 @@ public class DubboInvoker<T> extends AbstractInvoker<T> {
         // 设置 path 和 version 到 attachment 中
         inv.setAttachment(Constants.PATH_KEY, getUrl().getPath());
         inv.setAttachment(Constants.VERSION_KEY, version);
+        setCompression(inv, methodName);
         
         ExchangeClient currentClient;
         if (clients.length == 1) {
             // 从 clients 数组中获取 ExchangeClient
             currentClient = clients[0];
         } else {
-            currentClient = clients[index.getAndIncrement() % clients.length];
+            currentClient = selectClient();
         }
         try {
             // 获取异步配置
@@ -135,6 +141,66 @@ public class DubboInvoker<T> extends AbstractInvoker<T> {
         }
     }
     
+    /**
+     * 轮询选择连接；backpressure=spillover 时跳过繁忙的连接，都繁忙时仍用轮到的连接，由发送时等待
+     */
+    private ExchangeClient selectClient() {
+        int start = index.getAndIncrement();
+        ExchangeClient client = clients[start % clients.length];
+        if (! spillover) {
+            return client;
+        }
+        for (int i = 0; i < clients.length; i ++) {
+            ExchangeClient candidate = clients[(start + i) % clients.length];
+            if (! ChannelBackpressure.isBusy(candidate)) {
+                return candidate;
+            }
+        }
+        return client;
+    }
+
+    public ExchangeClient[] getClients() {
+        return clients;
+    }
+
+    /**
+     * 方法配置了压缩时告知提供者本端可以解压响应，老版本的提供者会忽略此附件。
+     * 提供者的 url 中 accept.compression 包含该压缩器时，请求也按本 invoker 的配置压缩：
+     * 压缩器和阈值放在不会序列化的附件中交给 DubboCodec，共享连接上 channel 的 url 属于其它服务，不能从中读取。
+     */
+    private void setCompression(RpcInvocation inv, String methodName) {
+        String compression = getUrl().getMethodParameter(methodName, Constants.COMPRESSION_KEY);
+        if (compression == null || compression.length() == 0 || CodecSupport.getCompressor(compression) == null) {
+            compression = null;
+        } else {
+            inv.setAttachment(Constants.ACCEPT_COMPRESSION_KEY, compression);
+            if (! isAccepted(getUrl().getParameter(Constants.ACCEPT_COMPRESSION_KEY), compression)) {
+                compression = null;
+            }
+        }
+        if (compression != null) {
+            inv.setAttachment(Constants.REQUEST_COMPRESSION_KEY, compression);
+            inv.setAttachment(Constants.REQUEST_COMPRESSION_THRESHOLD_KEY, String.valueOf(getUrl().getMethodParameter(
+                    methodName, Constants.COMPRESSION_THRESHOLD_KEY, Constants.DEFAULT_COMPRESSION_THRESHOLD)));
+        } else if (inv.getAttachments() != null) {
+            // 重试到其它提供者时清除上一次的设置
+            inv.getAttachments().remove(Constants.REQUEST_COMPRESSION_KEY);
+            inv.getAttachments().remove(Constants.REQUEST_COMPRESSION_THRESHOLD_KEY);
+        }
+    }
+
+    private static boolean isAccepted(String accepted, String name) {
+        if (accepted == null || accepted.length() == 0) {
+            return false;
+        }
+        for (String accept : Constants.COMMA_SPLIT_PATTERN.split(accepted)) {
+            if (name.equals(accept)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public boolean isAvailable() {
         if (!super.isAvailable())
@@ -40,13 +40,17 @@ import com.alibaba.dubbo.remoting.exchange.ExchangeHandler;
 import com.alibaba.dubbo.remoting.exchange.ExchangeServer;
 import com.alibaba.dubbo.remoting.exchange.Exchangers;
 import com.alibaba.dubbo.remoting.exchange.support.ExchangeHandlerAdapter;
+import com.alibaba.dubbo.remoting.transport.CodecSupport;
+import com.alibaba.dubbo.remoting.transport.dispatcher.IsolatedExecutors;
 import com.alibaba.dubbo.rpc.Exporter;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.Protocol;
+import com.alibaba.dubbo.rpc.Result;
 import com.alibaba.dubbo.rpc.RpcContext;
 import com.alibaba.dubbo.rpc.RpcException;
 import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.RpcResult;
 import com.alibaba.dubbo.rpc.protocol.AbstractProtocol;
 
 /**
@@ -118,11 +122,29 @@ public class DubboProtocol extends AbstractProtocol {
 
                 // 通过 Invoker 调用具体的服务，AbstractProxyInvoker#invoke
                 RpcContext.getContext().setRemoteAddress(channel.getRemoteAddress());
-                return invoker.invoke(inv);
+                Result result = invoker.invoke(inv);
+                markCompression(invoker.getUrl(), inv, result);
+                return result;
             }
             throw new RemotingException(channel, "Unsupported request: " + message == null ? null : (message.getClass().getName() + ": " + message) + ", channel: consumer: " + channel.getRemoteAddress() + " --> provider: " + channel.getLocalAddress());
         }
 
+        /**
+         * 消费者在 accept.compression 附件中声明了可解压的压缩器时，在结果上标记压缩器和本端的压缩阈值，由 DubboCodec 编码响应时读取。
+         * 结果的附件不会随响应序列化。
+         */
+        private void markCompression(URL url, Invocation inv, Result result) {
+            String compression = inv.getAttachment(Constants.ACCEPT_COMPRESSION_KEY);
+            if (compression == null || compression.length() == 0 || ! (result instanceof RpcResult)
+                    || CodecSupport.getCompressor(compression) == null) {
+                return;
+            }
+            RpcResult rpcResult = (RpcResult) result;
+            rpcResult.setAttachment(Constants.COMPRESSION_KEY, compression);
+            rpcResult.setAttachment(Constants.COMPRESSION_THRESHOLD_KEY, String.valueOf(url.getMethodParameter(
+                    inv.getMethodName(), Constants.COMPRESSION_THRESHOLD_KEY, Constants.DEFAULT_COMPRESSION_THRESHOLD)));
+        }
+
         @Override
         public void received(Channel channel, Object message) throws RemotingException {
             if (message instanceof Invocation) {
@@ -291,6 +313,9 @@ public class DubboProtocol extends AbstractProtocol {
             }
         }
 
+        // 配置了 isolation 的服务和方法使用独立的线程池
+        IsolatedExecutors.register(url);
+
         //启动服务：根据url启动一个服务，比如绑定端口，开始接受请求信息
         openServer(url);
         
@@ -16,14 +16,17 @@
 package com.alibaba.dubbo.rpc.protocol.dubbo;
 
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import com.alibaba.dubbo.common.utils.StringUtils;
 import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.ResponseCallback;
 import com.alibaba.dubbo.remoting.exchange.ResponseFuture;
+import com.alibaba.dubbo.remoting.exchange.support.DefaultFuture;
 import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.ResultCallback;
+import com.alibaba.dubbo.rpc.ResultFuture;
 import com.alibaba.dubbo.rpc.RpcException;
 
 /**
@@ -31,10 +34,12 @@ import com.alibaba.dubbo.rpc.RpcException;
  * 
  * @author william.liangf
  */
-public class FutureAdapter<V> implements Future<V> {
+public class FutureAdapter<V> implements ResultFuture<V> {
     
     private final ResponseFuture future;
 
+    private volatile boolean cancelled;
+
     public FutureAdapter(ResponseFuture future){
         this.future = future;
     }
@@ -43,12 +48,31 @@ public class FutureAdapter<V> implements Future<V> {
         return future;
     }
 
+    /**
+     * 取消等待中的请求：释放在途请求并以失败结束，服务端已经收到的请求仍会执行。
+     */
     public boolean cancel(boolean mayInterruptIfRunning) {
-        return false;
+        if (! (future instanceof DefaultFuture) || future.isDone()) {
+            return false;
+        }
+        cancelled = true;
+        ((DefaultFuture) future).cancel();
+        return true;
     }
 
     public boolean isCancelled() {
-        return false;
+        return cancelled;
+    }
+
+    public void setCallback(final ResultCallback callback) {
+        future.setCallback(new ResponseCallback() {
+            public void done(Object response) {
+                callback.done((Result) response);
+            }
+            public void caught(Throwable exception) {
+                callback.caught(exception);
+            }
+        });
     }
 
     public boolean isDone() {
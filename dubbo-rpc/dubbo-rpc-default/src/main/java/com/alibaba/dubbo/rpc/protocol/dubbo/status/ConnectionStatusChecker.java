@@ -0,0 +1,71 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo.status;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.common.status.Status;
+import com.alibaba.dubbo.common.status.StatusChecker;
+import com.alibaba.dubbo.remoting.exchange.ExchangeClient;
+import com.alibaba.dubbo.remoting.exchange.support.ChannelBackpressure;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.protocol.dubbo.DubboInvoker;
+import com.alibaba.dubbo.rpc.protocol.dubbo.DubboProtocol;
+
+/**
+ * ConnectionStatusChecker，列出消费端各连接的在途请求数和可写状态，有连接繁忙时告警
+ */
+@Activate
+public class ConnectionStatusChecker implements StatusChecker {
+
+    public Status check() {
+        // 共享连接会出现在多个 invoker 中，按实例去重
+        Map<ExchangeClient, Object> clients = new IdentityHashMap<ExchangeClient, Object>();
+        for (Invoker<?> invoker : DubboProtocol.getDubboProtocol().getInvokers()) {
+            if (invoker instanceof DubboInvoker) {
+                for (ExchangeClient client : ((DubboInvoker<?>) invoker).getClients()) {
+                    clients.put(client, Boolean.TRUE);
+                }
+            }
+        }
+        if (clients.isEmpty()) {
+            return new Status(Status.Level.UNKNOWN);
+        }
+        Status.Level level = Status.Level.OK;
+        StringBuilder buf = new StringBuilder();
+        for (ExchangeClient client : clients.keySet()) {
+            if (! client.isConnected()) {
+                continue;
+            }
+            if (ChannelBackpressure.isBusy(client)) {
+                level = Status.Level.WARN;
+            }
+            if (buf.length() > 0) {
+                buf.append(",");
+            }
+            buf.append(client.getRemoteAddress());
+            buf.append("(inflight:");
+            buf.append(ChannelBackpressure.getInFlight(client));
+            buf.append(",writable:");
+            buf.append(ChannelBackpressure.isWritable(client));
+            buf.append(")");
+        }
+        return new Status(level, buf.toString());
+    }
+
+}
@@ -25,6 +25,8 @@ import com.alibaba.dubbo.common.extension.ExtensionLoader;
 import com.alibaba.dubbo.common.status.Status;
 import com.alibaba.dubbo.common.status.StatusChecker;
 import com.alibaba.dubbo.common.store.DataStore;
+import com.alibaba.dubbo.common.threadpool.support.AbortPolicyWithReport;
+import com.alibaba.dubbo.common.threadpool.support.adaptive.AdaptiveThreadPoolExecutor;
 
 /**
  * ThreadPoolStatusChecker
@@ -62,10 +64,19 @@ public class ThreadPoolStatusChecker implements StatusChecker {
                         + ", largest:" + tp.getLargestPoolSize()
                         + ", active:" + tp.getActiveCount()
                         + ", task:" + tp.getTaskCount()
+                        + ", queue:" + tp.getQueue().size()
+                        + (tp.getRejectedExecutionHandler() instanceof AbortPolicyWithReport
+                                ? ", rejected:" + ((AbortPolicyWithReport) tp.getRejectedExecutionHandler()).getRejectedCount() : "")
+                        + (tp instanceof AdaptiveThreadPoolExecutor ? adaptiveStatus((AdaptiveThreadPoolExecutor) tp) : "")
                         + ", service port: " + port);
             }
         }
         return msg.length() == 0 ? new Status(Status.Level.UNKNOWN) : new Status(level, msg.toString());
     }
 
+    private static String adaptiveStatus(AdaptiveThreadPoolExecutor tp) {
+        return String.format(", min:%d, tps:%.1f, exec:%.2fms, delay:%.2fms, delay target:%dms",
+                tp.getMinThreads(), tp.getThroughput(), tp.getExecuteMillis(), tp.getDelayMillis(), tp.getDelayTarget());
+    }
+
 }
\ No newline at end of file
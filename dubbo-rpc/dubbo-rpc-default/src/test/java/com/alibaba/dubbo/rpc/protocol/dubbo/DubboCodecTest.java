@@ -0,0 +1,230 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import junit.framework.Assert;
+
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.utils.DubboAppender;
+import com.alibaba.dubbo.common.utils.LogUtil;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.buffer.ChannelBuffer;
+import com.alibaba.dubbo.remoting.buffer.ChannelBuffers;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.exchange.Response;
+import com.alibaba.dubbo.remoting.exchange.support.DefaultFuture;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.RpcResult;
+
+/**
+ * DubboCodec 压缩消息体的编解码
+ */
+public class DubboCodecTest {
+
+    private static final String VALUE       = newValue();
+
+    private static final URL    SERVICE_URL = URL.valueOf("dubbo://127.0.0.1:20880/com.foo.EchoService");
+
+    private final DubboCodec    codec       = new DubboCodec();
+
+    @Before
+    public void setUp() {
+        DubboAppender.clear();
+        DubboAppender.doStart();
+    }
+
+    @After
+    public void tearDown() {
+        DubboAppender.doStop();
+    }
+
+    private static String newValue() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 10000; i ++) {
+            builder.append("compress me ");
+        }
+        return builder.toString();
+    }
+
+    private static RpcInvocation newInvocation() {
+        RpcInvocation inv = new RpcInvocation("echo", new Class<?>[] {String.class}, new Object[] {VALUE});
+        inv.setAttachment(Constants.PATH_KEY, "com.foo.EchoService");
+        inv.setAttachment(Constants.VERSION_KEY, "0.0.0");
+        return inv;
+    }
+
+    private static Request newRequest(long id, Invocation inv) {
+        Request request = new Request(id);
+        request.setData(inv);
+        return request;
+    }
+
+    private byte[] encode(Channel channel, Object message) throws IOException {
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer(1024);
+        codec.encode(channel, buffer, message);
+        byte[] bytes = new byte[buffer.writerIndex()];
+        buffer.readBytes(bytes);
+        return bytes;
+    }
+
+    private Object decode(Channel channel, byte[] bytes) throws IOException {
+        return codec.decode(channel, ChannelBuffers.wrappedBuffer(bytes));
+    }
+
+    @Test
+    public void testRequestCompressionFromInvocation() throws Exception {
+        // 共享连接的 url 属于其它服务，其中的压缩配置不起作用
+        Channel channel = new MockChannel(URL.valueOf("dubbo://127.0.0.1:20880/com.foo.OtherService?compression=deflate&accept.compression=deflate"));
+        byte[] bytes = encode(channel, newRequest(1L, newInvocation()));
+        Assert.assertEquals(0, bytes[3]);
+
+        RpcInvocation inv = newInvocation();
+        inv.setAttachment(Constants.REQUEST_COMPRESSION_KEY, "deflate");
+        inv.setAttachment(Constants.REQUEST_COMPRESSION_THRESHOLD_KEY, "1024");
+        bytes = encode(channel, newRequest(2L, inv));
+        Assert.assertEquals((byte) 0x80, bytes[3]);
+        Assert.assertTrue(bytes.length < VALUE.length() / 10);
+        // 编码不修改调用对象
+        Assert.assertEquals("deflate", inv.getAttachment(Constants.REQUEST_COMPRESSION_KEY));
+
+        Invocation decoded = (Invocation) ((Request) decode(channel, bytes)).getData();
+        Assert.assertEquals(VALUE, decoded.getArguments()[0]);
+        Assert.assertNull(decoded.getAttachment(Constants.REQUEST_COMPRESSION_KEY));
+        Assert.assertNull(decoded.getAttachment(Constants.REQUEST_COMPRESSION_THRESHOLD_KEY));
+    }
+
+    @Test
+    public void testLz4Request() throws Exception {
+        Channel channel = new MockChannel(SERVICE_URL);
+        RpcInvocation inv = newInvocation();
+        inv.setAttachment(Constants.REQUEST_COMPRESSION_KEY, "lz4");
+        inv.setAttachment(Constants.REQUEST_COMPRESSION_THRESHOLD_KEY, "1024");
+        byte[] bytes = encode(channel, newRequest(1L, inv));
+        Assert.assertEquals((byte) 0x80, bytes[3]);
+        Assert.assertTrue(bytes.length < VALUE.length() / 10);
+
+        Invocation decoded = (Invocation) ((Request) decode(channel, bytes)).getData();
+        Assert.assertEquals("echo", decoded.getMethodName());
+        Assert.assertEquals(VALUE, decoded.getArguments()[0]);
+        Assert.assertEquals("com.foo.EchoService", decoded.getAttachment(Constants.PATH_KEY));
+        // lz4 的结束标记已被读掉，不应有未读完的数据
+        Assert.assertEquals(0, LogUtil.findMessage(Level.WARN, "Skip input stream"));
+    }
+
+    @Test
+    public void testLz4Response() throws Exception {
+        Channel channel = new MockChannel(SERVICE_URL);
+        Request request = newRequest(new Request().getId(), newInvocation());
+        DefaultFuture future = new DefaultFuture(channel, request, 1000);
+        try {
+            RpcResult result = new RpcResult(VALUE);
+            // 由 DubboProtocol 根据消费者的 accept.compression 标记，不随响应序列化
+            result.setAttachment(Constants.COMPRESSION_KEY, "lz4");
+            result.setAttachment(Constants.COMPRESSION_THRESHOLD_KEY, "1024");
+            Response response = new Response(request.getId());
+            response.setResult(result);
+            byte[] bytes = encode(channel, response);
+            Assert.assertEquals((byte) (Response.OK | 0x80), bytes[3]);
+            Assert.assertTrue(bytes.length < VALUE.length() / 10);
+
+            Response decoded = (Response) decode(channel, bytes);
+            Assert.assertEquals(Response.OK, decoded.getStatus());
+            Assert.assertEquals(VALUE, ((Result) decoded.getResult()).getValue());
+            Assert.assertEquals(0, LogUtil.findMessage(Level.WARN, "Skip input stream"));
+        } finally {
+            future.cancel();
+        }
+    }
+
+    static class MockChannel implements Channel {
+
+        private final URL                 url;
+
+        private final Map<String, Object> attributes = new ConcurrentHashMap<String, Object>();
+
+        MockChannel(URL url) {
+            this.url = url;
+        }
+
+        public URL getUrl() {
+            return url;
+        }
+
+        public ChannelHandler getChannelHandler() {
+            return null;
+        }
+
+        public InetSocketAddress getLocalAddress() {
+            return new InetSocketAddress("127.0.0.1", url.getPort());
+        }
+
+        public InetSocketAddress getRemoteAddress() {
+            return new InetSocketAddress("127.0.0.1", 12345);
+        }
+
+        public boolean isConnected() {
+            return true;
+        }
+
+        public void send(Object message) throws RemotingException {
+        }
+
+        public void send(Object message, boolean sent) throws RemotingException {
+        }
+
+        public void close() {
+        }
+
+        public void close(int timeout) {
+        }
+
+        public boolean isClosed() {
+            return false;
+        }
+
+        public boolean hasAttribute(String key) {
+            return attributes.containsKey(key);
+        }
+
+        public Object getAttribute(String key) {
+            return attributes.get(key);
+        }
+
+        public void setAttribute(String key, Object value) {
+            attributes.put(key, value);
+        }
+
+        public void removeAttribute(String key) {
+            attributes.remove(key);
+        }
+    }
+
+}
@@ -0,0 +1,166 @@
+package com.alibaba.dubbo.rpc.benchmark;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.alibaba.dubbo.rpc.filter.active.ActiveLimiter;
+
+/**
+ * 并发调用限制的争用压测：大量线程争抢少量许可，比较 ActiveLimiter 与原来基于 synchronized wait/notify 的实现。
+ * <p>
+ * 用法：ActiveLimitBenchmark [threads=200] [actives=20] [seconds=5] [workMicros=200]
+ */
+public class ActiveLimitBenchmark {
+
+    private static final int MAX_WAIT = 10000; // 100us 为一格，最多统计 1s
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int actives = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int workMicros = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+        System.out.println("threads: " + threads + ", actives: " + actives + ", seconds: " + seconds + ", work: " + workMicros + "us");
+        System.out.println(String.format("%-10s %12s %12s %12s %12s %12s", "limiter", "calls/s", "wait p50 us", "wait p99 us", "timeouts", "max active"));
+        // 先各跑一轮预热
+        run("monitor", new MonitorLimit(actives), threads, 1, workMicros, false);
+        run("permit", new PermitLimit(actives), threads, 1, workMicros, false);
+        run("monitor", new MonitorLimit(actives), threads, seconds, workMicros, true);
+        run("permit", new PermitLimit(actives), threads, seconds, workMicros, true);
+    }
+
+    private static void run(String name, final Limit limit, int threads, int seconds, final int workMicros, boolean print) throws Exception {
+        final AtomicLongArray histogram = new AtomicLongArray(MAX_WAIT + 1);
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong timeouts = new AtomicLong();
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+        final long endTime = System.currentTimeMillis() + seconds * 1000L;
+        final CountDownLatch latch = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i ++) {
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        while (System.currentTimeMillis() < endTime) {
+                            long start = System.nanoTime();
+                            if (! limit.acquire(1000)) {
+                                timeouts.incrementAndGet();
+                                continue;
+                            }
+                            long wait = (System.nanoTime() - start) / 100000L;
+                            histogram.incrementAndGet((int) Math.min(wait, MAX_WAIT));
+                            int current = active.incrementAndGet();
+                            while (current > maxActive.get()) {
+                                maxActive.compareAndSet(maxActive.get(), current);
+                            }
+                            try {
+                                work(workMicros);
+                            } finally {
+                                active.decrementAndGet();
+                                limit.release();
+                            }
+                            calls.incrementAndGet();
+                        }
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }, "ActiveLimitBenchmark-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        latch.await();
+        if (print) {
+            System.out.println(String.format("%-10s %12d %12d %12d %12d %12d", name, calls.get() / seconds,
+                                             percentile(histogram, calls.get(), 0.5) * 100,
+                                             percentile(histogram, calls.get(), 0.99) * 100, timeouts.get(), maxActive.get()));
+        }
+    }
+
+    private static void work(int micros) {
+        long end = System.nanoTime() + micros * 1000L;
+        while (System.nanoTime() < end) {
+            // 模拟调用耗时，忙等避免 sleep 的精度影响结果
+        }
+    }
+
+    private static long percentile(AtomicLongArray histogram, long calls, double percentile) {
+        long target = (long) Math.ceil(calls * percentile);
+        long count = 0;
+        for (int i = 0; i <= MAX_WAIT; i ++) {
+            count += histogram.get(i);
+            if (count >= target && count > 0) {
+                return i;
+            }
+        }
+        return MAX_WAIT;
+    }
+
+    private interface Limit {
+
+        boolean acquire(long timeout);
+
+        void release();
+    }
+
+    private static class PermitLimit implements Limit {
+
+        private final ActiveLimiter limiter;
+
+        PermitLimit(int max) {
+            this.limiter = new ActiveLimiter(max);
+        }
+
+        public boolean acquire(long timeout) {
+            return limiter.tryAcquire(timeout);
+        }
+
+        public void release() {
+            limiter.release();
+        }
+    }
+
+    /**
+     * 原 ActiveLimitFilter 的做法：活跃数超过上限时在同一个监视器上 wait，每次调用结束 notify 后重新检查活跃数。
+     */
+    private static class MonitorLimit implements Limit {
+
+        private final int           max;
+
+        private final AtomicInteger active = new AtomicInteger();
+
+        MonitorLimit(int max) {
+            this.max = max;
+        }
+
+        public boolean acquire(long timeout) {
+            long start = System.currentTimeMillis();
+            long remain = timeout;
+            if (active.get() >= max) {
+                synchronized (this) {
+                    while (active.get() >= max) {
+                        try {
+                            wait(remain);
+                        } catch (InterruptedException e) {
+                        }
+                        remain = timeout - (System.currentTimeMillis() - start);
+                        if (remain <= 0) {
+                            return false;
+                        }
+                    }
+                }
+            }
+            active.incrementAndGet();
+            return true;
+        }
+
+        public void release() {
+            active.decrementAndGet();
+            synchronized (this) {
+                notify();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.alibaba.dubbo.rpc.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.dubbo.cache.Cache;
+import com.alibaba.dubbo.cache.CacheFactory;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+
+/**
+ * 结果缓存的并发压测：多线程按 Zipf 分布读取 key，未命中时写入，比较 lru、threadlocal 和 tinylfu 的吞吐与命中率。
+ * <p>
+ * 用法：CacheBenchmark [threads=16] [cacheSize=1000] [keys=100000] [seconds=5]
+ */
+public class CacheBenchmark {
+
+    private static final String[] CACHES = {"lru", "threadlocal", "tinylfu"};
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int cacheSize = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int keys = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        System.out.println("threads: " + threads + ", cache.size: " + cacheSize + ", keys: " + keys + ", seconds: " + seconds);
+        System.out.println(String.format("%-12s %14s %10s", "cache", "ops/s", "hit rate"));
+        int[] trace = zipf(keys, 1 << 20, 0.99, new Random(0));
+        for (String name : CACHES) {
+            // 先预热一轮，每轮使用新的缓存实例
+            run(name, cacheSize, trace, threads, 1, false);
+            run(name, cacheSize, trace, threads, seconds, true);
+        }
+    }
+
+    private static void run(String name, int cacheSize, final int[] trace, int threads, int seconds, boolean print) throws Exception {
+        URL url = URL.valueOf("dubbo://127.0.0.1/CacheBenchmark" + System.nanoTime() + "?method=get&cache=" + name + "&cache.size=" + cacheSize);
+        final Cache cache = ExtensionLoader.getExtensionLoader(CacheFactory.class).getExtension(name).getCache(url);
+        final AtomicLong gets = new AtomicLong();
+        final AtomicLong hits = new AtomicLong();
+        final long endTime = System.currentTimeMillis() + seconds * 1000L;
+        final CountDownLatch latch = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i ++) {
+            final int offset = trace.length / threads * i;
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        long count = 0, hit = 0;
+                        int index = offset;
+                        while ((count & 0xff) != 0 || System.currentTimeMillis() < endTime) {
+                            Integer key = trace[index];
+                            index = (index + 1) & (trace.length - 1);
+                            if (cache.get(key) != null) {
+                                hit ++;
+                            } else {
+                                cache.put(key, key);
+                            }
+                            count ++;
+                        }
+                        gets.addAndGet(count);
+                        hits.addAndGet(hit);
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }, "CacheBenchmark-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        latch.await();
+        if (print) {
+            System.out.println(String.format("%-12s %14d %9.1f%%", name, gets.get() / seconds, hits.get() * 100.0 / gets.get()));
+        }
+    }
+
+    private static int[] zipf(int keys, int length, double skew, Random random) {
+        double[] cumulative = new double[keys];
+        double sum = 0;
+        for (int i = 0; i < keys; i ++) {
+            sum += 1 / Math.pow(i + 1, skew);
+            cumulative[i] = sum;
+        }
+        // 打乱 key 的排名，避免热点 key 集中在相邻的 hash 桶上
+        int[] ranks = new int[keys];
+        for (int i = 0; i < keys; i ++) {
+            ranks[i] = i;
+        }
+        for (int i = keys - 1; i > 0; i --) {
+            int j = random.nextInt(i + 1);
+            int tmp = ranks[i];
+            ranks[i] = ranks[j];
+            ranks[j] = tmp;
+        }
+        int[] trace = new int[length];
+        for (int i = 0; i < length; i ++) {
+            double value = random.nextDouble() * sum;
+            int low = 0, high = keys - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cumulative[mid] < value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            trace[i] = ranks[low];
+        }
+        return trace;
+    }
+
+}
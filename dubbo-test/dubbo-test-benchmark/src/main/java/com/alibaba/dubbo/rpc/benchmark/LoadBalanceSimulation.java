@@ -0,0 +1,169 @@
+package com.alibaba.dubbo.rpc.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.RpcResult;
+import com.alibaba.dubbo.rpc.RpcStatus;
+import com.alibaba.dubbo.rpc.cluster.LoadBalance;
+
+/**
+ * 负载均衡策略的模拟压测：不走网络，用若干模拟的提供者比较各策略下的调用延迟分布。
+ * <p>
+ * 每个提供者的响应时间在基准延迟上下随机波动，其中一部分提供者周期性地发生 GC 停顿，停顿期间的调用要等到停顿结束才返回。
+ * 与 ActiveLimitFilter 一样通过 RpcStatus 统计活跃数和响应时间。
+ * <p>
+ * 用法：LoadBalanceSimulation [providers=20] [clients=64] [seconds=10] [loadbalances=random,leastactive,peakewma]
+ */
+public class LoadBalanceSimulation {
+
+    private static final int    BASE_LATENCY    = 5;      // ms
+
+    private static final int    GC_INTERVAL     = 2000;   // ms
+
+    private static final int    GC_PAUSE        = 300;    // ms
+
+    private static final int    GC_PROVIDER_PERCENT = 10;
+
+    private static final int    MAX_LATENCY     = 10000;  // ms
+
+    public static void main(String[] args) throws Exception {
+        int providers = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        String[] loadbalances = (args.length > 3 ? args[3] : "random,leastactive,peakewma").split(",");
+
+        System.out.println("providers: " + providers + ", clients: " + clients + ", seconds: " + seconds
+                           + ", base latency: " + BASE_LATENCY + "ms, gc pause: " + GC_PAUSE + "ms every " + GC_INTERVAL
+                           + "ms on " + GC_PROVIDER_PERCENT + "% providers");
+        System.out.println(String.format("%-14s %10s %8s %8s %8s %8s %8s", "loadbalance", "calls", "avg", "p50", "p99", "p999", "max"));
+        for (int i = 0; i < loadbalances.length; i ++) {
+            // 每轮使用不同的端口，避免 RpcStatus 中残留上一轮的统计
+            run(loadbalances[i].trim(), 30000 + i * 1000, providers, clients, seconds);
+        }
+    }
+
+    private static void run(String name, int port, int providerCount, int clients, int seconds) throws Exception {
+        final LoadBalance loadBalance = ExtensionLoader.getExtensionLoader(LoadBalance.class).getExtension(name);
+        final List<Invoker<DemoService>> invokers = new ArrayList<Invoker<DemoService>>();
+        int gcProviders = Math.max(1, providerCount * GC_PROVIDER_PERCENT / 100);
+        for (int i = 0; i < providerCount; i ++) {
+            URL url = URL.valueOf("dubbo://10.0.0." + (i + 1) + ":" + port + "/" + DemoService.class.getName() + "?actives=1000");
+            invokers.add(new SimulatedProvider(url, i < gcProviders, i * GC_INTERVAL / gcProviders));
+        }
+        final AtomicLongArray histogram = new AtomicLongArray(MAX_LATENCY + 1);
+        final long endTime = System.currentTimeMillis() + seconds * 1000L;
+        final CountDownLatch latch = new CountDownLatch(clients);
+        for (int i = 0; i < clients; i ++) {
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        Invocation invocation = new RpcInvocation("sendRequest", new Class<?>[] {String.class}, new Object[] {"hello"});
+                        while (System.currentTimeMillis() < endTime) {
+                            Invoker<DemoService> invoker = loadBalance.select(invokers, invokers.get(0).getUrl(), invocation);
+                            URL url = invoker.getUrl();
+                            long begin = System.currentTimeMillis();
+                            RpcStatus.beginCount(url, invocation.getMethodName());
+                            invoker.invoke(invocation);
+                            long elapsed = System.currentTimeMillis() - begin;
+                            RpcStatus.endCount(url, invocation.getMethodName(), elapsed, true);
+                            histogram.incrementAndGet((int) Math.min(elapsed, MAX_LATENCY));
+                        }
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }, "LoadBalanceSimulation-" + name + "-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        latch.await();
+
+        long calls = 0, total = 0, max = 0;
+        for (int i = 0; i <= MAX_LATENCY; i ++) {
+            long count = histogram.get(i);
+            calls += count;
+            total += count * i;
+            if (count > 0) {
+                max = i;
+            }
+        }
+        System.out.println(String.format("%-14s %10d %8.2f %8d %8d %8d %8d", name, calls, calls == 0 ? 0d : (double) total / calls,
+                                         percentile(histogram, calls, 0.5), percentile(histogram, calls, 0.99),
+                                         percentile(histogram, calls, 0.999), max));
+    }
+
+    private static long percentile(AtomicLongArray histogram, long calls, double percentile) {
+        long target = (long) Math.ceil(calls * percentile);
+        long count = 0;
+        for (int i = 0; i <= MAX_LATENCY; i ++) {
+            count += histogram.get(i);
+            if (count >= target && count > 0) {
+                return i;
+            }
+        }
+        return MAX_LATENCY;
+    }
+
+    private static class SimulatedProvider implements Invoker<DemoService> {
+
+        private final URL     url;
+
+        private final boolean gc;
+
+        private final long    gcOffset;
+
+        private final Random  random = new Random();
+
+        SimulatedProvider(URL url, boolean gc, long gcOffset) {
+            this.url = url;
+            this.gc = gc;
+            this.gcOffset = gcOffset;
+        }
+
+        public Class<DemoService> getInterface() {
+            return DemoService.class;
+        }
+
+        public Result invoke(Invocation invocation) throws RpcException {
+            long now = System.currentTimeMillis();
+            // 基准延迟的 0.5 ~ 1.5 倍
+            long finish = now + BASE_LATENCY / 2 + random.nextInt(BASE_LATENCY + 1);
+            if (gc) {
+                long phase = (finish + gcOffset) % GC_INTERVAL;
+                if (phase < GC_PAUSE) {
+                    // 处理完成时正处于 GC 停顿中，等到停顿结束才返回
+                    finish += GC_PAUSE - phase;
+                }
+            }
+            try {
+                Thread.sleep(Math.max(finish - now, 0));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new RpcResult("hello");
+        }
+
+        public URL getUrl() {
+            return url;
+        }
+
+        public boolean isAvailable() {
+            return true;
+        }
+
+        public void destroy() {
+        }
+    }
+
+}
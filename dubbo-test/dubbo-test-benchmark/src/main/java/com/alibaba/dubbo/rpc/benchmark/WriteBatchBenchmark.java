@@ -0,0 +1,88 @@
+package com.alibaba.dubbo.rpc.benchmark;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.ExchangeChannel;
+import com.alibaba.dubbo.remoting.exchange.ExchangeClient;
+import com.alibaba.dubbo.remoting.exchange.ExchangeServer;
+import com.alibaba.dubbo.remoting.exchange.Exchangers;
+import com.alibaba.dubbo.remoting.exchange.support.Replier;
+
+/**
+ * 对比 netty 连接开启合并写（write.batch=true）前后，100 字节请求/响应在单连接高并发下的吞吐量。
+ * <p>
+ * 用法：WriteBatchBenchmark [threads=100] [seconds=10] [port=20990]
+ */
+public class WriteBatchBenchmark {
+
+    private static final int PAYLOAD = 100;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : 20990;
+        System.out.println("threads: " + threads + ", seconds: " + seconds + ", payload: " + PAYLOAD + " bytes");
+        System.out.println(String.format("%-10s %12s %12s %12s", "mode", "calls/s", "avg us", "errors"));
+        // 先各跑一轮预热
+        run("direct", false, threads, 2, port, false);
+        run("batch", true, threads, 2, port, false);
+        run("direct", false, threads, seconds, port, true);
+        run("batch", true, threads, seconds, port, true);
+        System.exit(0);
+    }
+
+    private static void run(String name, boolean batch, int threads, int seconds, int port, boolean print) throws Exception {
+        // 客户端的调用线程和服务端的业务线程都在并发写同一个连接
+        URL url = URL.valueOf("exchange://127.0.0.1:" + port + "?server=netty&client=netty&codec=exchange"
+                + "&serialization=hessian2&heartbeat=0&timeout=10000&write.batch=" + batch);
+        ExchangeServer server = Exchangers.bind(url, new Replier<byte[]>() {
+            public Object reply(ExchangeChannel channel, byte[] request) throws RemotingException {
+                return request;
+            }
+        });
+        final ExchangeClient client = Exchangers.connect(url);
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong elapsed = new AtomicLong();
+        final byte[] payload = new byte[PAYLOAD];
+        final long endTime = System.currentTimeMillis() + seconds * 1000L;
+        final CountDownLatch latch = new CountDownLatch(threads);
+        try {
+            for (int i = 0; i < threads; i ++) {
+                Thread thread = new Thread(new Runnable() {
+                    public void run() {
+                        try {
+                            while (System.currentTimeMillis() < endTime) {
+                                long start = System.nanoTime();
+                                try {
+                                    client.request(payload).get();
+                                    calls.incrementAndGet();
+                                    elapsed.addAndGet(System.nanoTime() - start);
+                                } catch (Exception e) {
+                                    errors.incrementAndGet();
+                                }
+                            }
+                        } finally {
+                            latch.countDown();
+                        }
+                    }
+                }, "WriteBatchBenchmark-" + i);
+                thread.setDaemon(true);
+                thread.start();
+            }
+            latch.await();
+        } finally {
+            client.close();
+            server.close();
+        }
+        if (print) {
+            long count = calls.get();
+            System.out.println(String.format("%-10s %12d %12d %12d", name, count / seconds,
+                                             count == 0 ? 0 : elapsed.get() / count / 1000, errors.get()));
+        }
+    }
+
+}